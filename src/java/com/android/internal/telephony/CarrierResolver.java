@@ -35,6 +35,7 @@ import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 import android.util.LocalLog;
 import android.util.Log;
+import android.util.SparseArray;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.telephony.metrics.TelephonyMetrics;
@@ -46,7 +47,12 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * CarrierResolver identifies the subscription carrier and returns a canonical carrier Id
@@ -68,8 +74,23 @@ public class CarrierResolver extends Handler {
     private static final Uri CONTENT_URL_PREFER_APN = Uri.withAppendedPath(
             Telephony.Carriers.CONTENT_URI, "preferapn");
 
+    // process-wide copy of the carrier id db shared by all phones, swapped on db update
+    private static final Object sCarrierIdTableLock = new Object();
+    private static volatile CarrierIdTable sCarrierIdTable;
+    // orders carrier id db change notifications and table loads, so that one reload serves all
+    // phones notified of the same change
+    private static final AtomicLong sCarrierIdDbSequence = new AtomicLong();
+    // sequence number taken when sCarrierIdTable started loading, guarded by sCarrierIdTableLock
+    private static long sCarrierIdTableSequence;
+
     // cached matching rules based mccmnc to speed up resolution
     private List<CarrierMatchingRule> mCarrierMatchingRulesOnMccMnc = new ArrayList<>();
+    // index over mCarrierMatchingRulesOnMccMnc, rebuilt whenever the rules are reloaded
+    private CarrierMatchingRuleIndex mCarrierMatchingRuleIndex =
+            new CarrierMatchingRuleIndex(mCarrierMatchingRulesOnMccMnc);
+    // subscription attributes and result of the last matching, reused until either changes
+    private CarrierMatchingRule mLastSubscriptionRule;
+    private MatchResult mLastMatchResult;
     // cached carrier Id
     private int mCarrierId = TelephonyManager.UNKNOWN_CARRIER_ID;
     // cached specific carrier Id
@@ -105,7 +126,8 @@ public class CarrierResolver extends Handler {
                 sendEmptyMessage(PREFER_APN_UPDATE_EVENT);
             } else if (CarrierId.All.CONTENT_URI.equals(uri)) {
                 logd("onChange URI: " + uri);
-                sendEmptyMessage(CARRIER_ID_DB_UPDATE_EVENT);
+                sendMessage(obtainMessage(CARRIER_ID_DB_UPDATE_EVENT,
+                        nextCarrierIdDbSequence()));
             }
         }
     };
@@ -172,6 +194,7 @@ public class CarrierResolver extends Handler {
 
     private void handleSimAbsent() {
         mCarrierMatchingRulesOnMccMnc.clear();
+        onCarrierMatchingRulesChanged();
         mSpn = null;
         mPreferApn = null;
         updateCarrierIdAndName(TelephonyManager.UNKNOWN_CARRIER_ID, null,
@@ -212,6 +235,7 @@ public class CarrierResolver extends Handler {
                 handleSimLoaded();
                 break;
             case CARRIER_ID_DB_UPDATE_EVENT:
+                reloadCarrierIdTable(mContext, (Long) msg.obj);
                 loadCarrierMatchingRulesOnMccMnc();
                 break;
             case PREFER_APN_UPDATE_EVENT:
@@ -246,92 +270,86 @@ public class CarrierResolver extends Handler {
     }
 
     private void loadCarrierMatchingRulesOnMccMnc() {
-        try {
-            String mccmnc = mTelephonyMgr.getSimOperatorNumericForPhone(mPhone.getPhoneId());
-            Cursor cursor = mContext.getContentResolver().query(
-                    CarrierId.All.CONTENT_URI,
-                    /* projection */ null,
-                    /* selection */ CarrierId.All.MCCMNC + "=?",
-                    /* selectionArgs */ new String[]{mccmnc}, null);
-            try {
-                if (cursor != null) {
-                    if (VDBG) {
-                        logd("[loadCarrierMatchingRules]- " + cursor.getCount()
-                                + " Records(s) in DB" + " mccmnc: " + mccmnc);
-                    }
-                    mCarrierMatchingRulesOnMccMnc.clear();
-                    while (cursor.moveToNext()) {
-                        mCarrierMatchingRulesOnMccMnc.add(makeCarrierMatchingRule(cursor));
-                    }
-                    matchSubscriptionCarrier();
-                }
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-            }
-        } catch (Exception ex) {
-            loge("[loadCarrierMatchingRules]- ex: " + ex);
+        String mccmnc = mTelephonyMgr.getSimOperatorNumericForPhone(mPhone.getPhoneId());
+        CarrierIdTable table = getCarrierIdTable(mContext);
+        if (table == null) {
+            loge("[loadCarrierMatchingRules]- carrier id db not available");
+            return;
+        }
+        mCarrierMatchingRulesOnMccMnc = table.getRules(mccmnc);
+        if (VDBG) {
+            logd("[loadCarrierMatchingRules]- " + mCarrierMatchingRulesOnMccMnc.size()
+                    + " Records(s) in DB" + " mccmnc: " + mccmnc);
         }
+        onCarrierMatchingRulesChanged();
+        matchSubscriptionCarrier();
+    }
+
+    private void onCarrierMatchingRulesChanged() {
+        mCarrierMatchingRuleIndex = new CarrierMatchingRuleIndex(mCarrierMatchingRulesOnMccMnc);
+        mLastSubscriptionRule = null;
+        mLastMatchResult = null;
     }
 
     private String getCarrierNameFromId(int cid) {
-        try {
-            Cursor cursor = mContext.getContentResolver().query(
-                    CarrierId.All.CONTENT_URI,
-                    /* projection */ null,
-                    /* selection */ CarrierId.CARRIER_ID + "=?",
-                    /* selectionArgs */ new String[]{cid + ""}, null);
-            try {
-                if (cursor != null) {
-                    if (VDBG) {
-                        logd("[getCarrierNameFromId]- " + cursor.getCount()
-                                + " Records(s) in DB" + " cid: " + cid);
-                    }
-                    while (cursor.moveToNext()) {
-                        return cursor.getString(cursor.getColumnIndex(CarrierId.CARRIER_NAME));
-                    }
-                }
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-            }
-        } catch (Exception ex) {
-            loge("[getCarrierNameFromId]- ex: " + ex);
-        }
-        return null;
+        CarrierIdTable table = getCarrierIdTable(mContext);
+        return (table == null) ? null : table.getCarrierName(cid);
     }
 
     private static List<CarrierMatchingRule> getCarrierMatchingRulesFromMccMnc(
             @NonNull Context context, String mccmnc) {
-        List<CarrierMatchingRule> rules = new ArrayList<>();
-        try {
-            Cursor cursor = context.getContentResolver().query(
-                    CarrierId.All.CONTENT_URI,
-                    /* projection */ null,
-                    /* selection */ CarrierId.All.MCCMNC + "=?",
-                    /* selectionArgs */ new String[]{mccmnc}, null);
-            try {
-                if (cursor != null) {
-                    if (VDBG) {
-                        logd("[loadCarrierMatchingRules]- " + cursor.getCount()
-                                + " Records(s) in DB" + " mccmnc: " + mccmnc);
-                    }
-                    rules.clear();
-                    while (cursor.moveToNext()) {
-                        rules.add(makeCarrierMatchingRule(cursor));
-                    }
-                }
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
+        CarrierIdTable table = getCarrierIdTable(context);
+        return (table == null) ? new ArrayList<>() : table.getRules(mccmnc);
+    }
+
+    /**
+     * @return the in-process copy of the carrier id db, loading it on first use. {@code null} if
+     * the provider could not be read, in which case the next call retries.
+     */
+    private static CarrierIdTable getCarrierIdTable(@NonNull Context context) {
+        CarrierIdTable table = sCarrierIdTable;
+        if (table != null) {
+            return table;
+        }
+        synchronized (sCarrierIdTableLock) {
+            if (sCarrierIdTable == null) {
+                sCarrierIdTableSequence = nextCarrierIdDbSequence();
+                sCarrierIdTable = CarrierIdTable.load(context);
+                logd("[getCarrierIdTable] loaded " + sCarrierIdTable);
             }
-        } catch (Exception ex) {
-            loge("[loadCarrierMatchingRules]- ex: " + ex);
+            return sCarrierIdTable;
+        }
+    }
+
+    /**
+     * @return a sequence number ordering a carrier id db change notification or table load
+     * against the others.
+     */
+    @VisibleForTesting
+    static long nextCarrierIdDbSequence() {
+        return sCarrierIdDbSequence.incrementAndGet();
+    }
+
+    /**
+     * Re-read the carrier id db after it has been updated. Lookups keep using the previous copy
+     * until the new one is loaded, a failed load drops it so that the next lookup retries.
+     *
+     * The change is notified to every phone, but the table is shared, so it is only reloaded
+     * if it started loading before the change was notified. Later phones just re-match.
+     *
+     * @param changeSequence sequence number taken when the change was notified.
+     */
+    @VisibleForTesting
+    static void reloadCarrierIdTable(@NonNull Context context, long changeSequence) {
+        synchronized (sCarrierIdTableLock) {
+            if (sCarrierIdTable != null && sCarrierIdTableSequence > changeSequence) {
+                logd("[reloadCarrierIdTable] already loaded");
+                return;
+            }
+            sCarrierIdTableSequence = nextCarrierIdDbSequence();
+            sCarrierIdTable = CarrierIdTable.load(context);
+            logd("[reloadCarrierIdTable] loaded " + sCarrierIdTable);
         }
-        return rules;
     }
 
     private String getPreferApn() {
@@ -689,6 +707,25 @@ public class CarrierResolver extends Handler {
             return false;
         }
 
+        // true if the rule can be identified by mccmnc alone, i.e. the rule of an mno carrier
+        private boolean isMccMncOnly() {
+            return imsiPrefixPattern == null && iccidPrefix == null && gid1 == null
+                    && gid2 == null && plmn == null && spn == null && apn == null
+                    && privilegeAccessRule == null;
+        }
+
+        private boolean hasSameAttributes(CarrierMatchingRule other) {
+            return Objects.equals(mccMnc, other.mccMnc)
+                    && Objects.equals(imsiPrefixPattern, other.imsiPrefixPattern)
+                    && Objects.equals(iccidPrefix, other.iccidPrefix)
+                    && Objects.equals(gid1, other.gid1)
+                    && Objects.equals(gid2, other.gid2)
+                    && Objects.equals(plmn, other.plmn)
+                    && Objects.equals(spn, other.spn)
+                    && Objects.equals(apn, other.apn)
+                    && Objects.equals(privilegeAccessRule, other.privilegeAccessRule);
+        }
+
         public String toString() {
             return "[CarrierMatchingRule] -"
                     + " mccmnc: " + mccMnc
@@ -706,6 +743,319 @@ public class CarrierResolver extends Handler {
         }
     }
 
+    /**
+     * In-process copy of the whole carrier id database, read with a single provider query. Rules
+     * are grouped by MCCMNC and carrier names are keyed by carrier id, so the lookups done for
+     * carrier identification never go back to the provider. The table is immutable and replaced
+     * as a whole when the database changes. Rules are handed out as copies, since matching
+     * writes the score into the rule.
+     */
+    @VisibleForTesting
+    static final class CarrierIdTable {
+        private final Map<String, List<CarrierMatchingRule>> mRulesByMccMnc = new HashMap<>();
+        private final SparseArray<String> mNamesByCid = new SparseArray<>();
+        private final Map<String, Integer> mMnoCarrierIdsByMccMnc = new HashMap<>();
+        private int mRuleCount;
+
+        /**
+         * @return the table, or {@code null} if the provider could not be read.
+         */
+        @VisibleForTesting
+        static CarrierIdTable load(@NonNull Context context) {
+            try {
+                Cursor cursor = context.getContentResolver().query(
+                        CarrierId.All.CONTENT_URI,
+                        /* projection */ null,
+                        /* selection */ null,
+                        /* selectionArgs */ null, null);
+                try {
+                    if (cursor != null) {
+                        if (VDBG) {
+                            logd("[loadCarrierIdTable]- " + cursor.getCount()
+                                    + " Records(s) in DB");
+                        }
+                        CarrierIdTable table = new CarrierIdTable();
+                        while (cursor.moveToNext()) {
+                            table.add(makeCarrierMatchingRule(cursor));
+                        }
+                        return table;
+                    }
+                } finally {
+                    if (cursor != null) {
+                        cursor.close();
+                    }
+                }
+            } catch (Exception ex) {
+                loge("[loadCarrierIdTable]- ex: " + ex);
+            }
+            return null;
+        }
+
+        private void add(CarrierMatchingRule rule) {
+            mRuleCount++;
+            List<CarrierMatchingRule> rules = mRulesByMccMnc.get(rule.mccMnc);
+            if (rules == null) {
+                rules = new ArrayList<>();
+                mRulesByMccMnc.put(rule.mccMnc, rules);
+            }
+            rules.add(rule);
+            // first row of a carrier wins, same as reading the provider by carrier id
+            if (mNamesByCid.indexOfKey(rule.mCid) < 0) {
+                mNamesByCid.put(rule.mCid, rule.mName);
+            }
+            if (rule.isMccMncOnly() && !mMnoCarrierIdsByMccMnc.containsKey(rule.mccMnc)) {
+                mMnoCarrierIdsByMccMnc.put(rule.mccMnc, rule.mCid);
+            }
+        }
+
+        /**
+         * @return copies of all rules on the given MCCMNC, in provider order.
+         */
+        @VisibleForTesting
+        List<CarrierMatchingRule> getRules(String mccmnc) {
+            List<CarrierMatchingRule> rules = mRulesByMccMnc.get(mccmnc);
+            if (rules == null) {
+                return new ArrayList<>();
+            }
+            List<CarrierMatchingRule> copies = new ArrayList<>(rules.size());
+            for (CarrierMatchingRule rule : rules) {
+                copies.add(new CarrierMatchingRule(rule));
+            }
+            return copies;
+        }
+
+        @VisibleForTesting
+        String getCarrierName(int cid) {
+            return mNamesByCid.get(cid);
+        }
+
+        @VisibleForTesting
+        int getMnoCarrierId(String mccmnc) {
+            Integer cid = mMnoCarrierIdsByMccMnc.get(mccmnc);
+            return (cid == null) ? TelephonyManager.UNKNOWN_CARRIER_ID : cid;
+        }
+
+        @Override
+        public String toString() {
+            return "[CarrierIdTable: mccmnc=" + mRulesByMccMnc.size()
+                    + " carriers=" + mNamesByCid.size() + " rules=" + mRuleCount + "]";
+        }
+    }
+
+    /**
+     * Index over the carrier matching rules of one MCCMNC, so that only the rules which can match
+     * a subscription are scored. Each rule is filed under the first attribute it sets, in score
+     * tier order: IMSI prefix patterns in a trie, ICCID and GID prefixes and the case-insensitive
+     * PLMN, SPN, certificate and APN values in hash maps. A rule left out of the candidates would
+     * have failed {@link CarrierMatchingRule#match} on that attribute, so the result is the same
+     * as scoring every rule. Rules which set nothing but the MCCMNC are always candidates.
+     */
+    @VisibleForTesting
+    static final class CarrierMatchingRuleIndex {
+        private final List<CarrierMatchingRule> mRules;
+        private final ImsiPatternTrie mImsiPatterns = new ImsiPatternTrie();
+        private final Map<String, List<Integer>> mIccidPrefixes = new HashMap<>();
+        private final Map<String, List<Integer>> mGid1Prefixes = new HashMap<>();
+        private final Map<String, List<Integer>> mGid2Prefixes = new HashMap<>();
+        private final Map<String, List<Integer>> mPlmns = new HashMap<>();
+        private final Map<String, List<Integer>> mSpns = new HashMap<>();
+        private final Map<String, List<Integer>> mCerts = new HashMap<>();
+        private final Map<String, List<Integer>> mApns = new HashMap<>();
+        private final BitSet mAlwaysCandidates = new BitSet();
+
+        @VisibleForTesting
+        CarrierMatchingRuleIndex(List<CarrierMatchingRule> rules) {
+            mRules = rules;
+            for (int i = 0; i < rules.size(); i++) {
+                add(i, rules.get(i));
+            }
+        }
+
+        private void add(int index, CarrierMatchingRule rule) {
+            if (!TextUtils.isEmpty(rule.imsiPrefixPattern)) {
+                mImsiPatterns.add(rule.imsiPrefixPattern, index);
+            } else if (rule.iccidPrefix != null) {
+                put(mIccidPrefixes, rule.iccidPrefix, index);
+            } else if (rule.gid1 != null) {
+                put(mGid1Prefixes, rule.gid1.toLowerCase(), index);
+            } else if (rule.gid2 != null) {
+                put(mGid2Prefixes, rule.gid2.toLowerCase(), index);
+            } else if (rule.plmn != null) {
+                put(mPlmns, foldCase(rule.plmn), index);
+            } else if (rule.spn != null) {
+                put(mSpns, foldCase(rule.spn), index);
+            } else if (rule.privilegeAccessRule != null && !rule.privilegeAccessRule.isEmpty()) {
+                // A rule whose certificates are all empty can never match and is not filed.
+                for (String cert : rule.privilegeAccessRule) {
+                    if (!TextUtils.isEmpty(cert)) {
+                        put(mCerts, foldCase(cert), index);
+                    }
+                }
+            } else if (rule.apn != null) {
+                put(mApns, foldCase(rule.apn), index);
+            } else {
+                mAlwaysCandidates.set(index);
+            }
+        }
+
+        /**
+         * @return the indexes in the rule list of the rules which may match the subscription.
+         */
+        @VisibleForTesting
+        BitSet getCandidates(CarrierMatchingRule subscriptionRule) {
+            BitSet candidates = (BitSet) mAlwaysCandidates.clone();
+            if (!TextUtils.isEmpty(subscriptionRule.imsiPrefixPattern)) {
+                mImsiPatterns.collect(subscriptionRule.imsiPrefixPattern, candidates);
+            }
+            if (subscriptionRule.iccidPrefix != null) {
+                collectPrefixes(mIccidPrefixes, subscriptionRule.iccidPrefix, candidates);
+            }
+            if (subscriptionRule.gid1 != null) {
+                collectPrefixes(mGid1Prefixes, subscriptionRule.gid1.toLowerCase(), candidates);
+            }
+            if (subscriptionRule.gid2 != null) {
+                collectPrefixes(mGid2Prefixes, subscriptionRule.gid2.toLowerCase(), candidates);
+            }
+            if (subscriptionRule.plmn != null) {
+                collect(mPlmns, foldCase(subscriptionRule.plmn), candidates);
+            }
+            if (subscriptionRule.spn != null) {
+                collect(mSpns, foldCase(subscriptionRule.spn), candidates);
+            }
+            if (subscriptionRule.privilegeAccessRule != null) {
+                for (String cert : subscriptionRule.privilegeAccessRule) {
+                    if (cert != null) {
+                        collect(mCerts, foldCase(cert), candidates);
+                    }
+                }
+            }
+            if (subscriptionRule.apn != null) {
+                collect(mApns, foldCase(subscriptionRule.apn), candidates);
+            }
+            return candidates;
+        }
+
+        /**
+         * Score the candidate rules against the subscription. Other rules get an invalid score
+         * without being compared.
+         */
+        void match(CarrierMatchingRule subscriptionRule) {
+            BitSet candidates = getCandidates(subscriptionRule);
+            for (int i = 0; i < mRules.size(); i++) {
+                CarrierMatchingRule rule = mRules.get(i);
+                if (candidates.get(i)) {
+                    rule.match(subscriptionRule);
+                } else {
+                    rule.mScore = CarrierMatchingRule.SCORE_INVALID;
+                }
+            }
+        }
+
+        private static void put(Map<String, List<Integer>> map, String key, int index) {
+            List<Integer> indexes = map.get(key);
+            if (indexes == null) {
+                indexes = new ArrayList<>(1);
+                map.put(key, indexes);
+            }
+            indexes.add(index);
+        }
+
+        private static void collect(Map<String, List<Integer>> map, String key,
+                BitSet candidates) {
+            List<Integer> indexes = map.get(key);
+            if (indexes != null) {
+                for (int index : indexes) {
+                    candidates.set(index);
+                }
+            }
+        }
+
+        // Collect the rules filed under any prefix of the value, including the empty one.
+        private static void collectPrefixes(Map<String, List<Integer>> map, String value,
+                BitSet candidates) {
+            if (map.isEmpty()) return;
+            for (int i = 0; i <= value.length(); i++) {
+                collect(map, value.substring(0, i), candidates);
+            }
+        }
+
+        // Case folding under which String#equalsIgnoreCase equal strings get the same key.
+        private static String foldCase(String value) {
+            StringBuilder sb = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                sb.append(Character.toLowerCase(Character.toUpperCase(value.charAt(i))));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Trie over IMSI prefix patterns, where 'x' or 'X' in a pattern matches any digit.
+     */
+    private static final class ImsiPatternTrie {
+        private static final char WILDCARD = 'x';
+
+        private final Map<Character, ImsiPatternTrie> mChildren = new HashMap<>();
+        private List<Integer> mRuleIndexes;
+
+        void add(String pattern, int index) {
+            ImsiPatternTrie node = this;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == 'X') c = WILDCARD;
+                ImsiPatternTrie child = node.mChildren.get(c);
+                if (child == null) {
+                    child = new ImsiPatternTrie();
+                    node.mChildren.put(c, child);
+                }
+                node = child;
+            }
+            if (node.mRuleIndexes == null) {
+                node.mRuleIndexes = new ArrayList<>(1);
+            }
+            node.mRuleIndexes.add(index);
+        }
+
+        void collect(String imsi, BitSet candidates) {
+            collect(imsi, 0, candidates);
+        }
+
+        private void collect(String imsi, int depth, BitSet candidates) {
+            if (mRuleIndexes != null) {
+                for (int index : mRuleIndexes) {
+                    candidates.set(index);
+                }
+            }
+            if (depth == imsi.length() || mChildren.isEmpty()) return;
+            ImsiPatternTrie exact = mChildren.get(imsi.charAt(depth));
+            if (exact != null) {
+                exact.collect(imsi, depth + 1, candidates);
+            }
+            ImsiPatternTrie wildcard = mChildren.get(WILDCARD);
+            if (wildcard != null && wildcard != exact) {
+                wildcard.collect(imsi, depth + 1, candidates);
+            }
+        }
+    }
+
+    /**
+     * Outcome of matching a subscription against the rules of its MCCMNC.
+     */
+    private static final class MatchResult {
+        final int mMaxScore;
+        final CarrierMatchingRule mMaxRule;
+        final CarrierMatchingRule mMaxRuleParent;
+        final CarrierMatchingRule mMnoRule;
+
+        MatchResult(int maxScore, CarrierMatchingRule maxRule, CarrierMatchingRule maxRuleParent,
+                CarrierMatchingRule mnoRule) {
+            mMaxScore = maxScore;
+            mMaxRule = maxRule;
+            mMaxRuleParent = maxRuleParent;
+            mMnoRule = mnoRule;
+        }
+    }
+
     private CarrierMatchingRule getSubscriptionMatchingRule() {
         final String mccmnc = mTelephonyMgr.getSimOperatorNumericForPhone(mPhone.getPhoneId());
         final String iccid = mPhone.getIccSerialNumber();
@@ -743,46 +1093,29 @@ public class CarrierResolver extends Handler {
     }
 
     /**
-     * find the best matching carrier from candidates with matched subscription MCCMNC.
+     * identify the subscription carrier. The matching is skipped if neither the rules nor the
+     * subscription attributes changed since the last time.
      */
     private void matchSubscriptionCarrier() {
         if (!SubscriptionManager.isValidSubscriptionId(mPhone.getSubId())) {
             logd("[matchSubscriptionCarrier]" + "skip before sim records loaded");
             return;
         }
-        int maxScore = CarrierMatchingRule.SCORE_INVALID;
-        /**
-         * For child-parent relationship. either child and parent have the same matching
-         * score, or child's matching score > parents' matching score.
-         */
-        CarrierMatchingRule maxRule = null;
-        CarrierMatchingRule maxRuleParent = null;
-        /**
-         * matching rule with mccmnc only. If mnoRule is found, then mno carrier id equals to the
-         * cid from mnoRule. otherwise, mno carrier id is same as cid.
-         */
-        CarrierMatchingRule mnoRule = null;
         CarrierMatchingRule subscriptionRule = getSubscriptionMatchingRule();
-
-        for (CarrierMatchingRule rule : mCarrierMatchingRulesOnMccMnc) {
-            rule.match(subscriptionRule);
-            if (rule.mScore > maxScore) {
-                maxScore = rule.mScore;
-                maxRule = rule;
-                maxRuleParent = rule;
-            } else if (maxScore > CarrierMatchingRule.SCORE_INVALID && rule.mScore == maxScore) {
-                // to handle the case that child parent has the same matching score, we need to
-                // differentiate who is child who is parent.
-                if (rule.mParentCid == maxRule.mCid) {
-                    maxRule = rule;
-                } else if (maxRule.mParentCid == rule.mCid) {
-                    maxRuleParent = rule;
-                }
-            }
-            if (rule.mScore == CarrierMatchingRule.SCORE_MCCMNC) {
-                mnoRule = rule;
-            }
+        MatchResult result;
+        if (mLastMatchResult != null && subscriptionRule.hasSameAttributes(mLastSubscriptionRule)) {
+            if (VDBG) logd("[matchSubscriptionCarrier] reuse the last result");
+            result = mLastMatchResult;
+        } else {
+            result = findBestMatchingRules(subscriptionRule);
+            mLastSubscriptionRule = subscriptionRule;
+            mLastMatchResult = result;
         }
+        int maxScore = result.mMaxScore;
+        CarrierMatchingRule maxRule = result.mMaxRule;
+        CarrierMatchingRule maxRuleParent = result.mMaxRuleParent;
+        CarrierMatchingRule mnoRule = result.mMnoRule;
+
         if (maxScore == CarrierMatchingRule.SCORE_INVALID) {
             logd("[matchSubscriptionCarrier - no match] cid: " + TelephonyManager.UNKNOWN_CARRIER_ID
                     + " name: " + null);
@@ -790,13 +1123,6 @@ public class CarrierResolver extends Handler {
                     TelephonyManager.UNKNOWN_CARRIER_ID, null,
                     TelephonyManager.UNKNOWN_CARRIER_ID);
         } else {
-            // if there is a single matching result, check if this rule has parent cid assigned.
-            if ((maxRule == maxRuleParent)
-                    && maxRule.mParentCid != TelephonyManager.UNKNOWN_CARRIER_ID) {
-                maxRuleParent = new CarrierMatchingRule(maxRule);
-                maxRuleParent.mCid = maxRuleParent.mParentCid;
-                maxRuleParent.mName = getCarrierNameFromId(maxRuleParent.mCid);
-            }
             logd("[matchSubscriptionCarrier] specific cid: " + maxRule.mCid
                     + " specific name: " + maxRule.mName +" cid: " + maxRuleParent.mCid
                     + " name: " + maxRuleParent.mName);
@@ -853,6 +1179,53 @@ public class CarrierResolver extends Handler {
                 unknownMccmncToLog, unknownGid1ToLog, simInfo);
     }
 
+    /**
+     * find the best matching carrier from candidates with matched subscription MCCMNC.
+     */
+    private MatchResult findBestMatchingRules(CarrierMatchingRule subscriptionRule) {
+        int maxScore = CarrierMatchingRule.SCORE_INVALID;
+        /**
+         * For child-parent relationship. either child and parent have the same matching
+         * score, or child's matching score > parents' matching score.
+         */
+        CarrierMatchingRule maxRule = null;
+        CarrierMatchingRule maxRuleParent = null;
+        /**
+         * matching rule with mccmnc only. If mnoRule is found, then mno carrier id equals to the
+         * cid from mnoRule. otherwise, mno carrier id is same as cid.
+         */
+        CarrierMatchingRule mnoRule = null;
+
+        mCarrierMatchingRuleIndex.match(subscriptionRule);
+        for (CarrierMatchingRule rule : mCarrierMatchingRulesOnMccMnc) {
+            if (rule.mScore > maxScore) {
+                maxScore = rule.mScore;
+                maxRule = rule;
+                maxRuleParent = rule;
+            } else if (maxScore > CarrierMatchingRule.SCORE_INVALID && rule.mScore == maxScore) {
+                // to handle the case that child parent has the same matching score, we need to
+                // differentiate who is child who is parent.
+                if (rule.mParentCid == maxRule.mCid) {
+                    maxRule = rule;
+                } else if (maxRule.mParentCid == rule.mCid) {
+                    maxRuleParent = rule;
+                }
+            }
+            if (rule.mScore == CarrierMatchingRule.SCORE_MCCMNC) {
+                mnoRule = rule;
+            }
+        }
+
+        // if there is a single matching result, check if this rule has parent cid assigned.
+        if (maxRule != null && (maxRule == maxRuleParent)
+                && maxRule.mParentCid != TelephonyManager.UNKNOWN_CARRIER_ID) {
+            maxRuleParent = new CarrierMatchingRule(maxRule);
+            maxRuleParent.mCid = maxRuleParent.mParentCid;
+            maxRuleParent.mName = getCarrierNameFromId(maxRuleParent.mCid);
+        }
+        return new MatchResult(maxScore, maxRule, maxRuleParent, mnoRule);
+    }
+
     public int getCarrierListVersion() {
         final Cursor cursor = mContext.getContentResolver().query(
                 Uri.withAppendedPath(CarrierId.All.CONTENT_URI,
@@ -992,40 +1365,11 @@ public class CarrierResolver extends Handler {
 
     // static helper function to get carrier id from mccmnc
     public static int getCarrierIdFromMccMnc(@NonNull Context context, String mccmnc) {
-        try {
-            Cursor cursor = context.getContentResolver().query(
-                    CarrierId.All.CONTENT_URI,
-                    /* projection */ null,
-                    /* selection */ CarrierId.All.MCCMNC + "=? AND "
-                            + CarrierId.All.GID1 + " is NULL AND "
-                            + CarrierId.All.GID2 + " is NULL AND "
-                            + CarrierId.All.IMSI_PREFIX_XPATTERN + " is NULL AND "
-                            + CarrierId.All.SPN + " is NULL AND "
-                            + CarrierId.All.ICCID_PREFIX + " is NULL AND "
-                            + CarrierId.All.PLMN + " is NULL AND "
-                            + CarrierId.All.PRIVILEGE_ACCESS_RULE + " is NULL AND "
-                            + CarrierId.All.APN + " is NULL",
-                    /* selectionArgs */ new String[]{mccmnc},
-                    null);
-            try {
-                if (cursor != null) {
-                    if (VDBG) {
-                        logd("[getCarrierIdFromMccMnc]- " + cursor.getCount()
-                                + " Records(s) in DB" + " mccmnc: " + mccmnc);
-                    }
-                    while (cursor.moveToNext()) {
-                        return cursor.getInt(cursor.getColumnIndex(CarrierId.CARRIER_ID));
-                    }
-                }
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-            }
-        } catch (Exception ex) {
-            loge("[getCarrierIdFromMccMnc]- ex: " + ex);
-        }
-        return TelephonyManager.UNKNOWN_CARRIER_ID;
+        CarrierIdTable table = getCarrierIdTable(context);
+        int cid = (table == null) ? TelephonyManager.UNKNOWN_CARRIER_ID
+                : table.getMnoCarrierId(mccmnc);
+        if (VDBG) logd("[getCarrierIdFromMccMnc]- mccmnc: " + mccmnc + " cid: " + cid);
+        return cid;
     }
 
     private static boolean equals(String a, String b, boolean ignoreCase) {
@@ -1055,6 +1399,7 @@ public class CarrierResolver extends Handler {
         ipw.println("mCarrierName: " + mCarrierName);
         ipw.println("mSpecificCarrierName: " + mSpecificCarrierName);
         ipw.println("carrier_list_version: " + getCarrierListVersion());
+        ipw.println("carrier id table: " + sCarrierIdTable);
 
         ipw.println("mCarrierMatchingRules on mccmnc: "
                 + mTelephonyMgr.getSimOperatorNumericForPhone(mPhone.getPhoneId()));
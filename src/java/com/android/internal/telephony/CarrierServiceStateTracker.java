@@ -50,10 +50,7 @@ import java.util.Map;
 public class CarrierServiceStateTracker extends Handler {
     private static final String LOG_TAG = "CSST";
     protected static final int CARRIER_EVENT_BASE = 100;
-    protected static final int CARRIER_EVENT_VOICE_REGISTRATION = CARRIER_EVENT_BASE + 1;
-    protected static final int CARRIER_EVENT_VOICE_DEREGISTRATION = CARRIER_EVENT_BASE + 2;
-    protected static final int CARRIER_EVENT_DATA_REGISTRATION = CARRIER_EVENT_BASE + 3;
-    protected static final int CARRIER_EVENT_DATA_DEREGISTRATION = CARRIER_EVENT_BASE + 4;
+    protected static final int CARRIER_EVENT_REGISTRATION_STATE_CHANGED = CARRIER_EVENT_BASE + 1;
     protected static final int CARRIER_EVENT_IMS_CAPABILITIES_CHANGED = CARRIER_EVENT_BASE + 5;
 
     private static final int UNINITIALIZED_DELAY_VALUE = -1;
@@ -135,10 +132,7 @@ public class CarrierServiceStateTracker extends Handler {
     @Override
     public void handleMessage(Message msg) {
         switch (msg.what) {
-            case CARRIER_EVENT_VOICE_REGISTRATION:
-            case CARRIER_EVENT_DATA_REGISTRATION:
-            case CARRIER_EVENT_VOICE_DEREGISTRATION:
-            case CARRIER_EVENT_DATA_DEREGISTRATION:
+            case CARRIER_EVENT_REGISTRATION_STATE_CHANGED:
                 handleConfigChanges();
                 break;
             case CARRIER_EVENT_IMS_CAPABILITIES_CHANGED:
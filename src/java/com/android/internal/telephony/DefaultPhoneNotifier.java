@@ -23,6 +23,7 @@ import android.net.NetworkCapabilities;
 import android.os.Bundle;
 import android.os.RemoteException;
 import android.os.ServiceManager;
+import android.os.SystemClock;
 import android.telephony.CallQuality;
 import android.telephony.CellInfo;
 import android.telephony.CellLocation;
@@ -36,7 +37,10 @@ import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.telephony.data.ApnSetting;
 import android.telephony.ims.ImsReasonInfo;
+import android.util.SparseArray;
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -49,6 +53,42 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
     @UnsupportedAppUsage
     protected ITelephonyRegistry mRegistry;
 
+    // Notification types counted for dump()
+    private static final int NOTIFY_SERVICE_STATE = 0;
+    private static final int NOTIFY_SIGNAL_STRENGTH = 1;
+    private static final int NOTIFY_DATA_ACTIVITY = 2;
+    private static final int NOTIFY_PHYSICAL_CHANNEL_CONFIG = 3;
+    private static final int NOTIFY_CELL_INFO = 4;
+    private static final int NOTIFY_CALL_STATE = 5;
+    private static final int NOTIFY_DATA_CONNECTION = 6;
+    private static final String[] NOTIFY_TYPE_NAMES = {
+            "serviceState", "signalStrength", "dataActivity", "physicalChannelConfig",
+            "cellInfo", "callState", "dataConnection"};
+
+    private final long mCreationTimeMs = SystemClock.elapsedRealtime();
+    // Registry calls made and skipped because nothing changed, by notification type
+    private final int[] mNotifyCounts = new int[NOTIFY_TYPE_NAMES.length];
+    private final int[] mSkippedCounts = new int[NOTIFY_TYPE_NAMES.length];
+
+    /**
+     * The state last sent to the registry for a phone. The registry keeps the state and hands
+     * it to new listeners itself, so sending the same state again only wakes up the existing
+     * listeners for nothing.
+     */
+    private static final class LastNotifiedState {
+        final int mSubId;
+        ServiceState mServiceState;
+        int mDataActivity = -1;
+        List<PhysicalChannelConfig> mPhysicalChannelConfigs;
+
+        LastNotifiedState(int subId) {
+            mSubId = subId;
+        }
+    }
+
+    // Guarded by itself
+    private final SparseArray<LastNotifiedState> mLastNotifiedStates = new SparseArray<>();
+
     public DefaultPhoneNotifier() {
         mRegistry = ITelephonyRegistry.Stub.asInterface(ServiceManager.getService(
                     "telephony.registry"));
@@ -63,6 +103,7 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
         if (ringingCall != null && ringingCall.getEarliestConnection() != null) {
             incomingNumber = ringingCall.getEarliestConnection().getAddress();
         }
+        countNotify(NOTIFY_CALL_STATE);
         try {
             if (mRegistry != null) {
                   mRegistry.notifyCallStateForPhoneId(phoneId, subId,
@@ -86,6 +127,15 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
             ss = new ServiceState();
             ss.setStateOutOfService();
         }
+        synchronized (mLastNotifiedStates) {
+            LastNotifiedState last = getLastNotifiedState(phoneId, subId);
+            if (ss.equals(last.mServiceState)) {
+                mSkippedCounts[NOTIFY_SERVICE_STATE]++;
+                return;
+            }
+            last.mServiceState = new ServiceState(ss);
+            mNotifyCounts[NOTIFY_SERVICE_STATE]++;
+        }
         try {
             if (mRegistry != null) {
                 mRegistry.notifyServiceStateForPhoneId(phoneId, subId, ss);
@@ -104,6 +154,8 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
             Rlog.d(LOG_TAG, "notifySignalStrength: mRegistry=" + mRegistry
                     + " ss=" + sender.getSignalStrength() + " sender=" + sender);
         }
+        // ServiceStateTracker only notifies signal strength changes
+        countNotify(NOTIFY_SIGNAL_STRENGTH);
         try {
             if (mRegistry != null) {
                 mRegistry.notifySignalStrengthForPhoneId(phoneId, subId,
@@ -148,10 +200,19 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
     @Override
     public void notifyDataActivity(Phone sender) {
         int subId = sender.getSubId();
+        int dataActivity = convertDataActivityState(sender.getDataActivityState());
+        synchronized (mLastNotifiedStates) {
+            LastNotifiedState last = getLastNotifiedState(sender.getPhoneId(), subId);
+            if (dataActivity == last.mDataActivity) {
+                mSkippedCounts[NOTIFY_DATA_ACTIVITY]++;
+                return;
+            }
+            last.mDataActivity = dataActivity;
+            mNotifyCounts[NOTIFY_DATA_ACTIVITY]++;
+        }
         try {
             if (mRegistry != null) {
-                mRegistry.notifyDataActivityForSubscriber(subId,
-                        convertDataActivityState(sender.getDataActivityState()));
+                mRegistry.notifyDataActivityForSubscriber(subId, dataActivity);
             }
         } catch (RemoteException ex) {
             // system process is dead
@@ -186,6 +247,7 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
         ServiceState ss = sender.getServiceState();
         if (ss != null) roaming = ss.getDataRoaming();
 
+        countNotify(NOTIFY_DATA_CONNECTION);
         try {
             if (mRegistry != null) {
                 mRegistry.notifyDataConnectionForSubscriber(phoneId, subId,
@@ -232,6 +294,8 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
     @Override
     public void notifyCellInfo(Phone sender, List<CellInfo> cellInfo) {
         int subId = sender.getSubId();
+        // Cell info carries timestamps, so it is rarely worth comparing
+        countNotify(NOTIFY_CELL_INFO);
         try {
             if (mRegistry != null) {
                 mRegistry.notifyCellInfoForSubscriber(subId, cellInfo);
@@ -245,6 +309,15 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
     public void notifyPhysicalChannelConfiguration(Phone sender,
             List<PhysicalChannelConfig> configs) {
         int subId = sender.getSubId();
+        synchronized (mLastNotifiedStates) {
+            LastNotifiedState last = getLastNotifiedState(sender.getPhoneId(), subId);
+            if (configs != null && configs.equals(last.mPhysicalChannelConfigs)) {
+                mSkippedCounts[NOTIFY_PHYSICAL_CHANNEL_CONFIG]++;
+                return;
+            }
+            last.mPhysicalChannelConfigs = configs != null ? new ArrayList<>(configs) : null;
+            mNotifyCounts[NOTIFY_PHYSICAL_CHANNEL_CONFIG]++;
+        }
         try {
             if (mRegistry != null) {
                 mRegistry.notifyPhysicalChannelConfigurationForSubscriber(subId, configs);
@@ -402,6 +475,40 @@ public class DefaultPhoneNotifier implements PhoneNotifier {
         }
     }
 
+    /**
+     * Get the state last sent to the registry for a phone. The state is cleared when the
+     * subscription of the phone changes, as the registry notifies listeners by subscription.
+     */
+    private LastNotifiedState getLastNotifiedState(int phoneId, int subId) {
+        LastNotifiedState last = mLastNotifiedStates.get(phoneId);
+        if (last == null || last.mSubId != subId) {
+            last = new LastNotifiedState(subId);
+            mLastNotifiedStates.put(phoneId, last);
+        }
+        return last;
+    }
+
+    private void countNotify(int type) {
+        synchronized (mLastNotifiedStates) {
+            mNotifyCounts[type]++;
+        }
+    }
+
+    /**
+     * Dump the number of registry calls made and skipped by notification type.
+     */
+    public void dump(PrintWriter pw) {
+        long minutes = Math.max(1, (SystemClock.elapsedRealtime() - mCreationTimeMs) / 60000);
+        pw.println("DefaultPhoneNotifier:");
+        synchronized (mLastNotifiedStates) {
+            for (int i = 0; i < NOTIFY_TYPE_NAMES.length; i++) {
+                pw.println(" " + NOTIFY_TYPE_NAMES[i] + ": notified=" + mNotifyCounts[i]
+                        + " (" + mNotifyCounts[i] / minutes + "/min) skipped="
+                        + mSkippedCounts[i]);
+            }
+        }
+    }
+
     /**
      * Convert the {@link Phone.DataActivityState} enum into the TelephonyManager.DATA_* constants
      * for the public API.
@@ -34,9 +34,11 @@ import android.os.BatteryManager;
 import android.os.Handler;
 import android.os.Message;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.telephony.AccessNetworkConstants.AccessNetworkType;
 import android.telephony.CarrierConfigManager;
 import android.telephony.Rlog;
+import android.telephony.SignalStrength;
 import android.telephony.TelephonyManager;
 import android.util.LocalLog;
 import android.util.SparseIntArray;
@@ -75,10 +77,36 @@ public class DeviceStateMonitor extends Handler {
     static final int EVENT_RADIO_AVAILABLE              = 6;
     @VisibleForTesting
     static final int EVENT_WIFI_CONNECTION_CHANGED      = 7;
+    @VisibleForTesting
+    static final int EVENT_SIGNAL_STRENGTH_INDICATION   = 8;
+    @VisibleForTesting
+    static final int EVENT_DATA_ACTIVITY_CHANGED        = 9;
 
     // TODO(b/74006656) load hysteresis values from a property when DeviceStateMonitor starts
     private static final int HYSTERESIS_KBPS = 50;
 
+    /** Reporting criteria used while the signal is changing or data is used in the foreground */
+    @VisibleForTesting
+    static final int REPORTING_MODE_NORMAL = 0;
+    /** Reporting criteria used while the signal is stable and no data is used in the foreground */
+    @VisibleForTesting
+    static final int REPORTING_MODE_RELAXED = 1;
+    private static final int REPORTING_MODE_COUNT = 2;
+
+    // Hysteresis of the signal strength and link capacity reporting criteria, by reporting mode
+    private static final int[] REPORTING_HYSTERESIS_MS = new int[] {3000, 10000};
+    private static final int[] REPORTING_HYSTERESIS_DB = new int[] {2, 4};
+    private static final int[] REPORTING_HYSTERESIS_KBPS =
+            new int[] {HYSTERESIS_KBPS, 4 * HYSTERESIS_KBPS};
+
+    /** Number of recent signal strength indications used to decide if the signal is stable */
+    @VisibleForTesting
+    static final int SIGNAL_SAMPLE_COUNT = 8;
+    /** Maximum variance of the recent signal strength samples, in dB^2, for a stable signal */
+    private static final int STABLE_SIGNAL_MAX_VARIANCE = 4;
+    /** Time after the last data activity during which data is still considered in use */
+    private static final long DATA_ACTIVITY_HOLD_MS = 30 * 1000;
+
     private static final int WIFI_UNAVAILABLE = 0;
     private static final int WIFI_AVAILABLE = 1;
 
@@ -170,6 +198,22 @@ public class DeviceStateMonitor extends Handler {
     /** The minimum required wait time between cell info requests to the modem */
     private int mCellInfoMinInterval = CELL_INFO_INTERVAL_SHORT_MS;
 
+    /** Ring of the most recent signal strength indications in dBm */
+    private final int[] mSignalSamplesDbm = new int[SIGNAL_SAMPLE_COUNT];
+    /** Number of signal strength samples added since the last reset */
+    private int mSignalSampleCount;
+
+    /** Elapsed realtime of the last data activity, or 0 if none was seen */
+    private long mLastDataActivityMs;
+
+    /** The reporting criteria currently set to the modem. See REPORTING_MODE_XXX. */
+    private int mReportingMode = REPORTING_MODE_NORMAL;
+    /** Elapsed realtime when the current reporting mode was entered */
+    private long mReportingModeStartMs = SystemClock.elapsedRealtime();
+    /** Time spent in each reporting mode before the current one */
+    private final long[] mReportingModeDurationMs = new long[REPORTING_MODE_COUNT];
+    /** Signal strength indications received in each reporting mode */
+    private final long[] mSignalStrengthIndicationCounts = new long[REPORTING_MODE_COUNT];
 
     private SparseIntArray mUpdateModes = new SparseIntArray();
 
@@ -289,8 +333,10 @@ public class DeviceStateMonitor extends Handler {
         // The screen is on and we're either on cellular or charging. Screen on + Charging is
         // a likely vehicular scenario, even if there is a nomadic AP.
         if (mIsScreenOn && !mIsWifiConnected) {
-            // Screen on without WiFi - We are in a high power likely mobile situation.
-            return CELL_INFO_INTERVAL_SHORT_MS;
+            // Screen on without WiFi - We are in a high power likely mobile situation, unless the
+            // signal has been stable without foreground data, then the device is likely not moving.
+            return mReportingMode == REPORTING_MODE_RELAXED
+                    ? CELL_INFO_INTERVAL_LONG_MS : CELL_INFO_INTERVAL_SHORT_MS;
         } else if (mIsScreenOn && mIsCharging) {
             // Screen is on and we're charging, so we favor accuracy over power.
             return CELL_INFO_INTERVAL_SHORT_MS;
@@ -302,6 +348,42 @@ public class DeviceStateMonitor extends Handler {
         }
     }
 
+    /**
+     * @return True if the recent signal strength indications vary little.
+     */
+    private boolean isSignalStable() {
+        if (mSignalSampleCount < SIGNAL_SAMPLE_COUNT) return false;
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int dbm : mSignalSamplesDbm) {
+            sum += dbm;
+            sumOfSquares += (long) dbm * dbm;
+        }
+        // Compare n^2 * variance to avoid the divisions.
+        return SIGNAL_SAMPLE_COUNT * sumOfSquares - sum * sum
+                <= (long) STABLE_SIGNAL_MAX_VARIANCE * SIGNAL_SAMPLE_COUNT * SIGNAL_SAMPLE_COUNT;
+    }
+
+    /**
+     * @return True if data was recently used while the screen is on or tethering is on.
+     */
+    private boolean isForegroundDataActive() {
+        return (mIsScreenOn || mIsTetheringOn) && mLastDataActivityMs != 0
+                && SystemClock.elapsedRealtime() - mLastDataActivityMs < DATA_ACTIVITY_HOLD_MS;
+    }
+
+    /**
+     * @return The reporting criteria that should be set to the modem. See REPORTING_MODE_XXX.
+     */
+    private int computeReportingMode() {
+        // Indications are cheap while charging, and are needed to follow a changing signal or
+        // to estimate the link capacity while data is used in the foreground.
+        if (mIsCharging || isForegroundDataActive() || !isSignalStable()) {
+            return REPORTING_MODE_NORMAL;
+        }
+        return REPORTING_MODE_RELAXED;
+    }
+
     /**
      * @return True if signal strength update should be turned off.
      */
@@ -409,6 +491,24 @@ public class DeviceStateMonitor extends Handler {
         sendMessage(obtainMessage(EVENT_UPDATE_MODE_CHANGED, filters, mode));
     }
 
+    /**
+     * Notify an unsolicited signal strength indication from the modem.
+     *
+     * @param signalStrength The reported signal strength
+     */
+    public void notifySignalStrengthIndication(SignalStrength signalStrength) {
+        sendMessage(obtainMessage(EVENT_SIGNAL_STRENGTH_INDICATION, signalStrength));
+    }
+
+    /**
+     * Notify a change of the data activity.
+     *
+     * @param state The new data activity state
+     */
+    public void notifyDataActivity(PhoneInternalInterface.DataActivityState state) {
+        sendMessage(obtainMessage(EVENT_DATA_ACTIVITY_CHANGED, state));
+    }
+
     private void onSetIndicationUpdateMode(int filters, int mode) {
         if ((filters & TelephonyManager.INDICATION_FILTER_SIGNAL_STRENGTH) != 0) {
             mUpdateModes.put(TelephonyManager.INDICATION_FILTER_SIGNAL_STRENGTH, mode);
@@ -452,6 +552,12 @@ public class DeviceStateMonitor extends Handler {
             case EVENT_WIFI_CONNECTION_CHANGED:
                 onUpdateDeviceState(msg.what, msg.arg1 != WIFI_UNAVAILABLE);
                 break;
+            case EVENT_SIGNAL_STRENGTH_INDICATION:
+                onSignalStrengthIndication((SignalStrength) msg.obj);
+                break;
+            case EVENT_DATA_ACTIVITY_CHANGED:
+                onDataActivityChanged((PhoneInternalInterface.DataActivityState) msg.obj);
+                break;
             default:
                 throw new IllegalStateException("Unexpected message arrives. msg = " + msg.what);
         }
@@ -492,11 +598,8 @@ public class DeviceStateMonitor extends Handler {
                 return;
         }
 
-        final int newCellInfoMinInterval = computeCellInfoMinInterval();
-        if (mCellInfoMinInterval != newCellInfoMinInterval) {
-            mCellInfoMinInterval = newCellInfoMinInterval;
-            setCellInfoMinInterval(mCellInfoMinInterval);
-            log("CellInfo Min Interval Updated to " + newCellInfoMinInterval, true);
+        if (!updateReportingMode()) {
+            updateCellInfoMinInterval();
         }
 
         if (mIsLowDataExpected != isLowDataExpected()) {
@@ -528,6 +631,68 @@ public class DeviceStateMonitor extends Handler {
         setUnsolResponseFilter(newFilter, false);
     }
 
+    private void onSignalStrengthIndication(SignalStrength signalStrength) {
+        mSignalStrengthIndicationCounts[mReportingMode]++;
+        final int dbm = signalStrength.getDbm();
+        if (dbm == Integer.MAX_VALUE) {
+            // The signal is unknown, e.g. out of service, so it can't be considered stable.
+            mSignalSampleCount = 0;
+        } else {
+            mSignalSamplesDbm[mSignalSampleCount % SIGNAL_SAMPLE_COUNT] = dbm;
+            // Keep the count within [SIGNAL_SAMPLE_COUNT, 2 * SIGNAL_SAMPLE_COUNT) once the ring
+            // is full so it never overflows.
+            mSignalSampleCount = mSignalSampleCount >= 2 * SIGNAL_SAMPLE_COUNT - 1
+                    ? SIGNAL_SAMPLE_COUNT : mSignalSampleCount + 1;
+        }
+        updateReportingMode();
+    }
+
+    private void onDataActivityChanged(PhoneInternalInterface.DataActivityState state) {
+        switch (state) {
+            case DATAIN:
+            case DATAOUT:
+            case DATAINANDOUT:
+                mLastDataActivityMs = SystemClock.elapsedRealtime();
+                break;
+            default:
+                // Idle or dormant. Data is still considered in use until the hold time expires,
+                // which is checked again on the next indication.
+                break;
+        }
+        updateReportingMode();
+    }
+
+    /**
+     * Switch the reporting criteria of the modem if the signal stability, the data activity or
+     * the device state changed.
+     *
+     * @return True if the reporting mode changed.
+     */
+    private boolean updateReportingMode() {
+        final int newMode = computeReportingMode();
+        if (newMode == mReportingMode) return false;
+
+        final long now = SystemClock.elapsedRealtime();
+        mReportingModeDurationMs[mReportingMode] += now - mReportingModeStartMs;
+        mReportingModeStartMs = now;
+        mReportingMode = newMode;
+        log("Reporting mode updated to " + reportingModeToString(newMode), true);
+
+        setLinkCapacityReportingCriteria();
+        setReportingHysteresis();
+        updateCellInfoMinInterval();
+        return true;
+    }
+
+    private void updateCellInfoMinInterval() {
+        final int newCellInfoMinInterval = computeCellInfoMinInterval();
+        if (mCellInfoMinInterval != newCellInfoMinInterval) {
+            mCellInfoMinInterval = newCellInfoMinInterval;
+            setCellInfoMinInterval(mCellInfoMinInterval);
+            log("CellInfo Min Interval Updated to " + newCellInfoMinInterval, true);
+        }
+    }
+
     /**
      * Called when RIL is connected during boot up or radio becomes available after modem restart.
      *
@@ -541,6 +706,7 @@ public class DeviceStateMonitor extends Handler {
         sendDeviceState(LOW_DATA_EXPECTED, mIsLowDataExpected);
         sendDeviceState(POWER_SAVE_MODE, mIsPowerSaveOn);
         setUnsolResponseFilter(mUnsolicitedResponseFilter, true);
+        setReportingHysteresis();
         setSignalStrengthReportingCriteria();
         setLinkCapacityReportingCriteria();
         setCellInfoMinInterval(mCellInfoMinInterval);
@@ -598,14 +764,40 @@ public class DeviceStateMonitor extends Handler {
     }
 
     private void setLinkCapacityReportingCriteria() {
-        mPhone.setLinkCapacityReportingCriteria(LINK_CAPACITY_DOWNLINK_THRESHOLDS,
-                LINK_CAPACITY_UPLINK_THRESHOLDS, AccessNetworkType.GERAN);
-        mPhone.setLinkCapacityReportingCriteria(LINK_CAPACITY_DOWNLINK_THRESHOLDS,
-                LINK_CAPACITY_UPLINK_THRESHOLDS, AccessNetworkType.UTRAN);
-        mPhone.setLinkCapacityReportingCriteria(LINK_CAPACITY_DOWNLINK_THRESHOLDS,
-                LINK_CAPACITY_UPLINK_THRESHOLDS, AccessNetworkType.EUTRAN);
-        mPhone.setLinkCapacityReportingCriteria(LINK_CAPACITY_DOWNLINK_THRESHOLDS,
-                LINK_CAPACITY_UPLINK_THRESHOLDS, AccessNetworkType.CDMA2000);
+        final boolean relaxed = mReportingMode == REPORTING_MODE_RELAXED;
+        final int[] dlThresholds = relaxed
+                ? RELAXED_LINK_CAPACITY_DOWNLINK_THRESHOLDS : LINK_CAPACITY_DOWNLINK_THRESHOLDS;
+        final int[] ulThresholds = relaxed
+                ? RELAXED_LINK_CAPACITY_UPLINK_THRESHOLDS : LINK_CAPACITY_UPLINK_THRESHOLDS;
+        mPhone.setLinkCapacityReportingCriteria(dlThresholds, ulThresholds,
+                AccessNetworkType.GERAN);
+        mPhone.setLinkCapacityReportingCriteria(dlThresholds, ulThresholds,
+                AccessNetworkType.UTRAN);
+        mPhone.setLinkCapacityReportingCriteria(dlThresholds, ulThresholds,
+                AccessNetworkType.EUTRAN);
+        mPhone.setLinkCapacityReportingCriteria(dlThresholds, ulThresholds,
+                AccessNetworkType.CDMA2000);
+    }
+
+    private void setReportingHysteresis() {
+        mPhone.setReportingHysteresis(REPORTING_HYSTERESIS_MS[mReportingMode],
+                REPORTING_HYSTERESIS_DB[mReportingMode], REPORTING_HYSTERESIS_KBPS[mReportingMode]);
+    }
+
+    /**
+     * @return The current reporting mode. See REPORTING_MODE_XXX.
+     */
+    @VisibleForTesting
+    int getReportingMode() {
+        return mReportingMode;
+    }
+
+    private static String reportingModeToString(int mode) {
+        switch (mode) {
+            case REPORTING_MODE_NORMAL: return "NORMAL";
+            case REPORTING_MODE_RELAXED: return "RELAXED";
+            default: return "UNKNOWN";
+        }
     }
 
     private void setCellInfoMinInterval(int rate) {
@@ -691,6 +883,21 @@ public class DeviceStateMonitor extends Handler {
         ipw.println("mIsLowDataExpected=" + mIsLowDataExpected);
         ipw.println("mUnsolicitedResponseFilter=" + mUnsolicitedResponseFilter);
         ipw.println("mIsWifiConnected=" + mIsWifiConnected);
+        ipw.println("mCellInfoMinInterval=" + mCellInfoMinInterval);
+        ipw.println("mReportingMode=" + reportingModeToString(mReportingMode));
+        ipw.println("Signal strength indications per reporting mode:");
+        ipw.increaseIndent();
+        final long now = SystemClock.elapsedRealtime();
+        for (int mode = 0; mode < REPORTING_MODE_COUNT; mode++) {
+            long durationMs = mReportingModeDurationMs[mode];
+            if (mode == mReportingMode) durationMs += now - mReportingModeStartMs;
+            final long perMinute = durationMs > 0
+                    ? mSignalStrengthIndicationCounts[mode] * 60 * 1000 / durationMs : 0;
+            ipw.println(reportingModeToString(mode) + ": count="
+                    + mSignalStrengthIndicationCounts[mode] + ", durationMs=" + durationMs
+                    + ", perMinute=" + perMinute);
+        }
+        ipw.decreaseIndent();
         ipw.println("Local logs:");
         ipw.increaseIndent();
         mLocalLog.dump(fd, ipw, args);
@@ -776,6 +983,24 @@ public class DeviceStateMonitor extends Handler {
             1000000
     };
 
+    /**
+     * Downlink reporting thresholds in kbps used in {@link #REPORTING_MODE_RELAXED}, only keeping
+     * the steps between the main kinds of usage.
+     */
+    private static final int[] RELAXED_LINK_CAPACITY_DOWNLINK_THRESHOLDS = new int[] {
+            500,    // Web browsing
+            5000,   // HD video streaming
+            50000,  // LTE-Advanced speeds
+            500000  // 5G speeds
+    };
+
+    /** Uplink reporting thresholds in kbps used in {@link #REPORTING_MODE_RELAXED} */
+    private static final int[] RELAXED_LINK_CAPACITY_UPLINK_THRESHOLDS = new int[] {
+            500,
+            5000,   // HD video calling
+            50000
+    };
+
     /** Uplink reporting thresholds in kbps */
     private static final int[] LINK_CAPACITY_UPLINK_THRESHOLDS = new int[] {
             100,    // VoIP calls
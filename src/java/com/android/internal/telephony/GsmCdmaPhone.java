@@ -73,6 +73,7 @@ import android.telephony.data.ApnSetting;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import com.android.ims.ImsManager;
 import com.android.internal.annotations.VisibleForTesting;
@@ -215,6 +216,15 @@ public class GsmCdmaPhone extends Phone {
 
     private final SettingsObserver mSettingsObserver;
 
+    // Current hysteresis of the SignalStrength and LinkCapacityEstimate reporting criteria
+    private int mReportingHysteresisMs = REPORTING_HYSTERESIS_MILLIS;
+    private int mReportingHysteresisDb = REPORTING_HYSTERESIS_DB;
+    private int mReportingHysteresisKbps = REPORTING_HYSTERESIS_KBPS;
+    // Last reporting thresholds set for each access network, used to resend the criteria when the
+    // hysteresis changes
+    private final SparseArray<int[]> mSignalStrengthThresholds = new SparseArray<>();
+    private final SparseArray<Pair<int[], int[]>> mLinkCapacityThresholds = new SparseArray<>();
+
     // Constructors
 
     public GsmCdmaPhone(Context context, CommandsInterface ci, PhoneNotifier notifier, int phoneId,
@@ -3606,14 +3616,44 @@ public class GsmCdmaPhone extends Phone {
 
     @Override
     public void setSignalStrengthReportingCriteria(int[] thresholds, int ran) {
-        mCi.setSignalStrengthReportingCriteria(REPORTING_HYSTERESIS_MILLIS, REPORTING_HYSTERESIS_DB,
-                thresholds, ran, null);
+        synchronized (mSignalStrengthThresholds) {
+            mSignalStrengthThresholds.put(ran, thresholds);
+            mCi.setSignalStrengthReportingCriteria(mReportingHysteresisMs, mReportingHysteresisDb,
+                    thresholds, ran, null);
+        }
     }
 
     @Override
     public void setLinkCapacityReportingCriteria(int[] dlThresholds, int[] ulThresholds, int ran) {
-        mCi.setLinkCapacityReportingCriteria(REPORTING_HYSTERESIS_MILLIS, REPORTING_HYSTERESIS_KBPS,
-                REPORTING_HYSTERESIS_KBPS, dlThresholds, ulThresholds, ran, null);
+        synchronized (mSignalStrengthThresholds) {
+            mLinkCapacityThresholds.put(ran, new Pair<>(dlThresholds, ulThresholds));
+            mCi.setLinkCapacityReportingCriteria(mReportingHysteresisMs, mReportingHysteresisKbps,
+                    mReportingHysteresisKbps, dlThresholds, ulThresholds, ran, null);
+        }
+    }
+
+    @Override
+    public void setReportingHysteresis(int hysteresisMs, int hysteresisDb, int hysteresisKbps) {
+        synchronized (mSignalStrengthThresholds) {
+            if (hysteresisMs == mReportingHysteresisMs && hysteresisDb == mReportingHysteresisDb
+                    && hysteresisKbps == mReportingHysteresisKbps) {
+                return;
+            }
+            mReportingHysteresisMs = hysteresisMs;
+            mReportingHysteresisDb = hysteresisDb;
+            mReportingHysteresisKbps = hysteresisKbps;
+            for (int i = 0; i < mSignalStrengthThresholds.size(); i++) {
+                mCi.setSignalStrengthReportingCriteria(hysteresisMs, hysteresisDb,
+                        mSignalStrengthThresholds.valueAt(i), mSignalStrengthThresholds.keyAt(i),
+                        null);
+            }
+            for (int i = 0; i < mLinkCapacityThresholds.size(); i++) {
+                Pair<int[], int[]> thresholds = mLinkCapacityThresholds.valueAt(i);
+                mCi.setLinkCapacityReportingCriteria(hysteresisMs, hysteresisKbps, hysteresisKbps,
+                        thresholds.first, thresholds.second, mLinkCapacityThresholds.keyAt(i),
+                        null);
+            }
+        }
     }
 
     @Override
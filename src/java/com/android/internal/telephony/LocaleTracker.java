@@ -30,6 +30,7 @@ import android.os.AsyncResult;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.telephony.CellInfo;
 import android.telephony.CellInfoGsm;
 import android.telephony.CellInfoLte;
@@ -47,9 +48,12 @@ import com.android.internal.util.IndentingPrintWriter;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * The locale tracker keeps tracking the current locale of the phone.
@@ -85,6 +89,16 @@ public class LocaleTracker extends Handler {
     /** The delay for periodically getting cell info from the modem */
     private static final long CELL_INFO_PERIODIC_POLLING_DELAY_MS = 10 * MINUTE_IN_MILLIS;
 
+    // Todo: Read this from Settings.
+    /** The maximum age of cell info requested by another client that can be used for the MCC */
+    private static final long CELL_INFO_MAX_AGE_MS = MINUTE_IN_MILLIS;
+
+    /** The half-life of the weight of the MCCs seen in earlier cell info */
+    private static final long MCC_WEIGHT_HALF_LIFE_MS = 2 * MINUTE_IN_MILLIS;
+
+    /** The weight below which an MCC is dropped from the MCC histogram */
+    private static final float MCC_MIN_WEIGHT = 0.01f;
+
     /** The maximum fail count to prevent delay time overflow */
     private static final int MAX_FAIL_COUNT = 30;
 
@@ -103,6 +117,19 @@ public class LocaleTracker extends Handler {
     @Nullable
     private List<CellInfo> mCellInfoList;
 
+    /**
+     * Time decayed count of each MCC seen in the cell info. Updated as cell info arrives so the
+     * most seen MCC does not need to be recounted on each locale update.
+     */
+    private final Map<String, Float> mMccWeights = new HashMap<>();
+
+    /** Time of the last update of {@link #mMccWeights} */
+    private long mMccWeightsUpdateTime;
+
+    /** The MCC with the highest weight in {@link #mMccWeights} */
+    @Nullable
+    private String mCellInfoMcc;
+
     /** Count of invalid cell info we've got so far. Will reset once we get a successful one */
     private int mFailCellInfoCount;
 
@@ -141,7 +168,10 @@ public class LocaleTracker extends Handler {
     public void handleMessage(Message msg) {
         switch (msg.what) {
             case EVENT_REQUEST_CELL_INFO:
-                mPhone.requestCellInfoUpdate(null, obtainMessage(EVENT_RESPONSE_CELL_INFO));
+                // Recent cell info from the shared cache is good enough for the MCC, unless it is
+                // what we failed with last time.
+                mPhone.requestCellInfoUpdate(null, obtainMessage(EVENT_RESPONSE_CELL_INFO),
+                        mFailCellInfoCount == 0 ? CELL_INFO_MAX_AGE_MS : 0);
                 break;
 
             case EVENT_UNSOL_CELL_INFO:
@@ -209,35 +239,75 @@ public class LocaleTracker extends Handler {
      */
     @Nullable
     private String getMccFromCellInfo() {
-        String selectedMcc = null;
-        if (mCellInfoList != null) {
-            Map<String, Integer> countryCodeMap = new HashMap<>();
-            int maxCount = 0;
-            for (CellInfo cellInfo : mCellInfoList) {
-                String mcc = null;
-                if (cellInfo instanceof CellInfoGsm) {
-                    mcc = ((CellInfoGsm) cellInfo).getCellIdentity().getMccString();
-                } else if (cellInfo instanceof CellInfoLte) {
-                    mcc = ((CellInfoLte) cellInfo).getCellIdentity().getMccString();
-                } else if (cellInfo instanceof CellInfoWcdma) {
-                    mcc = ((CellInfoWcdma) cellInfo).getCellIdentity().getMccString();
-                }
-                if (mcc != null) {
-                    int count = 1;
-                    if (countryCodeMap.containsKey(mcc)) {
-                        count = countryCodeMap.get(mcc) + 1;
-                    }
-                    countryCodeMap.put(mcc, count);
-                    // This is unlikely, but if MCC from cell info looks different, we choose the
-                    // MCC that occurs most.
-                    if (count > maxCount) {
-                        maxCount = count;
-                        selectedMcc = mcc;
-                    }
+        return mCellInfoMcc;
+    }
+
+    /**
+     * Add the MCCs of new cell info to the MCC histogram. The weights of the MCCs seen before
+     * decay over time so the histogram follows the device across borders. Only the MCCs of the
+     * new cell info can be chosen, and the current MCC only changes when it is no longer seen or
+     * another one gets a strictly higher weight.
+     *
+     * @param cellInfoList The new cell info. Null or empty clears the histogram since no cell
+     *        can be seen anymore.
+     * @return True if the MCC from cell info changed.
+     */
+    private boolean updateMccWeights(@Nullable List<CellInfo> cellInfoList) {
+        final String oldMcc = mCellInfoMcc;
+        if (cellInfoList == null || cellInfoList.isEmpty()) {
+            mMccWeights.clear();
+            mCellInfoMcc = null;
+            return oldMcc != null;
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+        if (!mMccWeights.isEmpty()) {
+            final float decay = (float) Math.pow(0.5,
+                    (double) (now - mMccWeightsUpdateTime) / MCC_WEIGHT_HALF_LIFE_MS);
+            Iterator<Map.Entry<String, Float>> it = mMccWeights.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Float> entry = it.next();
+                final float weight = entry.getValue() * decay;
+                if (weight < MCC_MIN_WEIGHT) {
+                    it.remove();
+                } else {
+                    entry.setValue(weight);
                 }
             }
         }
-        return selectedMcc;
+        mMccWeightsUpdateTime = now;
+
+        final Set<String> visibleMccs = new HashSet<>();
+        for (CellInfo cellInfo : cellInfoList) {
+            String mcc = null;
+            if (cellInfo instanceof CellInfoGsm) {
+                mcc = ((CellInfoGsm) cellInfo).getCellIdentity().getMccString();
+            } else if (cellInfo instanceof CellInfoLte) {
+                mcc = ((CellInfoLte) cellInfo).getCellIdentity().getMccString();
+            } else if (cellInfo instanceof CellInfoWcdma) {
+                mcc = ((CellInfoWcdma) cellInfo).getCellIdentity().getMccString();
+            }
+            if (mcc != null) {
+                visibleMccs.add(mcc);
+                final Float weight = mMccWeights.get(mcc);
+                mMccWeights.put(mcc, weight != null ? weight + 1 : 1f);
+            }
+        }
+
+        // This is unlikely, but if MCC from cell info looks different, we choose the MCC that
+        // occurs most among the ones still seen, so an MCC left behind across a border cannot
+        // win on its past weight.
+        String selectedMcc = visibleMccs.contains(oldMcc) ? oldMcc : null;
+        float maxWeight = selectedMcc != null ? mMccWeights.get(selectedMcc) : 0;
+        for (String mcc : visibleMccs) {
+            final float weight = mMccWeights.get(mcc);
+            if (weight > maxWeight) {
+                maxWeight = weight;
+                selectedMcc = mcc;
+            }
+        }
+        mCellInfoMcc = selectedMcc;
+        return !Objects.equals(oldMcc, selectedMcc);
     }
 
     /**
@@ -259,6 +329,9 @@ public class LocaleTracker extends Handler {
      * @param serviceState Service state
      */
     private void onServiceStateChanged(ServiceState serviceState) {
+        // Only the voice registration state is used here, other service state changes need no
+        // locale update.
+        if (mLastServiceState == serviceState.getState()) return;
         mLastServiceState = serviceState.getState();
         updateLocale();
         updateTrackingStatus();
@@ -283,13 +356,18 @@ public class LocaleTracker extends Handler {
     private void processCellInfo(AsyncResult ar) {
         if (ar == null || ar.exception != null) {
             mCellInfoList = null;
+            updateMccWeights(null);
             return;
         }
         List<CellInfo> cellInfoList = (List<CellInfo>) ar.result;
         String msg = "processCellInfo: cell info=" + cellInfoList;
         if (DBG) log(msg);
         mCellInfoList = cellInfoList;
-        updateLocale();
+        // The locale only depends on the cell info through its MCC, so there is nothing to
+        // update if that did not change.
+        if (updateMccWeights(cellInfoList)) {
+            updateLocale();
+        }
     }
 
     private void requestNextCellInfo(boolean succeeded) {
@@ -357,6 +435,7 @@ public class LocaleTracker extends Handler {
         if (DBG) log(msg);
         mLocalLog.log(msg);
         mCellInfoList = null;
+        updateMccWeights(null);
         resetCellInfoRetry();
     }
 
@@ -462,6 +541,8 @@ public class LocaleTracker extends Handler {
         ipw.println("mOperatorNumeric = " + mOperatorNumeric);
         ipw.println("mSimState = " + mSimState);
         ipw.println("mCellInfoList = " + mCellInfoList);
+        ipw.println("mMccWeights = " + mMccWeights);
+        ipw.println("mCellInfoMcc = " + mCellInfoMcc);
         ipw.println("mCurrentCountryIso = " + mCurrentCountryIso);
         ipw.println("mFailCellInfoCount = " + mFailCellInfoCount);
         ipw.println("Local logs:");
@@ -50,6 +50,15 @@ public final class MccTable {
 
     static ArrayList<MccEntry> sTable;
 
+    // MCCs are three decimal digits, so entries are indexed directly by MCC.
+    private static final int MCC_COUNT = 1000;
+    private static final MccEntry[] sEntryByMcc = new MccEntry[MCC_COUNT];
+
+    // Lazily computed defaults per MCC. Both only depend on data which is fixed while the
+    // process runs, the time zone rules of TimeZoneFinder and the likely subtags of ICU.
+    private static final Map<Integer, String> sDefaultTimeZoneByMcc = new HashMap<>();
+    private static final Map<Integer, String> sDefaultLanguageByMcc = new HashMap<>();
+
     static class MccEntry implements Comparable<MccEntry> {
         final int mMcc;
         @UnsupportedAppUsage
@@ -73,15 +82,10 @@ public final class MccTable {
 
     @UnsupportedAppUsage
     private static MccEntry entryForMcc(int mcc) {
-        MccEntry m = new MccEntry(mcc, "", 0);
-
-        int index = Collections.binarySearch(sTable, m);
-
-        if (index < 0) {
+        if (mcc < 0 || mcc >= MCC_COUNT) {
             return null;
-        } else {
-            return sTable.get(index);
         }
+        return sEntryByMcc[mcc];
     }
 
     /**
@@ -95,8 +99,18 @@ public final class MccTable {
         if (entry == null) {
             return null;
         }
+        synchronized (sDefaultTimeZoneByMcc) {
+            if (sDefaultTimeZoneByMcc.containsKey(mcc)) {
+                return sDefaultTimeZoneByMcc.get(mcc);
+            }
+        }
         final String lowerCaseCountryCode = entry.mIso;
-        return TimeZoneFinder.getInstance().lookupDefaultTimeZoneIdByCountry(lowerCaseCountryCode);
+        String zoneId =
+                TimeZoneFinder.getInstance().lookupDefaultTimeZoneIdByCountry(lowerCaseCountryCode);
+        synchronized (sDefaultTimeZoneByMcc) {
+            sDefaultTimeZoneByMcc.put(mcc, zoneId);
+        }
+        return zoneId;
     }
 
     /**
@@ -148,11 +162,21 @@ public final class MccTable {
             return "en";
         }
 
+        synchronized (sDefaultLanguageByMcc) {
+            String language = sDefaultLanguageByMcc.get(mcc);
+            if (language != null) {
+                return language;
+            }
+        }
+
         // Ask CLDR for the language this country uses...
         Locale likelyLocale = ICU.addLikelySubtags(new Locale("und", country));
         String likelyLanguage = likelyLocale.getLanguage();
         Slog.d(LOG_TAG, "defaultLanguageForMcc(" + mcc + "): country " + country + " uses " +
                likelyLanguage);
+        synchronized (sDefaultLanguageByMcc) {
+            sDefaultLanguageByMcc.put(mcc, likelyLanguage);
+        }
         return likelyLanguage;
     }
 
@@ -669,5 +693,10 @@ public final class MccTable {
         //table.add(new MccEntry(901,"",2));	//"International Mobile, shared code"
 
         Collections.sort(sTable);
+        for (MccEntry entry : sTable) {
+            if (sEntryByMcc[entry.mMcc] == null) {
+                sEntryByMcc[entry.mMcc] = entry;
+            }
+        }
     }
 }
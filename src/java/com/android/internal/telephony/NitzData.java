@@ -22,7 +22,6 @@ import android.telephony.Rlog;
 
 import com.android.internal.annotations.VisibleForTesting;
 
-import java.util.Calendar;
 import java.util.TimeZone;
 
 /**
@@ -34,8 +33,11 @@ import java.util.TimeZone;
 @VisibleForTesting(visibility = PACKAGE)
 public final class NitzData {
     private static final String LOG_TAG = ServiceStateTracker.LOG_TAG;
+    private static final int MS_PER_SECOND = 1000;
+    private static final int MS_PER_MINUTE = 60 * 1000;
     private static final int MS_PER_QUARTER_HOUR = 15 * 60 * 1000;
     private static final int MS_PER_HOUR = 60 * 60 * 1000;
+    private static final long MS_PER_DAY = 24 * 60 * 60 * 1000L;
 
     /* Time stamp after 19 January 2038 is not supported under 32 bit */
     private static final int MAX_NITZ_YEAR = 2037;
@@ -70,53 +72,69 @@ public final class NitzData {
         // "yy/mm/dd,hh:mm:ss(+/-)tz[,dt[,tzid]]"
         // tz, dt are in number of quarter-hours
 
+        // The fields are parsed in a single pass without regex, substrings or a Calendar since
+        // NITZ is received on every network time update. Any of the separators is accepted
+        // between any two fields, and trailing separators are ignored.
         try {
-            /* NITZ time (hour:min:sec) will be in UTC but it supplies the timezone
-             * offset as well (which we won't worry about until later) */
-            Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-            c.clear();
-            c.set(Calendar.DST_OFFSET, 0);
-
-            String[] nitzSubs = nitz.split("[/:,+-]");
+            int end = nitz.length();
+            while (end > 0 && isSeparator(nitz.charAt(end - 1))) {
+                end--;
+            }
 
-            int year = 2000 + Integer.parseInt(nitzSubs[0]);
+            int pos = 0;
+            int fieldEnd = findFieldEnd(nitz, pos, end);
+            int year = 2000 + parseField(nitz, pos, fieldEnd);
             if (year > MAX_NITZ_YEAR) {
                 if (ServiceStateTracker.DBG) {
                     Rlog.e(LOG_TAG, "NITZ year: " + year + " exceeds limit, skip NITZ time update");
                 }
                 return null;
             }
-            c.set(Calendar.YEAR, year);
 
+            pos = fieldEnd + 1;
+            fieldEnd = findFieldEnd(nitz, pos, end);
             // month is 0 based!
-            int month = Integer.parseInt(nitzSubs[1]) - 1;
-            c.set(Calendar.MONTH, month);
+            int month = parseField(nitz, pos, fieldEnd) - 1;
+
+            pos = fieldEnd + 1;
+            fieldEnd = findFieldEnd(nitz, pos, end);
+            int date = parseField(nitz, pos, fieldEnd);
 
-            int date = Integer.parseInt(nitzSubs[2]);
-            c.set(Calendar.DATE, date);
+            pos = fieldEnd + 1;
+            fieldEnd = findFieldEnd(nitz, pos, end);
+            int hour = parseField(nitz, pos, fieldEnd);
 
-            int hour = Integer.parseInt(nitzSubs[3]);
-            c.set(Calendar.HOUR, hour);
+            pos = fieldEnd + 1;
+            fieldEnd = findFieldEnd(nitz, pos, end);
+            int minute = parseField(nitz, pos, fieldEnd);
 
-            int minute = Integer.parseInt(nitzSubs[4]);
-            c.set(Calendar.MINUTE, minute);
+            pos = fieldEnd + 1;
+            fieldEnd = findFieldEnd(nitz, pos, end);
+            int second = parseField(nitz, pos, fieldEnd);
 
-            int second = Integer.parseInt(nitzSubs[5]);
-            c.set(Calendar.SECOND, second);
+            // NITZ time (hour:min:sec) is in UTC. Out of range values roll over into the next
+            // field as they do with a lenient Calendar.
+            year += Math.floorDiv(month, 12);
+            month = Math.floorMod(month, 12);
+            long utcTimeMillis = (daysSinceEpoch(year, month + 1, 1) + date - 1) * MS_PER_DAY
+                    + hour * (long) MS_PER_HOUR + minute * (long) MS_PER_MINUTE
+                    + second * (long) MS_PER_SECOND;
 
             // The offset received from NITZ is the offset to add to get current local time.
             boolean sign = (nitz.indexOf('-') == -1);
-            int totalUtcOffsetQuarterHours = Integer.parseInt(nitzSubs[6]);
+            pos = fieldEnd + 1;
+            fieldEnd = findFieldEnd(nitz, pos, end);
+            int totalUtcOffsetQuarterHours = parseField(nitz, pos, fieldEnd);
             int totalUtcOffsetMillis =
                     (sign ? 1 : -1) * totalUtcOffsetQuarterHours * MS_PER_QUARTER_HOUR;
 
             // DST correction is already applied to the UTC offset. We could subtract it if we
             // wanted the raw offset.
-            Integer dstAdjustmentHours =
-                    (nitzSubs.length >= 8) ? Integer.parseInt(nitzSubs[7]) : null;
             Integer dstAdjustmentMillis = null;
-            if (dstAdjustmentHours != null) {
-                dstAdjustmentMillis = dstAdjustmentHours * MS_PER_HOUR;
+            pos = fieldEnd + 1;
+            if (pos < end) {
+                fieldEnd = findFieldEnd(nitz, pos, end);
+                dstAdjustmentMillis = parseField(nitz, pos, fieldEnd) * MS_PER_HOUR;
             }
 
             // As a special extension, the Android emulator appends the name of
@@ -124,18 +142,78 @@ public final class NitzData {
             // timezone name of the form Area!Location or Area!Location!SubLocation
             // so we need to convert the ! into /
             TimeZone zone = null;
-            if (nitzSubs.length >= 9) {
-                String tzname = nitzSubs[8].replace('!', '/');
+            pos = fieldEnd + 1;
+            if (dstAdjustmentMillis != null && pos < end) {
+                fieldEnd = findFieldEnd(nitz, pos, end);
+                String tzname = nitz.substring(pos, fieldEnd).replace('!', '/');
                 zone = TimeZone.getTimeZone(tzname);
             }
             return new NitzData(nitz, totalUtcOffsetMillis, dstAdjustmentMillis,
-                    c.getTimeInMillis(), zone);
+                    utcTimeMillis, zone);
         } catch (RuntimeException ex) {
             Rlog.e(LOG_TAG, "NITZ: Parsing NITZ time " + nitz + " ex=" + ex);
             return null;
         }
     }
 
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == ':' || c == ',' || c == '+' || c == '-';
+    }
+
+    /**
+     * Returns the index of the separator ending the field starting at {@code start}, or
+     * {@code end} for the last field.
+     *
+     * @throws IllegalArgumentException if there is no field at {@code start}.
+     */
+    private static int findFieldEnd(String nitz, int start, int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("Missing field at " + start);
+        }
+        int pos = start;
+        while (pos < end && !isSeparator(nitz.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Parses the non-negative decimal field between {@code start} and {@code end}.
+     *
+     * @throws NumberFormatException if the field is empty, not decimal or too large.
+     */
+    private static int parseField(String nitz, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("Empty field at " + start);
+        }
+        int value = 0;
+        for (int pos = start; pos < end; pos++) {
+            int digit = Character.digit(nitz.charAt(pos), 10);
+            if (digit < 0 || value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Invalid field at " + start);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of days between 1970-01-01 and the given proleptic Gregorian date.
+     *
+     * @param month 1 to 12
+     */
+    private static long daysSinceEpoch(long year, int month, int day) {
+        // Count years from March so that the leap day is the last day of the year.
+        if (month <= 2) {
+            year--;
+        }
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
     /** A method for use in tests to create NitzData instances. */
     public static NitzData createForTests(int zoneOffsetMillis, Integer dstOffsetMillis,
             long utcTimeMillis, TimeZone emulatorHostTimeZone) {
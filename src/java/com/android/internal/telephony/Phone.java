@@ -1879,6 +1879,15 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
         getServiceStateTracker().requestAllCellInfo(workSource, rspMsg);
     }
 
+    /**
+     * @param workSource calling WorkSource
+     * @param rspMsg the response message containing the cell info
+     * @param maxAgeMs the maximum acceptable age of the cached cell info, in milliseconds
+     */
+    public void requestCellInfoUpdate(WorkSource workSource, Message rspMsg, long maxAgeMs) {
+        getServiceStateTracker().requestAllCellInfo(workSource, rspMsg, maxAgeMs);
+    }
+
     /**
      * @return the current cell location if known
      */
@@ -2320,6 +2329,9 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
 
     public void notifyDataActivity() {
         mNotifier.notifyDataActivity(this);
+        if (mDeviceStateMonitor != null) {
+            mDeviceStateMonitor.notifyDataActivity(getDataActivityState());
+        }
     }
 
     private void notifyMessageWaitingIndicator() {
@@ -2366,6 +2378,13 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
         mNotifier.notifySignalStrength(this);
     }
 
+    /** Called on each unsolicited signal strength indication from the modem. */
+    public void notifySignalStrengthIndication(SignalStrength signalStrength) {
+        if (mDeviceStateMonitor != null) {
+            mDeviceStateMonitor.notifySignalStrengthIndication(signalStrength);
+        }
+    }
+
     public PhoneConstants.DataState getDataConnectionState(String apnType) {
         return PhoneConstants.DataState.DISCONNECTED;
     }
@@ -3830,6 +3849,14 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
         // no-op default implementation
     }
 
+    /**
+     * Sets the hysteresis used by the SignalStrength and LinkCapacityEstimate reporting criteria.
+     * The thresholds previously set for each access network are sent again with the new values.
+     */
+    public void setReportingHysteresis(int hysteresisMs, int hysteresisDb, int hysteresisKbps) {
+        // no-op default implementation
+    }
+
     /**
      * Get allowed carriers
      */
@@ -539,6 +539,12 @@ public class PhoneFactory {
             pw.println("++++++++++++++++++++++++++++++++");
         }
 
+        if (sPhoneNotifier instanceof DefaultPhoneNotifier) {
+            ((DefaultPhoneNotifier) sPhoneNotifier).dump(pw);
+            pw.flush();
+            pw.println("++++++++++++++++++++++++++++++++");
+        }
+
         pw.println("SubscriptionMonitor:");
         pw.increaseIndent();
         try {
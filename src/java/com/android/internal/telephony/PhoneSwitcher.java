@@ -66,8 +66,11 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -149,7 +152,52 @@ public class PhoneSwitcher extends Handler {
         }
     }
 
-    private final List<DcRequest> mPrioritizedDcRequests = new ArrayList<DcRequest>();
+    /**
+     * A network request together with the subscription it asks for, parsed once from its network
+     * specifier when the request is added.
+     */
+    private static final class PrioritizedRequest {
+        final DcRequest dcRequest;
+        final int subId;
+        final boolean isUnrestrictedInternet;
+        // Arrival order, so requests of the same priority keep first come first served order
+        final long sequence;
+
+        PrioritizedRequest(DcRequest dcRequest, int subId, long sequence) {
+            this.dcRequest = dcRequest;
+            this.subId = subId;
+            this.isUnrestrictedInternet = isUnrestrictedInternetRequest(dcRequest.networkRequest);
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<PrioritizedRequest> PRIORITY_ORDER = (a, b) -> {
+        int result = a.dcRequest.compareTo(b.dcRequest);
+        return result != 0 ? result : Long.compare(a.sequence, b.sequence);
+    };
+
+    /**
+     * The requests that always map to the same phone, i.e. that have the same subscription and
+     * kind, in priority order. Only the highest priority request of a bucket matters when choosing
+     * the active phones.
+     */
+    private static final class RequestBucket {
+        final int subId;
+        final boolean isUnrestrictedInternet;
+        final TreeSet<PrioritizedRequest> requests = new TreeSet<>(PRIORITY_ORDER);
+
+        RequestBucket(int subId, boolean isUnrestrictedInternet) {
+            this.subId = subId;
+            this.isUnrestrictedInternet = isUnrestrictedInternet;
+        }
+    }
+
+    private static final Comparator<RequestBucket> BUCKET_PRIORITY_ORDER =
+            (a, b) -> PRIORITY_ORDER.compare(a.requests.first(), b.requests.first());
+
+    private final Map<NetworkRequest, PrioritizedRequest> mDcRequests = new HashMap<>();
+    private final List<RequestBucket> mRequestBuckets = new ArrayList<>();
+    private long mNextRequestSequence;
     private final RegistrantList mActivePhoneRegistrants;
     private final SubscriptionController mSubscriptionController;
     private final int[] mPhoneSubscriptions;
@@ -657,24 +705,42 @@ public class PhoneSwitcher extends Handler {
     }
 
     private void onRequestNetwork(NetworkRequest networkRequest) {
-        final DcRequest dcRequest = new DcRequest(networkRequest, mContext);
-        if (!mPrioritizedDcRequests.contains(dcRequest)) {
+        if (!mDcRequests.containsKey(networkRequest)) {
             collectRequestNetworkMetrics(networkRequest);
-            mPrioritizedDcRequests.add(dcRequest);
-            Collections.sort(mPrioritizedDcRequests);
+            final PrioritizedRequest request = new PrioritizedRequest(
+                    new DcRequest(networkRequest, mContext),
+                    getSubIdFromNetworkRequest(networkRequest), mNextRequestSequence++);
+            mDcRequests.put(networkRequest, request);
+            getRequestBucket(request.subId, request.isUnrestrictedInternet).requests.add(request);
             onEvaluate(REQUESTS_CHANGED, "netRequest");
         }
     }
 
     private void onReleaseNetwork(NetworkRequest networkRequest) {
-        final DcRequest dcRequest = new DcRequest(networkRequest, mContext);
+        final PrioritizedRequest request = mDcRequests.remove(networkRequest);
 
-        if (mPrioritizedDcRequests.remove(dcRequest)) {
+        if (request != null) {
+            RequestBucket bucket = getRequestBucket(request.subId, request.isUnrestrictedInternet);
+            bucket.requests.remove(request);
+            if (bucket.requests.isEmpty()) {
+                mRequestBuckets.remove(bucket);
+            }
             onEvaluate(REQUESTS_CHANGED, "netReleased");
             collectReleaseNetworkMetrics(networkRequest);
         }
     }
 
+    private RequestBucket getRequestBucket(int subId, boolean isUnrestrictedInternet) {
+        for (RequestBucket bucket : mRequestBuckets) {
+            if (bucket.subId == subId && bucket.isUnrestrictedInternet == isUnrestrictedInternet) {
+                return bucket;
+            }
+        }
+        RequestBucket bucket = new RequestBucket(subId, isUnrestrictedInternet);
+        mRequestBuckets.add(bucket);
+        return bucket;
+    }
+
     private void removeDefaultNetworkChangeCallback() {
         synchronized (mHasRegisteredDefaultNetworkChangeCallback) {
             if (mHasRegisteredDefaultNetworkChangeCallback) {
@@ -812,8 +878,13 @@ public class PhoneSwitcher extends Handler {
                         newActivePhones.add(mPhones[i].getPhoneId());
                     }
                 } else {
-                    for (DcRequest dcRequest : mPrioritizedDcRequests) {
-                        int phoneIdForRequest = phoneIdForRequest(dcRequest.networkRequest);
+                    // All requests of a bucket map to the same phone, so walking the buckets in
+                    // the order of their highest priority request picks the same phones as
+                    // walking every request, without depending on the number of requests.
+                    mRequestBuckets.sort(BUCKET_PRIORITY_ORDER);
+                    for (RequestBucket bucket : mRequestBuckets) {
+                        int phoneIdForRequest = phoneIdForRequest(bucket.subId,
+                                bucket.isUnrestrictedInternet);
                         if (phoneIdForRequest == INVALID_PHONE_INDEX) continue;
                         if (newActivePhones.contains(phoneIdForRequest)) continue;
                         newActivePhones.add(phoneIdForRequest);
@@ -947,8 +1018,11 @@ public class PhoneSwitcher extends Handler {
     }
 
     private int phoneIdForRequest(NetworkRequest netRequest) {
-        int subId = getSubIdFromNetworkRequest(netRequest);
+        return phoneIdForRequest(getSubIdFromNetworkRequest(netRequest),
+                isUnrestrictedInternetRequest(netRequest));
+    }
 
+    private int phoneIdForRequest(int subId, boolean isUnrestrictedInternet) {
         if (subId == DEFAULT_SUBSCRIPTION_ID) return mPreferredDataPhoneId;
         if (subId == INVALID_SUBSCRIPTION_ID) return INVALID_PHONE_INDEX;
 
@@ -961,9 +1035,8 @@ public class PhoneSwitcher extends Handler {
         // preferred data subscription or no specified subscription.
         // One exception is, if it's restricted request (doesn't have NET_CAPABILITY_NOT_RESTRICTED)
         // it will be accepted, which is used temporary data usage from system.
-        if (netRequest.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
-                && netRequest.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_RESTRICTED)
-                && subId != preferredDataSubId && subId != mValidator.getSubIdInValidation()) {
+        if (isUnrestrictedInternet && subId != preferredDataSubId
+                && subId != mValidator.getSubIdInValidation()) {
             // Returning INVALID_PHONE_INDEX will result in netRequest not being handled.
             return INVALID_PHONE_INDEX;
         }
@@ -979,6 +1052,11 @@ public class PhoneSwitcher extends Handler {
         return phoneId;
     }
 
+    private static boolean isUnrestrictedInternetRequest(NetworkRequest netRequest) {
+        return netRequest.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && netRequest.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_RESTRICTED);
+    }
+
     private int getSubIdFromNetworkRequest(NetworkRequest networkRequest) {
         NetworkSpecifier specifier = networkRequest.networkCapabilities.getNetworkSpecifier();
         if (specifier == null) {
@@ -1297,6 +1375,8 @@ public class PhoneSwitcher extends Handler {
                     (ps.lastRequested == 0 ? "never" :
                      String.format("%tm-%td %tH:%tM:%tS.%tL", c, c, c, c, c, c)));
         }
+        pw.println("Network requests=" + mDcRequests.size() + ", buckets="
+                + mRequestBuckets.size());
         pw.increaseIndent();
         mLocalLog.dump(fd, pw, args);
         pw.decreaseIndent();
@@ -27,7 +27,11 @@ import android.telephony.data.ApnSetting;
 import android.text.TextUtils;
 import android.util.Pair;
 
+import com.android.internal.annotations.VisibleForTesting;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -162,35 +166,135 @@ public class RetryManager {
     private int mSameApnRetryCount = 0;
 
     /**
-     * Retry record with times in milli-seconds
-     */
-    private static class RetryRec {
-        RetryRec(int delayTime, int randomizationTime) {
-            mDelayTime = delayTime;
-            mRandomizationTime = randomizationTime;
+     * A compiled retry configuration string, with times in milli-seconds. Immutable, so the
+     * policy of a configuration string is compiled once and shared by all retry managers using
+     * that string, see {@link #getRetryPolicy}.
+     */
+    @VisibleForTesting
+    static final class RetryPolicy {
+        /** The configuration string this policy was compiled from */
+        final String mConfig;
+        /** Delay of each retry, the last one is used for all further retries */
+        final int[] mDelayTimes;
+        /** Randomization of each retry in mDelayTimes */
+        final int[] mRandomizationTimes;
+        /** The maximum number of retries to attempt */
+        final int mMaxRetryCount;
+        /** Whether retrying forever regardless the maximum retry count mMaxRetryCount */
+        final boolean mRetryForever;
+        /** Whether the whole configuration string was parsed successfully */
+        final boolean mValid;
+
+        private RetryPolicy(String config, int[] delayTimes, int[] randomizationTimes,
+                int maxRetryCount, boolean retryForever, boolean valid) {
+            mConfig = config;
+            mDelayTimes = delayTimes;
+            mRandomizationTimes = randomizationTimes;
+            mMaxRetryCount = maxRetryCount;
+            mRetryForever = retryForever;
+            mValid = valid;
         }
 
-        int mDelayTime;
-        int mRandomizationTime;
+        /**
+         * Compile a configuration string, see the class comments of {@link RetryManager} for the
+         * format. If the string is invalid, the policy holds what was parsed before the error.
+         *
+         * @param configStr the configuration string, without the APN type.
+         * @return the policy
+         */
+        static RetryPolicy compile(String configStr) {
+            ArrayList<Integer> delayTimes = new ArrayList<>();
+            ArrayList<Integer> randomizationTimes = new ArrayList<>();
+            int maxRetryCount = 0;
+            boolean retryForever = false;
+
+            boolean valid = true;
+            if (!TextUtils.isEmpty(configStr)) {
+                int defaultRandomization = 0;
+
+                String strArray[] = configStr.split(",");
+                for (int i = 0; i < strArray.length && valid; i++) {
+                    if (VDBG) Rlog.d(LOG_TAG, "compile: strArray[" + i + "]='" + strArray[i] + "'");
+                    Pair<Boolean, Integer> value;
+                    String splitStr[] = strArray[i].split("=", 2);
+                    splitStr[0] = splitStr[0].trim();
+                    if (splitStr.length > 1) {
+                        splitStr[1] = splitStr[1].trim();
+                        if (TextUtils.equals(splitStr[0], "default_randomization")) {
+                            value = parseNonNegativeInt(splitStr[0], splitStr[1]);
+                            valid = value.first;
+                            defaultRandomization = value.second;
+                        } else if (TextUtils.equals(splitStr[0], "max_retries")) {
+                            if (TextUtils.equals("infinite", splitStr[1])) {
+                                retryForever = true;
+                            } else {
+                                value = parseNonNegativeInt(splitStr[0], splitStr[1]);
+                                valid = value.first;
+                                if (valid) maxRetryCount = value.second;
+                            }
+                        } else {
+                            Rlog.e(LOG_TAG, "Unrecognized configuration name value pair: "
+                                            + strArray[i]);
+                            valid = false;
+                        }
+                    } else {
+                        /**
+                         * Assume a retry time with an optional randomization value
+                         * following a ":"
+                         */
+                        splitStr = strArray[i].split(":", 2);
+                        splitStr[0] = splitStr[0].trim();
+                        value = parseNonNegativeInt("delayTime", splitStr[0]);
+                        if (!value.first) {
+                            valid = false;
+                            break;
+                        }
+                        int delayTime = value.second;
+                        int randomizationTime = defaultRandomization;
+
+                        // Check if optional randomization value present
+                        if (splitStr.length > 1) {
+                            splitStr[1] = splitStr[1].trim();
+                            value = parseNonNegativeInt("randomizationTime", splitStr[1]);
+                            if (!value.first) {
+                                valid = false;
+                                break;
+                            }
+                            randomizationTime = value.second;
+                        }
+                        delayTimes.add(delayTime);
+                        randomizationTimes.add(randomizationTime);
+                    }
+                }
+                if (valid && delayTimes.size() > maxRetryCount) {
+                    maxRetryCount = delayTimes.size();
+                }
+            }
+
+            int[] delays = new int[delayTimes.size()];
+            int[] randomizations = new int[delays.length];
+            for (int i = 0; i < delays.length; i++) {
+                delays[i] = delayTimes.get(i);
+                randomizations[i] = randomizationTimes.get(i);
+            }
+            return new RetryPolicy(configStr, delays, randomizations, maxRetryCount,
+                    retryForever, valid);
+        }
     }
 
     /**
-     * The array of retry records
+     * Compiled retry policies by configuration string, shared by all retry managers. There are
+     * only a few distinct configuration strings per carrier.
      */
-    private ArrayList<RetryRec> mRetryArray = new ArrayList<RetryRec>();
-
-    @UnsupportedAppUsage
-    private Phone mPhone;
+    private static final Map<String, RetryPolicy> sRetryPolicies = new HashMap<>();
 
     /**
-     * Flag indicating whether retrying forever regardless the maximum retry count mMaxRetryCount
+     * The retry policy in use, null until configured
      */
-    private boolean mRetryForever = false;
+    private RetryPolicy mRetryPolicy;
 
-    /**
-     * The maximum number of retries to attempt
-     */
-    private int mMaxRetryCount;
+    @UnsupportedAppUsage
+    private Phone mPhone;
 
     /**
      * The current number of retries
@@ -203,11 +307,6 @@ public class RetryManager {
      */
     private Random mRng = new Random();
 
-    /**
-     * Retry manager configuration string. See top of the detailed explanation.
-     */
-    private String mConfig;
-
     /**
      * The list to store APN setting candidates for data call setup. Most of the carriers only have
      * one APN, but few carriers have more than one.
@@ -244,84 +343,35 @@ public class RetryManager {
      */
     @UnsupportedAppUsage
     private boolean configure(String configStr) {
+        // Reset the retry manager since delay, max retry count, etc...will be reset.
+        reset();
+
+        mRetryPolicy = getRetryPolicy(configStr);
+        if (DBG) log("configure: '" + mRetryPolicy.mConfig + "'");
+        return mRetryPolicy.mValid;
+    }
+
+    /**
+     * Get the compiled retry policy of a configuration string, compiling it on first use.
+     *
+     * @param configStr the configuration string, possibly quoted.
+     * @return the policy
+     */
+    @VisibleForTesting
+    static RetryPolicy getRetryPolicy(String configStr) {
         // Strip quotes if present.
         if ((configStr.startsWith("\"") && configStr.endsWith("\""))) {
             configStr = configStr.substring(1, configStr.length() - 1);
         }
 
-        // Reset the retry manager since delay, max retry count, etc...will be reset.
-        reset();
-
-        if (DBG) log("configure: '" + configStr + "'");
-        mConfig = configStr;
-
-        if (!TextUtils.isEmpty(configStr)) {
-            int defaultRandomization = 0;
-
-            if (VDBG) log("configure: not empty");
-
-            String strArray[] = configStr.split(",");
-            for (int i = 0; i < strArray.length; i++) {
-                if (VDBG) log("configure: strArray[" + i + "]='" + strArray[i] + "'");
-                Pair<Boolean, Integer> value;
-                String splitStr[] = strArray[i].split("=", 2);
-                splitStr[0] = splitStr[0].trim();
-                if (VDBG) log("configure: splitStr[0]='" + splitStr[0] + "'");
-                if (splitStr.length > 1) {
-                    splitStr[1] = splitStr[1].trim();
-                    if (VDBG) log("configure: splitStr[1]='" + splitStr[1] + "'");
-                    if (TextUtils.equals(splitStr[0], "default_randomization")) {
-                        value = parseNonNegativeInt(splitStr[0], splitStr[1]);
-                        if (!value.first) return false;
-                        defaultRandomization = value.second;
-                    } else if (TextUtils.equals(splitStr[0], "max_retries")) {
-                        if (TextUtils.equals("infinite", splitStr[1])) {
-                            mRetryForever = true;
-                        } else {
-                            value = parseNonNegativeInt(splitStr[0], splitStr[1]);
-                            if (!value.first) return false;
-                            mMaxRetryCount = value.second;
-                        }
-                    } else {
-                        Rlog.e(LOG_TAG, "Unrecognized configuration name value pair: "
-                                        + strArray[i]);
-                        return false;
-                    }
-                } else {
-                    /**
-                     * Assume a retry time with an optional randomization value
-                     * following a ":"
-                     */
-                    splitStr = strArray[i].split(":", 2);
-                    splitStr[0] = splitStr[0].trim();
-                    RetryRec rr = new RetryRec(0, 0);
-                    value = parseNonNegativeInt("delayTime", splitStr[0]);
-                    if (!value.first) return false;
-                    rr.mDelayTime = value.second;
-
-                    // Check if optional randomization value present
-                    if (splitStr.length > 1) {
-                        splitStr[1] = splitStr[1].trim();
-                        if (VDBG) log("configure: splitStr[1]='" + splitStr[1] + "'");
-                        value = parseNonNegativeInt("randomizationTime", splitStr[1]);
-                        if (!value.first) return false;
-                        rr.mRandomizationTime = value.second;
-                    } else {
-                        rr.mRandomizationTime = defaultRandomization;
-                    }
-                    mRetryArray.add(rr);
-                }
+        synchronized (sRetryPolicies) {
+            RetryPolicy policy = sRetryPolicies.get(configStr);
+            if (policy == null) {
+                policy = RetryPolicy.compile(configStr);
+                sRetryPolicies.put(configStr, policy);
             }
-            if (mRetryArray.size() > mMaxRetryCount) {
-                mMaxRetryCount = mRetryArray.size();
-                if (VDBG) log("configure: setting mMaxRetryCount=" + mMaxRetryCount);
-            }
-        } else {
-            log("configure: cleared");
+            return policy;
         }
-
-        if (VDBG) log("configure: true");
-        return true;
     }
 
     /**
@@ -412,16 +462,17 @@ public class RetryManager {
      */
     @UnsupportedAppUsage
     private int getRetryTimer() {
+        int[] delayTimes = mRetryPolicy.mDelayTimes;
         int index;
-        if (mRetryCount < mRetryArray.size()) {
+        if (mRetryCount < delayTimes.length) {
             index = mRetryCount;
         } else {
-            index = mRetryArray.size() - 1;
+            index = delayTimes.length - 1;
         }
 
         int retVal;
-        if ((index >= 0) && (index < mRetryArray.size())) {
-            retVal = mRetryArray.get(index).mDelayTime + nextRandomizationTime(index);
+        if ((index >= 0) && (index < delayTimes.length)) {
+            retVal = delayTimes[index] + nextRandomizationTime(index);
         } else {
             retVal = 0;
         }
@@ -436,7 +487,7 @@ public class RetryManager {
      * @param stringValue Value
      * @return Pair.first == true if stringValue an integer >= 0
      */
-    private Pair<Boolean, Integer> parseNonNegativeInt(String name, String stringValue) {
+    private static Pair<Boolean, Integer> parseNonNegativeInt(String name, String stringValue) {
         int value;
         Pair<Boolean, Integer> retVal;
         try {
@@ -447,7 +498,7 @@ public class RetryManager {
             retVal = new Pair<Boolean, Integer>(false, 0);
         }
         if (VDBG) {
-            log("parseNonNetativeInt: " + name + ", " + stringValue + ", "
+            Rlog.d(LOG_TAG, "parseNonNetativeInt: " + name + ", " + stringValue + ", "
                     + retVal.first + ", " + retVal.second);
         }
         return retVal;
@@ -459,7 +510,7 @@ public class RetryManager {
      * @param value Value
      * @return Pair.first
      */
-    private boolean validateNonNegativeInt(String name, int value) {
+    private static boolean validateNonNegativeInt(String name, int value) {
         boolean retVal;
         if (value < 0) {
             Rlog.e(LOG_TAG, name + " bad value: is < 0");
@@ -467,7 +518,7 @@ public class RetryManager {
         } else {
             retVal = true;
         }
-        if (VDBG) log("validateNonNegative: " + name + ", " + value + ", " + retVal);
+        if (VDBG) Rlog.d(LOG_TAG, "validateNonNegative: " + name + ", " + value + ", " + retVal);
         return retVal;
     }
 
@@ -476,7 +527,7 @@ public class RetryManager {
      * @param index Retry index
      */
     private int nextRandomizationTime(int index) {
-        int randomTime = mRetryArray.get(index).mRandomizationTime;
+        int randomTime = mRetryPolicy.mRandomizationTimes[index];
         if (randomTime == 0) {
             return 0;
         } else {
@@ -576,8 +627,8 @@ public class RetryManager {
         long delay;
         if (index <= mCurrentApnIndex) {
             // Case 1, if the next APN is in the next round.
-            if (!mRetryForever && mRetryCount + 1 > mMaxRetryCount) {
-                log("Reached maximum retry count " + mMaxRetryCount + ".");
+            if (!mRetryPolicy.mRetryForever && mRetryCount + 1 > mRetryPolicy.mMaxRetryCount) {
+                log("Reached maximum retry count " + mRetryPolicy.mMaxRetryCount + ".");
                 return NO_RETRY;
             }
             delay = getRetryTimer();
@@ -612,12 +663,10 @@ public class RetryManager {
      * Reset the retry manager.
      */
     private void reset() {
-        mMaxRetryCount = 0;
         mRetryCount = 0;
         mCurrentApnIndex = -1;
         mSameApnRetryCount = 0;
         mModemSuggestedDelay = NO_SUGGESTED_RETRY_DELAY;
-        mRetryArray.clear();
     }
 
     /**
@@ -675,13 +724,15 @@ public class RetryManager {
     }
 
     public String toString() {
-        if (mConfig == null) return "";
+        if (mRetryPolicy == null) return "";
         return "RetryManager: mApnType=" + mApnType + " mRetryCount=" + mRetryCount
-                + " mMaxRetryCount=" + mMaxRetryCount + " mCurrentApnIndex=" + mCurrentApnIndex
+                + " mMaxRetryCount=" + mRetryPolicy.mMaxRetryCount
+                + " mCurrentApnIndex=" + mCurrentApnIndex
                 + " mSameApnRtryCount=" + mSameApnRetryCount + " mModemSuggestedDelay="
-                + mModemSuggestedDelay + " mRetryForever=" + mRetryForever + " mInterApnDelay="
-                + mInterApnDelay + " mApnRetryAfterDisconnectDelay=" + mApnRetryAfterDisconnectDelay
-                + " mConfig={" + mConfig + "}";
+                + mModemSuggestedDelay + " mRetryForever=" + mRetryPolicy.mRetryForever
+                + " mInterApnDelay=" + mInterApnDelay
+                + " mApnRetryAfterDisconnectDelay=" + mApnRetryAfterDisconnectDelay
+                + " mConfig={" + mRetryPolicy.mConfig + "}";
     }
 
     @UnsupportedAppUsage
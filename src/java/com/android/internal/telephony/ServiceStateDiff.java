@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.telephony.AccessNetworkConstants;
+import android.telephony.CellIdentity;
+import android.telephony.NetworkRegistrationInfo;
+import android.telephony.ServiceState;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The fields which changed between two service states, computed once per poll by
+ * {@link ServiceStateTracker} so that listeners only interested in some of them can skip the
+ * rest, see {@link ServiceStateTracker#registerForServiceStateDiff}.
+ */
+public final class ServiceStateDiff {
+    /** Voice registration state changed. */
+    public static final int FIELD_VOICE_REG_STATE = 1 << 0;
+    /** Data registration state changed. */
+    public static final int FIELD_DATA_REG_STATE = 1 << 1;
+    /** Voice radio technology changed. */
+    public static final int FIELD_VOICE_RAT = 1 << 2;
+    /** Data radio technology changed. */
+    public static final int FIELD_DATA_RAT = 1 << 3;
+    /** Voice or data operator name or numeric changed. */
+    public static final int FIELD_OPERATOR = 1 << 4;
+    /** Voice or data roaming state or roaming type changed. */
+    public static final int FIELD_ROAMING = 1 << 5;
+    /** NR state of the cellular data registration changed. */
+    public static final int FIELD_NR_STATE = 1 << 6;
+    /** NR frequency range changed. */
+    public static final int FIELD_NR_FREQUENCY_RANGE = 1 << 7;
+    /** Cell bandwidths changed. */
+    public static final int FIELD_CELL_BANDWIDTHS = 1 << 8;
+    /** Channel number changed. */
+    public static final int FIELD_CHANNEL_NUMBER = 1 << 9;
+    /** Serving cell identity changed. */
+    public static final int FIELD_CELL_IDENTITY = 1 << 10;
+
+    /** All of the fields above. */
+    public static final int FIELD_ALL = (1 << 11) - 1;
+
+    private final int mChangedFields;
+    private final boolean mServiceStateChanged;
+
+    private ServiceStateDiff(int changedFields, boolean serviceStateChanged) {
+        mChangedFields = changedFields;
+        mServiceStateChanged = serviceStateChanged;
+    }
+
+    /**
+     * Compute the difference between two service states.
+     *
+     * @param oldSS the previous service state.
+     * @param newSS the new service state.
+     * @param oldCellIdentity the previous serving cell identity, may be {@code null}.
+     * @param newCellIdentity the new serving cell identity, may be {@code null}.
+     * @return the difference.
+     */
+    public static ServiceStateDiff compute(ServiceState oldSS, ServiceState newSS,
+            CellIdentity oldCellIdentity, CellIdentity newCellIdentity) {
+        int fields = 0;
+        if (oldSS.getVoiceRegState() != newSS.getVoiceRegState()) {
+            fields |= FIELD_VOICE_REG_STATE;
+        }
+        if (oldSS.getDataRegState() != newSS.getDataRegState()) {
+            fields |= FIELD_DATA_REG_STATE;
+        }
+        if (oldSS.getRilVoiceRadioTechnology() != newSS.getRilVoiceRadioTechnology()) {
+            fields |= FIELD_VOICE_RAT;
+        }
+        if (oldSS.getRilDataRadioTechnology() != newSS.getRilDataRadioTechnology()) {
+            fields |= FIELD_DATA_RAT;
+        }
+        if (!Objects.equals(oldSS.getOperatorAlphaLong(), newSS.getOperatorAlphaLong())
+                || !Objects.equals(oldSS.getOperatorAlphaShort(), newSS.getOperatorAlphaShort())
+                || !Objects.equals(oldSS.getOperatorNumeric(), newSS.getOperatorNumeric())
+                || !Objects.equals(oldSS.getDataOperatorAlphaLong(),
+                        newSS.getDataOperatorAlphaLong())
+                || !Objects.equals(oldSS.getDataOperatorAlphaShort(),
+                        newSS.getDataOperatorAlphaShort())
+                || !Objects.equals(oldSS.getDataOperatorNumeric(),
+                        newSS.getDataOperatorNumeric())) {
+            fields |= FIELD_OPERATOR;
+        }
+        if (oldSS.getVoiceRoaming() != newSS.getVoiceRoaming()
+                || oldSS.getDataRoaming() != newSS.getDataRoaming()
+                || oldSS.getVoiceRoamingType() != newSS.getVoiceRoamingType()
+                || oldSS.getDataRoamingType() != newSS.getDataRoamingType()) {
+            fields |= FIELD_ROAMING;
+        }
+        if (getNrState(oldSS) != getNrState(newSS)) {
+            fields |= FIELD_NR_STATE;
+        }
+        if (oldSS.getNrFrequencyRange() != newSS.getNrFrequencyRange()) {
+            fields |= FIELD_NR_FREQUENCY_RANGE;
+        }
+        if (!Arrays.equals(oldSS.getCellBandwidths(), newSS.getCellBandwidths())) {
+            fields |= FIELD_CELL_BANDWIDTHS;
+        }
+        if (oldSS.getChannelNumber() != newSS.getChannelNumber()) {
+            fields |= FIELD_CHANNEL_NUMBER;
+        }
+        if (!Objects.equals(oldCellIdentity, newCellIdentity)) {
+            fields |= FIELD_CELL_IDENTITY;
+        }
+        return new ServiceStateDiff(fields, !newSS.equals(oldSS));
+    }
+
+    private static int getNrState(ServiceState ss) {
+        NetworkRegistrationInfo nri = ss.getNetworkRegistrationInfo(
+                NetworkRegistrationInfo.DOMAIN_PS, AccessNetworkConstants.TRANSPORT_TYPE_WWAN);
+        return nri != null ? nri.getNrState() : NetworkRegistrationInfo.NR_STATE_NONE;
+    }
+
+    /**
+     * @return the changed fields, a combination of the {@code FIELD_} constants.
+     */
+    public int getChangedFields() {
+        return mChangedFields;
+    }
+
+    /**
+     * @param fields a combination of the {@code FIELD_} constants.
+     * @return {@code true} if any of {@code fields} changed.
+     */
+    public boolean hasChanged(int fields) {
+        return (mChangedFields & fields) != 0;
+    }
+
+    /**
+     * @return {@code true} if the service states are not equal. This also covers fields which
+     *         have no {@code FIELD_} constant, but not the cell identity which is not part of
+     *         the service state.
+     */
+    public boolean isServiceStateChanged() {
+        return mServiceStateChanged;
+    }
+
+    @Override
+    public String toString() {
+        return "[ServiceStateDiff: changedFields=0x" + Integer.toHexString(mChangedFields)
+                + " serviceStateChanged=" + mServiceStateChanged + "]";
+    }
+}
@@ -168,6 +168,14 @@ public class ServiceStateTracker extends Handler {
 
     private long mLastCellInfoReqTime;
     private List<CellInfo> mLastCellInfoList = null;
+    // Time at which mLastCellInfoList was received, from a request or an unsolicited indication
+    private long mLastCellInfoListTime;
+    // Metrics of the CellInfo cache, dumped to evaluate how often the modem is queried
+    private int mCellInfoCacheHits;
+    private int mCellInfoCacheMisses;
+    private int mCellInfoRequestsCoalesced;
+    private int mCellInfoRequestsRateLimited;
+    private int mCellInfoUnsolUpdates;
     private List<PhysicalChannelConfig> mLastPhysicalChannelConfigList = null;
 
     @UnsupportedAppUsage
@@ -183,6 +191,17 @@ public class ServiceStateTracker extends Handler {
      */
     @VisibleForTesting
     public int[] mPollingContext;
+    // Incremented for every poll issued to the radio, see pollState(boolean)
+    private int mPollStateGeneration = 0;
+    // Whether a coalesced EVENT_POLL_STATE_REQUEST is pending
+    private boolean mPendingModemTriggeredPoll = false;
+    // Number of poll requests and of polls actually issued, for dumpsys
+    private int mPollStateRequestCount = 0;
+    private int mPollStateCount = 0;
+    // Start of the current poll and poll-to-done latencies, in elapsed realtime
+    private long mPollStateStartMs = 0;
+    private long mLastPollStateLatencyMs = 0;
+    private long mMaxPollStateLatencyMs = 0;
     @UnsupportedAppUsage
     private boolean mDesiredPowerState;
 
@@ -211,6 +230,8 @@ public class ServiceStateTracker extends Handler {
     private RegistrantList mPsRestrictEnabledRegistrants = new RegistrantList();
     private RegistrantList mPsRestrictDisabledRegistrants = new RegistrantList();
     private RegistrantList mImsCapabilityChangedRegistrants = new RegistrantList();
+    // Registrants for ServiceStateDiff, keyed by the fields they are interested in
+    private final SparseArray<RegistrantList> mServiceStateDiffRegistrants = new SparseArray<>();
 
     /* Radio power off pending flag and tag counter */
     private boolean mPendingRadioPowerOffAfterDataOff = false;
@@ -270,6 +291,14 @@ public class ServiceStateTracker extends Handler {
     protected static final int EVENT_PHYSICAL_CHANNEL_CONFIG           = 55;
     protected static final int EVENT_CELL_LOCATION_RESPONSE            = 56;
     protected static final int EVENT_CARRIER_CONFIG_CHANGED            = 57;
+    protected static final int EVENT_POLL_STATE_REQUEST                = 58;
+
+    /**
+     * Modem triggered polls requested within this window are coalesced into one poll, so a
+     * burst of network state indications only queries the radio once.
+     */
+    @VisibleForTesting
+    public static final int POLL_STATE_COALESCE_DELAY_MS = 20;
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef(prefix = {"CARRIER_NAME_DISPLAY_BITMASK"},
@@ -646,14 +675,10 @@ public class ServiceStateTracker extends Handler {
 
         mCSST = new CarrierServiceStateTracker(phone, this);
 
-        registerForNetworkAttached(mCSST,
-                CarrierServiceStateTracker.CARRIER_EVENT_VOICE_REGISTRATION, null);
-        registerForNetworkDetached(mCSST,
-                CarrierServiceStateTracker.CARRIER_EVENT_VOICE_DEREGISTRATION, null);
-        registerForDataConnectionAttached(AccessNetworkConstants.TRANSPORT_TYPE_WWAN, mCSST,
-                CarrierServiceStateTracker.CARRIER_EVENT_DATA_REGISTRATION, null);
-        registerForDataConnectionDetached(AccessNetworkConstants.TRANSPORT_TYPE_WWAN, mCSST,
-                CarrierServiceStateTracker.CARRIER_EVENT_DATA_DEREGISTRATION, null);
+        registerForServiceStateDiff(mCSST,
+                CarrierServiceStateTracker.CARRIER_EVENT_REGISTRATION_STATE_CHANGED,
+                ServiceStateDiff.FIELD_VOICE_REG_STATE | ServiceStateDiff.FIELD_DATA_REG_STATE,
+                null);
         registerForImsCapabilityChanged(mCSST,
                 CarrierServiceStateTracker.CARRIER_EVENT_IMS_CAPABILITIES_CHANGED, null);
     }
@@ -696,6 +721,7 @@ public class ServiceStateTracker extends Handler {
         mNewSS.setStateOutOfService();
         mLastCellInfoReqTime = 0;
         mLastCellInfoList = null;
+        mLastCellInfoListTime = 0;
         mSignalStrength = new SignalStrength();
         mStartedGprsRegCheck = false;
         mReportedGprsNoReg = false;
@@ -1106,6 +1132,8 @@ public class ServiceStateTracker extends Handler {
                         cellInfo = (List<CellInfo>) ar.result;
                         updateOperatorNameForCellInfo(cellInfo);
                         mLastCellInfoList = cellInfo;
+                        mLastCellInfoListTime = SystemClock.elapsedRealtime();
+                        if (msg.what == EVENT_UNSOL_CELL_INFO_LIST) mCellInfoUnsolUpdates++;
                         mPhone.notifyCellInfo(cellInfo);
                         if (VDBG) {
                             log("CELL_INFO_LIST: size=" + cellInfo.size() + " list=" + cellInfo);
@@ -1124,6 +1152,7 @@ public class ServiceStateTracker extends Handler {
                     // We've received a legitimate timeout, so something has gone terribly wrong.
                     loge("Timeout waiting for CellInfo; (everybody panic)!");
                     mLastCellInfoList = null;
+                    mLastCellInfoListTime = 0;
                     // Since the timeout is applicable, fall through and update all synchronous
                     // callers with the failure.
                 }
@@ -1198,6 +1227,12 @@ public class ServiceStateTracker extends Handler {
                 modemTriggeredPollState();
                 break;
 
+            case EVENT_POLL_STATE_REQUEST:
+                if (mPendingModemTriggeredPoll) {
+                    pollState(true);
+                }
+                break;
+
             case EVENT_GET_SIGNAL_STRENGTH:
                 // This callback is called when signal strength is polled
                 // all by itself
@@ -1277,6 +1312,7 @@ public class ServiceStateTracker extends Handler {
                 mDontPollSignalStrength = true;
 
                 onSignalStrengthResult(ar);
+                mPhone.notifySignalStrengthIndication(mSignalStrength);
                 break;
 
             case EVENT_SIM_RECORDS_LOADED:
@@ -2933,16 +2969,34 @@ public class ServiceStateTracker extends Handler {
      * We insist on polling even if the radio says its off.
      * Used when we get a network changed notification
      * but the radio is off - part of iwlan hack
+     *
+     * Requests arriving within POLL_STATE_COALESCE_DELAY_MS of each other are served by a
+     * single poll.
      */
     private void modemTriggeredPollState() {
-        pollState(true);
+        mPollStateRequestCount++;
+        if (mPendingModemTriggeredPoll) return;
+        mPendingModemTriggeredPoll = true;
+        sendEmptyMessageDelayed(EVENT_POLL_STATE_REQUEST, POLL_STATE_COALESCE_DELAY_MS);
     }
 
     public void pollState(boolean modemTriggered) {
+        if (mPendingModemTriggeredPoll) {
+            // This poll also serves the pending coalesced one
+            modemTriggered = true;
+            mPendingModemTriggeredPoll = false;
+            removeMessages(EVENT_POLL_STATE_REQUEST);
+        } else {
+            mPollStateRequestCount++;
+        }
         mPollingContext = new int[1];
         mPollingContext[0] = 0;
+        mPollStateGeneration++;
+        mPollStateCount++;
+        mPollStateStartMs = SystemClock.elapsedRealtime();
 
-        log("pollState: modemTriggered=" + modemTriggered);
+        log("pollState: modemTriggered=" + modemTriggered
+                + " generation=" + mPollStateGeneration);
 
         switch (mCi.getRadioState()) {
             case TelephonyManager.RADIO_POWER_UNAVAILABLE:
@@ -3002,6 +3056,12 @@ public class ServiceStateTracker extends Handler {
     }
 
     private void pollStateDone() {
+        if (mPollStateStartMs != 0) {
+            mLastPollStateLatencyMs = SystemClock.elapsedRealtime() - mPollStateStartMs;
+            mMaxPollStateLatencyMs = Math.max(mMaxPollStateLatencyMs, mLastPollStateLatencyMs);
+            mPollStateStartMs = 0;
+        }
+
         if (!mPhone.isPhoneTypeGsm()) {
             updateRoamingState();
         }
@@ -3114,7 +3174,9 @@ public class ServiceStateTracker extends Handler {
         boolean hasRilVoiceRadioTechnologyChanged =
                 mSS.getRilVoiceRadioTechnology() != mNewSS.getRilVoiceRadioTechnology();
 
-        boolean hasChanged = !mNewSS.equals(mSS);
+        ServiceStateDiff diff = ServiceStateDiff.compute(mSS, mNewSS, mCellIdentity,
+                mNewCellIdentity);
+        boolean hasChanged = diff.isServiceStateChanged();
 
         boolean hasVoiceRoamingOn = !mSS.getVoiceRoaming() && mNewSS.getVoiceRoaming();
 
@@ -3166,6 +3228,7 @@ public class ServiceStateTracker extends Handler {
                     + " hasRilVoiceRadioTechnologyChanged = " + hasRilVoiceRadioTechnologyChanged
                     + " hasRilDataRadioTechnologyChanged = " + hasRilDataRadioTechnologyChanged
                     + " hasChanged = " + hasChanged
+                    + " diff = " + diff
                     + " hasVoiceRoamingOn = " + hasVoiceRoamingOn
                     + " hasVoiceRoamingOff = " + hasVoiceRoamingOff
                     + " hasDataRoamingOn =" + hasDataRoamingOn
@@ -3247,6 +3310,8 @@ public class ServiceStateTracker extends Handler {
                             mSS.getRilDataRadioTechnology()), mPhone.getPhoneId());
         }
 
+        notifyServiceStateDiff(diff);
+
         if (hasRegistered) {
             mNetworkAttachedRegistrants.notifyRegistrants();
             mNitzState.handleNetworkAvailable();
@@ -4363,6 +4428,46 @@ public class ServiceStateTracker extends Handler {
         }
     }
 
+    /**
+     * Registration point for changes of specific service state fields. The registrant is
+     * notified once per poll in which any of {@code fields} changed, with the
+     * {@link ServiceStateDiff} as the {@link AsyncResult} result.
+     * @param h handler to notify
+     * @param what what code of message when delivered
+     * @param fields combination of the {@code ServiceStateDiff.FIELD_} constants
+     * @param obj in Message.obj
+     */
+    public void registerForServiceStateDiff(Handler h, int what, int fields, Object obj) {
+        Registrant r = new Registrant(h, what, obj);
+        synchronized (mServiceStateDiffRegistrants) {
+            RegistrantList list = mServiceStateDiffRegistrants.get(fields);
+            if (list == null) {
+                list = new RegistrantList();
+                mServiceStateDiffRegistrants.put(fields, list);
+            }
+            list.add(r);
+        }
+    }
+
+    public void unregisterForServiceStateDiff(Handler h) {
+        synchronized (mServiceStateDiffRegistrants) {
+            for (int i = 0; i < mServiceStateDiffRegistrants.size(); i++) {
+                mServiceStateDiffRegistrants.valueAt(i).remove(h);
+            }
+        }
+    }
+
+    private void notifyServiceStateDiff(ServiceStateDiff diff) {
+        if (diff.getChangedFields() == 0) return;
+        synchronized (mServiceStateDiffRegistrants) {
+            for (int i = 0; i < mServiceStateDiffRegistrants.size(); i++) {
+                if (diff.hasChanged(mServiceStateDiffRegistrants.keyAt(i))) {
+                    mServiceStateDiffRegistrants.valueAt(i).notifyResult(diff);
+                }
+            }
+        }
+    }
+
     /**
      * Registration point for transition into network attached.
      * @param h handler to notify
@@ -4762,6 +4867,22 @@ public class ServiceStateTracker extends Handler {
      *     cached locally for future lookup.
      */
     public void requestAllCellInfo(WorkSource workSource, Message rspMsg) {
+        requestAllCellInfo(workSource, rspMsg, 0 /* maxAgeMs */);
+    }
+
+    /**
+     * Request CellInfo that is at most maxAgeMs old.
+     *
+     * The cached List<CellInfo>, which is also refreshed by unsolicited CellInfo indications, is
+     * returned if it was received within maxAgeMs, or within the minimum interval between CellInfo
+     * requests to the modem. Otherwise this request is sent to the modem, or joins the request
+     * that is already pending.
+     *
+     * @param workSource of the caller for power accounting
+     * @param rspMsg an optional response message to get the response to the CellInfo request.
+     * @param maxAgeMs the maximum acceptable age of the returned CellInfo, in milliseconds
+     */
+    public void requestAllCellInfo(WorkSource workSource, Message rspMsg, long maxAgeMs) {
         if (VDBG) log("SST.requestAllCellInfo(): E");
         if (mCi.getRilVersion() < 8) {
             AsyncResult.forMessage(rspMsg);
@@ -4770,16 +4891,29 @@ public class ServiceStateTracker extends Handler {
             return;
         }
         synchronized (mPendingCellInfoRequests) {
+            final long curTime = SystemClock.elapsedRealtime();
+            // If the cached CellInfo is recent enough, then return it without waking the modem.
+            if (mLastCellInfoList != null && (curTime - mLastCellInfoListTime)
+                    <= Math.max(maxAgeMs, mCellInfoMinIntervalMs)) {
+                mCellInfoCacheHits++;
+                if (rspMsg != null) {
+                    if (VDBG) log("SST.requestAllCellInfo(): return cached");
+                    AsyncResult.forMessage(rspMsg, mLastCellInfoList, null);
+                    rspMsg.sendToTarget();
+                }
+                return;
+            }
             // If there are pending requests, then we already have a request active, so add this
             // request to the response queue without initiating a new request.
             if (mIsPendingCellInfoRequest) {
+                mCellInfoRequestsCoalesced++;
                 if (rspMsg != null) mPendingCellInfoRequests.add(rspMsg);
                 return;
             }
             // Check to see whether the elapsed time is sufficient for a new request; if not, then
             // return the result of the last request (if expected).
-            final long curTime = SystemClock.elapsedRealtime();
             if ((curTime - mLastCellInfoReqTime) < mCellInfoMinIntervalMs) {
+                mCellInfoRequestsRateLimited++;
                 if (rspMsg != null) {
                     if (DBG) log("SST.requestAllCellInfo(): return last, back to back calls");
                     AsyncResult.forMessage(rspMsg, mLastCellInfoList, null);
@@ -4787,6 +4921,7 @@ public class ServiceStateTracker extends Handler {
                 }
                 return;
             }
+            mCellInfoCacheMisses++;
             // If this request needs an explicit response (it's a synchronous request), then queue
             // the response message.
             if (rspMsg != null) mPendingCellInfoRequests.add(rspMsg);
@@ -4904,6 +5039,11 @@ public class ServiceStateTracker extends Handler {
         pw.println(" mRestrictedState=" + mRestrictedState);
         pw.println(" mPollingContext=" + mPollingContext + " - " +
                 (mPollingContext != null ? mPollingContext[0] : ""));
+        pw.println(" mPollStateGeneration=" + mPollStateGeneration);
+        pw.println(" mPollStateRequestCount=" + mPollStateRequestCount
+                + " mPollStateCount=" + mPollStateCount);
+        pw.println(" mLastPollStateLatencyMs=" + mLastPollStateLatencyMs
+                + " mMaxPollStateLatencyMs=" + mMaxPollStateLatencyMs);
         pw.println(" mDesiredPowerState=" + mDesiredPowerState);
         pw.println(" mDontPollSignalStrength=" + mDontPollSignalStrength);
         pw.println(" mSignalStrength=" + mSignalStrength);
@@ -4914,6 +5054,12 @@ public class ServiceStateTracker extends Handler {
         pw.println(" mCellIdentity=" + Rlog.pii(VDBG, mCellIdentity));
         pw.println(" mNewCellIdentity=" + Rlog.pii(VDBG, mNewCellIdentity));
         pw.println(" mLastCellInfoReqTime=" + mLastCellInfoReqTime);
+        pw.println(" mLastCellInfoListTime=" + mLastCellInfoListTime);
+        pw.println(" mCellInfoCacheHits=" + mCellInfoCacheHits
+                + " mCellInfoCacheMisses=" + mCellInfoCacheMisses
+                + " mCellInfoRequestsCoalesced=" + mCellInfoRequestsCoalesced
+                + " mCellInfoRequestsRateLimited=" + mCellInfoRequestsRateLimited
+                + " mCellInfoUnsolUpdates=" + mCellInfoUnsolUpdates);
         dumpCellInfoList(pw);
         pw.flush();
         pw.println(" mPreferredNetworkType=" + mPreferredNetworkType);
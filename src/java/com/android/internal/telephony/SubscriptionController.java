@@ -30,6 +30,8 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
@@ -53,6 +55,7 @@ import android.telephony.euicc.EuiccManager;
 import android.text.TextUtils;
 import android.util.LocalLog;
 import android.util.Log;
+import android.util.SparseArray;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.telephony.IccCardConstants.State;
@@ -69,6 +72,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +81,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -106,14 +111,126 @@ public class SubscriptionController extends ISub.Stub {
             ParcelUuid.fromString(CarrierConfigManager.REMOVE_GROUP_UUID_STRING);
     private final LocalLog mLocalLog = new LocalLog(200);
 
-    // Lock that both mCacheActiveSubInfoList and mCacheOpportunisticSubInfoList use.
+    // Lock that writers of mActiveSubInfoSnapshot and mCacheOpportunisticSubInfoList use.
     private Object mSubInfoListLock = new Object();
 
-    /* The Cache of Active SubInfoRecord(s) list of currently in use SubInfoRecord(s) */
-    private final List<SubscriptionInfo> mCacheActiveSubInfoList = new ArrayList<>();
+    /*
+     * The Cache of Active SubInfoRecord(s) list of currently in use SubInfoRecord(s). Replaced as
+     * a whole under mSubInfoListLock; readers use it without locking.
+     */
+    private volatile ActiveSubInfoSnapshot mActiveSubInfoSnapshot = ActiveSubInfoSnapshot.EMPTY;
+
+    /* Generation of the active list last reported to TelephonyMetrics. */
+    private long mMetricsActiveSubInfoGeneration = -1;
+
+    /* Similar to the active list but only caching opportunistic subscriptions. */
+    private volatile List<SubscriptionInfo> mCacheOpportunisticSubInfoList = new ArrayList<>();
+
+    /*
+     * In-memory copy of the whole siminfo table, guarded by mSubInfoListLock. Writes to a single
+     * row patch it in place; other writes drop it so that it is reloaded from the provider on the
+     * next read. Writers outside this class call refreshCachedActiveSubscriptionInfoList().
+     */
+    private SubInfoTable mSubInfoTable;
+
+    /* The blank icon shared by all SubscriptionInfo records, decoded on first use. */
+    private Bitmap mSubInfoIconBitmap;
+
+    /**
+     * Immutable snapshot of all rows of the siminfo table, indexed by subscription id, slot index
+     * and group UUID. Lists are kept in provider order.
+     */
+    private static final class SubInfoTable {
+        final List<SubscriptionInfo> mAll = new ArrayList<>();
+        final SparseArray<SubscriptionInfo> mBySubId = new SparseArray<>();
+        final SparseArray<ContentValues> mRowsBySubId = new SparseArray<>();
+        final SparseArray<List<SubscriptionInfo>> mBySlotIndex = new SparseArray<>();
+        final Map<ParcelUuid, List<SubscriptionInfo>> mByGroupUuid = new HashMap<>();
+
+        void add(SubscriptionInfo info, ContentValues row) {
+            mAll.add(info);
+            mBySubId.put(info.getSubscriptionId(), info);
+            mRowsBySubId.put(info.getSubscriptionId(), row);
+            List<SubscriptionInfo> slotList = mBySlotIndex.get(info.getSimSlotIndex());
+            if (slotList == null) {
+                slotList = new ArrayList<>(1);
+                mBySlotIndex.put(info.getSimSlotIndex(), slotList);
+            }
+            slotList.add(info);
+            if (info.getGroupUuid() != null) {
+                mByGroupUuid.computeIfAbsent(info.getGroupUuid(), k -> new ArrayList<>(2))
+                        .add(info);
+            }
+        }
+
+        /** @return a new table holding {@code info} in place of the record with its id. */
+        SubInfoTable withRecord(SubscriptionInfo info, ContentValues row) {
+            SubInfoTable table = new SubInfoTable();
+            for (SubscriptionInfo old : mAll) {
+                int subId = old.getSubscriptionId();
+                if (subId == info.getSubscriptionId()) {
+                    table.add(info, row);
+                } else {
+                    table.add(old, mRowsBySubId.get(subId));
+                }
+            }
+            return table;
+        }
+
+        /** @return the subscriptions with the given ids, or null if none of them exists. */
+        List<SubscriptionInfo> getBySubIds(int[] subIdList) {
+            List<SubscriptionInfo> result = null;
+            for (SubscriptionInfo info : mAll) {
+                if (ArrayUtils.contains(subIdList, info.getSubscriptionId())) {
+                    if (result == null) result = new ArrayList<>();
+                    result.add(info);
+                }
+            }
+            return result;
+        }
+
+        /** @return a new list holding the matching subscriptions, or null if none matches. */
+        List<SubscriptionInfo> filter(Predicate<SubscriptionInfo> predicate) {
+            List<SubscriptionInfo> result = null;
+            for (SubscriptionInfo info : mAll) {
+                if (predicate.test(info)) {
+                    if (result == null) result = new ArrayList<>();
+                    result.add(info);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Immutable list of the active subscriptions, sorted by slot index and subscription id, with
+     * lookup by subscription id and slot index. The generation changes only when the contents do.
+     */
+    private static final class ActiveSubInfoSnapshot {
+        static final ActiveSubInfoSnapshot EMPTY =
+                new ActiveSubInfoSnapshot(0, Collections.emptyList());
+
+        final long mGeneration;
+        final List<SubscriptionInfo> mList;
+        final SparseArray<SubscriptionInfo> mBySubId = new SparseArray<>();
+        final SparseArray<SubscriptionInfo> mBySlotIndex = new SparseArray<>();
+
+        ActiveSubInfoSnapshot(long generation, List<SubscriptionInfo> sortedList) {
+            mGeneration = generation;
+            mList = Collections.unmodifiableList(sortedList);
+            for (SubscriptionInfo info : sortedList) {
+                mBySubId.put(info.getSubscriptionId(), info);
+                // Keep the first one as the list used to be searched in order.
+                if (mBySlotIndex.indexOfKey(info.getSimSlotIndex()) < 0) {
+                    mBySlotIndex.put(info.getSimSlotIndex(), info);
+                }
+            }
+        }
 
-    /* Similar to mCacheActiveSubInfoList but only caching opportunistic subscriptions. */
-    private List<SubscriptionInfo> mCacheOpportunisticSubInfoList = new ArrayList<>();
+        boolean hasSameContents(List<SubscriptionInfo> other) {
+            return mList.size() == other.size() && mList.containsAll(other);
+        }
+    }
 
     private static final Comparator<SubscriptionInfo> SUBSCRIPTION_INFO_COMPARATOR =
             (arg0, arg1) -> {
@@ -239,7 +356,7 @@ public class SubscriptionController extends ISub.Stub {
         // Update all subscriptions in simInfo db with invalid slot index
         ContentValues value = new ContentValues(1);
         value.put(SubscriptionManager.SIM_SLOT_INDEX, SubscriptionManager.INVALID_SIM_SLOT_INDEX);
-        mContext.getContentResolver().update(SubscriptionManager.CONTENT_URI, value, null, null);
+        updateSubInfoTable(SubscriptionManager.CONTENT_URI, value, null, null);
     }
 
     private SubscriptionController(Phone phone) {
@@ -298,12 +415,14 @@ public class SubscriptionController extends ISub.Stub {
         broadcastSimInfoContentChanged();
 
         MultiSimSettingController.getInstance().notifySubscriptionInfoChanged();
-        TelephonyMetrics metrics = TelephonyMetrics.getInstance();
-        List<SubscriptionInfo> subInfos;
+        // The snapshot is immutable, so it can be handed over without a copy, and skipped when the
+        // active list has not changed since the last report.
+        ActiveSubInfoSnapshot snapshot = mActiveSubInfoSnapshot;
         synchronized (mSubInfoListLock) {
-            subInfos = new ArrayList<>(mCacheActiveSubInfoList);
+            if (snapshot.mGeneration == mMetricsActiveSubInfoGeneration) return;
+            mMetricsActiveSubInfoGeneration = snapshot.mGeneration;
         }
-        metrics.updateActiveSubscriptionInfoList(subInfos);
+        TelephonyMetrics.getInstance().updateActiveSubscriptionInfoList(snapshot.mList);
     }
 
     /**
@@ -332,8 +451,7 @@ public class SubscriptionController extends ISub.Stub {
         int dataRoaming = cursor.getInt(cursor.getColumnIndexOrThrow(
                 SubscriptionManager.DATA_ROAMING));
         // Get the blank bitmap for this SubInfoRecord
-        Bitmap iconBitmap = BitmapFactory.decodeResource(mContext.getResources(),
-                com.android.internal.R.drawable.ic_sim_card_multi_24px_clr);
+        Bitmap iconBitmap = getSubInfoIconBitmap();
         String mcc = cursor.getString(cursor.getColumnIndexOrThrow(
                 SubscriptionManager.MCC_STRING));
         String mnc = cursor.getString(cursor.getColumnIndexOrThrow(
@@ -388,20 +506,85 @@ public class SubscriptionController extends ISub.Stub {
                     + " profileClass:" + profileClass + " subscriptionType: " + subType);
         }
 
-        // If line1number has been set to a different number, use it instead.
-        String line1Number = mTelephonyManager.getLine1Number(id);
-        if (!TextUtils.isEmpty(line1Number) && !line1Number.equals(number)) {
-            number = line1Number;
-        }
         SubscriptionInfo info = new SubscriptionInfo(id, iccId, simSlotIndex, displayName,
-                carrierName, nameSource, iconTint, number, dataRoaming, iconBitmap, mcc, mnc,
-                countryIso, isEmbedded, accessRules, cardId, publicCardId, isOpportunistic,
-                groupUUID, false /* isGroupDisabled */, carrierId, profileClass, subType,
-                groupOwner);
+                carrierName, nameSource, iconTint, getDisplayNumber(id, number), dataRoaming,
+                iconBitmap, mcc, mnc, countryIso, isEmbedded, accessRules, cardId, publicCardId,
+                isOpportunistic, groupUUID, false /* isGroupDisabled */, carrierId, profileClass,
+                subType, groupOwner);
         info.setAssociatedPlmns(ehplmns, hplmns);
         return info;
     }
 
+    /**
+     * Build a {@link SubscriptionInfo} from a row of the in-memory copy of the siminfo table.
+     */
+    private SubscriptionInfo getSubInfoRecord(ContentValues row) {
+        String[] columns = row.keySet().toArray(new String[0]);
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        MatrixCursor.RowBuilder builder = cursor.newRow();
+        for (String column : columns) {
+            builder.add(row.get(column));
+        }
+        cursor.moveToFirst();
+        return getSubInfoRecord(cursor);
+    }
+
+    private Bitmap getSubInfoIconBitmap() {
+        if (mSubInfoIconBitmap == null) {
+            mSubInfoIconBitmap = BitmapFactory.decodeResource(mContext.getResources(),
+                    com.android.internal.R.drawable.ic_sim_card_multi_24px_clr);
+        }
+        return mSubInfoIconBitmap;
+    }
+
+    /**
+     * @return a copy of a record of the in-memory siminfo table. The cached records are shared by
+     *         all readers, so they are never handed out as is.
+     */
+    private SubscriptionInfo copySubInfo(SubscriptionInfo info) {
+        if (info == null) return null;
+        UiccAccessRule[] accessRules = null;
+        if (info.isEmbedded() && info.getAccessRules() != null) {
+            accessRules = info.getAccessRules().toArray(new UiccAccessRule[0]);
+        }
+        ParcelUuid groupUuid = info.getGroupUuid();
+        SubscriptionInfo copy = new SubscriptionInfo(info.getSubscriptionId(), info.getIccId(),
+                info.getSimSlotIndex(), info.getDisplayName(), info.getCarrierName(),
+                info.getNameSource(), info.getIconTint(), info.getNumber(),
+                info.getDataRoaming(), getSubInfoIconBitmap(), info.getMccString(),
+                info.getMncString(), info.getCountryIso(), info.isEmbedded(), accessRules,
+                info.getCardString(), info.getCardId(), info.isOpportunistic(),
+                groupUuid == null ? null : groupUuid.toString(), info.isGroupDisabled(),
+                info.getCarrierId(), info.getProfileClass(), info.getSubscriptionType(),
+                info.getGroupOwner());
+        copy.setAssociatedPlmns(info.getEhplmns().toArray(new String[0]),
+                info.getHplmns().toArray(new String[0]));
+        return copy;
+    }
+
+    /** @return copies of the given records, or null if {@code infoList} is null. */
+    private List<SubscriptionInfo> copySubInfoList(List<SubscriptionInfo> infoList) {
+        if (infoList == null) return null;
+        List<SubscriptionInfo> copies = new ArrayList<>(infoList.size());
+        for (SubscriptionInfo info : infoList) {
+            copies.add(copySubInfo(info));
+        }
+        return copies;
+    }
+
+    /**
+     * @param number the number stored in siminfo.
+     * @return the line 1 number if it has been set to a different number, otherwise
+     *         {@code number}.
+     */
+    private String getDisplayNumber(int subId, String number) {
+        String line1Number = mTelephonyManager.getLine1Number(subId);
+        if (!TextUtils.isEmpty(line1Number) && !line1Number.equals(number)) {
+            return line1Number;
+        }
+        return number;
+    }
+
     private String getOptionalStringFromCursor(Cursor cursor, String column, String defaultVal) {
         // Return defaultVal if the column doesn't exist.
         int columnIndex = cursor.getColumnIndex(column);
@@ -449,6 +632,138 @@ public class SubscriptionController extends ISub.Stub {
         return subList;
     }
 
+    /**
+     * @return the in-memory copy of the siminfo table, loading it from the provider with a single
+     *         query if it was invalidated. Never null.
+     */
+    private SubInfoTable getSubInfoTable() {
+        synchronized (mSubInfoListLock) {
+            if (mSubInfoTable == null) {
+                mSubInfoTable = loadSubInfoTable();
+            }
+            return mSubInfoTable;
+        }
+    }
+
+    private SubInfoTable loadSubInfoTable() {
+        SubInfoTable table = new SubInfoTable();
+        try (Cursor cursor = mContext.getContentResolver().query(SubscriptionManager.CONTENT_URI,
+                null, null, null, null)) {
+            if (cursor == null) {
+                if (DBG) logd("[loadSubInfoTable] Query fail");
+                return table;
+            }
+            while (cursor.moveToNext()) {
+                SubscriptionInfo subInfo = getSubInfoRecord(cursor);
+                if (subInfo != null) {
+                    ContentValues row = new ContentValues();
+                    DatabaseUtils.cursorRowToContentValues(cursor, row);
+                    table.add(subInfo, row);
+                }
+            }
+        }
+        if (VDBG) logd("[loadSubInfoTable] " + table.mAll.size() + " records");
+        return table;
+    }
+
+    /**
+     * Drop the in-memory copy of the siminfo table so the next read reloads it. Must be called
+     * after, not before, the provider write it accounts for.
+     */
+    private void invalidateSubInfoTable() {
+        synchronized (mSubInfoListLock) {
+            mSubInfoTable = null;
+        }
+    }
+
+    // All writes to the siminfo table made by this class go through the helpers below, so that the
+    // in-memory copy never outlives the provider contents it was loaded from.
+
+    private int updateSubInfoTable(Uri uri, ContentValues values, String where,
+            String[] selectionArgs) {
+        try {
+            return mContext.getContentResolver().update(uri, values, where, selectionArgs);
+        } finally {
+            invalidateSubInfoTable();
+        }
+    }
+
+    /**
+     * Write {@code values} to the row of {@code subId} and patch the in-memory copy of that row,
+     * so that the rest of the table does not have to be reloaded.
+     */
+    private int updateSubInfoTable(int subId, ContentValues values) {
+        boolean patched = false;
+        try {
+            int result = mContext.getContentResolver().update(
+                    SubscriptionManager.getUriForSubscriptionId(subId), values, null, null);
+            patched = result > 0 && patchSubInfoTableRow(subId, values);
+            return result;
+        } finally {
+            if (!patched) invalidateSubInfoTable();
+        }
+    }
+
+    /**
+     * Apply {@code values}, just written to the row of {@code subId}, to the in-memory copy of the
+     * siminfo table. Only the record of that row is rebuilt.
+     *
+     * @return false if the row is not in the in-memory copy, which then has to be reloaded.
+     */
+    private boolean patchSubInfoTableRow(int subId, ContentValues values) {
+        synchronized (mSubInfoListLock) {
+            if (mSubInfoTable == null) return true;
+            ContentValues oldRow = mSubInfoTable.mRowsBySubId.get(subId);
+            if (oldRow == null) return false;
+            ContentValues row = new ContentValues(oldRow);
+            row.putAll(values);
+            mSubInfoTable = mSubInfoTable.withRecord(getSubInfoRecord(row), row);
+            return true;
+        }
+    }
+
+    /**
+     * Recompute the public card id of the cached records. It is derived from the card string by
+     * {@link UiccController}, which calls this whenever that mapping changes, as this does not
+     * involve any write to siminfo.
+     */
+    public void refreshCachedCardIds() {
+        boolean changed = false;
+        synchronized (mSubInfoListLock) {
+            SubInfoTable table = getSubInfoTable();
+            for (SubscriptionInfo info : table.mAll) {
+                ContentValues row = table.mRowsBySubId.get(info.getSubscriptionId());
+                int cardId = mUiccController.convertToPublicCardId(
+                        row.getAsString(SubscriptionManager.CARD_ID));
+                if (cardId != info.getCardId()) {
+                    table = table.withRecord(getSubInfoRecord(row), row);
+                    changed = true;
+                }
+            }
+            mSubInfoTable = table;
+        }
+        if (changed) {
+            if (DBG) logd("[refreshCachedCardIds] card ids changed");
+            updateCachedActiveSubscriptionInfoList();
+        }
+    }
+
+    private Uri insertIntoSubInfoTable(Uri uri, ContentValues values) {
+        try {
+            return mContext.getContentResolver().insert(uri, values);
+        } finally {
+            invalidateSubInfoTable();
+        }
+    }
+
+    private int deleteFromSubInfoTable(Uri uri, String where, String[] selectionArgs) {
+        try {
+            return mContext.getContentResolver().delete(uri, where, selectionArgs);
+        } finally {
+            invalidateSubInfoTable();
+        }
+    }
+
     /**
      * Find unused color to be set for new SubInfoRecord
      * @param callingPackage The package making the IPC.
@@ -491,30 +806,18 @@ public class SubscriptionController extends ISub.Stub {
         }
 
         // Now that all security checks passes, perform the operation as ourselves.
-        final long identity = Binder.clearCallingIdentity();
-        try {
-            List<SubscriptionInfo> subList = getActiveSubscriptionInfoList(
-                    mContext.getOpPackageName());
-            if (subList != null) {
-                for (SubscriptionInfo si : subList) {
-                    if (si.getSubscriptionId() == subId) {
-                        if (DBG) {
-                            logd("[getActiveSubscriptionInfo]+ subId=" + subId + " subInfo=" + si);
-                        }
-
-                        return si;
-                    }
-                }
-            }
-            if (DBG) {
+        ActiveSubInfoSnapshot snapshot = mActiveSubInfoSnapshot;
+        SubscriptionInfo si = snapshot.mBySubId.get(subId);
+        if (DBG) {
+            if (si != null) {
+                logd("[getActiveSubscriptionInfo]+ subId=" + subId + " subInfo=" + si);
+            } else {
                 logd("[getActiveSubscriptionInfo]- subId=" + subId
-                        + " subList=" + subList + " subInfo=null");
+                        + " subList=" + snapshot.mList + " subInfo=null");
             }
-        } finally {
-            Binder.restoreCallingIdentity(identity);
         }
 
-        return null;
+        return si;
     }
 
     /**
@@ -525,10 +828,7 @@ public class SubscriptionController extends ISub.Stub {
      * @hide
      */
     public SubscriptionInfo getSubscriptionInfo(int subId) {
-        List<SubscriptionInfo> subInfoList = getSubInfo(
-                SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=" + subId, null);
-        if (subInfoList == null || subInfoList.isEmpty()) return null;
-        return subInfoList.get(0);
+        return copySubInfo(getSubInfoTable().mBySubId.get(subId));
     }
 
     /**
@@ -610,34 +910,13 @@ public class SubscriptionController extends ISub.Stub {
         }
 
         // Now that all security checks passes, perform the operation as ourselves.
-        final long identity = Binder.clearCallingIdentity();
-        try {
-            List<SubscriptionInfo> subList = getActiveSubscriptionInfoList(
-                    mContext.getOpPackageName());
-            if (subList != null) {
-                for (SubscriptionInfo si : subList) {
-                    if (si.getSimSlotIndex() == slotIndex) {
-                        if (DBG) {
-                            logd("[getActiveSubscriptionInfoForSimSlotIndex]+ slotIndex="
-                                    + slotIndex + " subId=" + si);
-                        }
-                        return si;
-                    }
-                }
-                if (DBG) {
-                    logd("[getActiveSubscriptionInfoForSimSlotIndex]+ slotIndex=" + slotIndex
-                            + " subId=null");
-                }
-            } else {
-                if (DBG) {
-                    logd("[getActiveSubscriptionInfoForSimSlotIndex]+ subList=null");
-                }
-            }
-        } finally {
-            Binder.restoreCallingIdentity(identity);
+        SubscriptionInfo si = mActiveSubInfoSnapshot.mBySlotIndex.get(slotIndex);
+        if (DBG) {
+            logd("[getActiveSubscriptionInfoForSimSlotIndex]+ slotIndex=" + slotIndex
+                    + " subId=" + si);
         }
 
-        return null;
+        return si;
     }
 
     /**
@@ -661,8 +940,8 @@ public class SubscriptionController extends ISub.Stub {
         // Now that all security checks passes, perform the operation as ourselves.
         final long identity = Binder.clearCallingIdentity();
         try {
-            List<SubscriptionInfo> subList = null;
-            subList = getSubInfo(null, null);
+            List<SubscriptionInfo> subList =
+                    copySubInfoList(getSubInfoTable().filter(info -> true));
             if (subList != null) {
                 if (VDBG) logd("[getAllSubInfoList]- " + subList.size() + " infos return");
             } else {
@@ -683,45 +962,69 @@ public class SubscriptionController extends ISub.Stub {
     @UnsupportedAppUsage
     @Override
     public List<SubscriptionInfo> getActiveSubscriptionInfoList(String callingPackage) {
-        return getSubscriptionInfoListFromCacheHelper(callingPackage, mCacheActiveSubInfoList);
+        return getSubscriptionInfoListFromCacheHelper(callingPackage,
+                mActiveSubInfoSnapshot.mList);
+    }
+
+    /**
+     * @return the generation of the active subscription list. It changes whenever
+     *         {@link #refreshCachedActiveSubscriptionInfoList()} finds a different list, so
+     *         listeners can compare it with the last value they saw to skip no-op updates.
+     */
+    public long getActiveSubInfoGeneration() {
+        return mActiveSubInfoSnapshot.mGeneration;
     }
 
     /**
      * Refresh the cache of SubInfoRecord(s) of the currently available SIM(s) - including
-     * local & remote SIMs.
+     * local & remote SIMs. The siminfo table is reloaded first, so this has to be called after
+     * writing to it, or changing the line 1 number, outside this class.
      */
     @VisibleForTesting  // For mockito to mock this method
     public void refreshCachedActiveSubscriptionInfoList() {
+        invalidateSubInfoTable();
+        updateCachedActiveSubscriptionInfoList();
+    }
+
+    /**
+     * Rebuild the cache of active SubInfoRecord(s) from the in-memory copy of the siminfo table,
+     * which the writes made by this class keep up to date.
+     */
+    private void updateCachedActiveSubscriptionInfoList() {
         boolean opptSubListChanged;
 
         synchronized (mSubInfoListLock) {
-            List<SubscriptionInfo> activeSubscriptionInfoList = getSubInfo(
-                    SubscriptionManager.SIM_SLOT_INDEX + ">=0 OR "
-                    + SubscriptionManager.SUBSCRIPTION_TYPE + "="
-                    + SubscriptionManager.SUBSCRIPTION_TYPE_REMOTE_SIM,
-                    null);
+            List<SubscriptionInfo> activeSubscriptionInfoList = copySubInfoList(
+                    getSubInfoTable().filter(info -> info.getSimSlotIndex() >= 0
+                            || info.getSubscriptionType()
+                                    == SubscriptionManager.SUBSCRIPTION_TYPE_REMOTE_SIM));
 
             if (activeSubscriptionInfoList != null) {
-                // Log when active sub info changes.
-                if (mCacheActiveSubInfoList.size() != activeSubscriptionInfoList.size()
-                        || !mCacheActiveSubInfoList.containsAll(activeSubscriptionInfoList)) {
-                    logdl("Active subscription info list changed. " + activeSubscriptionInfoList);
-                }
-
-                mCacheActiveSubInfoList.clear();
                 activeSubscriptionInfoList.sort(SUBSCRIPTION_INFO_COMPARATOR);
-                mCacheActiveSubInfoList.addAll(activeSubscriptionInfoList);
             } else {
                 logd("activeSubscriptionInfoList is null.");
-                mCacheActiveSubInfoList.clear();
+                activeSubscriptionInfoList = new ArrayList<>();
+            }
+
+            ActiveSubInfoSnapshot oldSnapshot = mActiveSubInfoSnapshot;
+            if (oldSnapshot.hasSameContents(activeSubscriptionInfoList)) {
+                // Keep the generation so listeners can skip this no-op update, but publish the
+                // fresh objects as they also carry fields that are not compared.
+                mActiveSubInfoSnapshot = new ActiveSubInfoSnapshot(oldSnapshot.mGeneration,
+                        activeSubscriptionInfoList);
+            } else {
+                // Log when active sub info changes.
+                logdl("Active subscription info list changed. " + activeSubscriptionInfoList);
+                mActiveSubInfoSnapshot = new ActiveSubInfoSnapshot(oldSnapshot.mGeneration + 1,
+                        activeSubscriptionInfoList);
             }
 
             // Refresh cached opportunistic sub list and detect whether it's changed.
             opptSubListChanged = refreshCachedOpportunisticSubscriptionInfoList();
 
             if (DBG_CACHE) {
-                if (!mCacheActiveSubInfoList.isEmpty()) {
-                    for (SubscriptionInfo si : mCacheActiveSubInfoList) {
+                if (!mActiveSubInfoSnapshot.mList.isEmpty()) {
+                    for (SubscriptionInfo si : mActiveSubInfoSnapshot.mList) {
                         logd("[refreshCachedActiveSubscriptionInfoList] Setting Cached info="
                                 + si);
                     }
@@ -775,22 +1078,9 @@ public class SubscriptionController extends ISub.Stub {
         // Now that all security checks passes, perform the operation as ourselves.
         final long identity = Binder.clearCallingIdentity();
         try {
-            Cursor cursor = mContext.getContentResolver().query(SubscriptionManager.CONTENT_URI,
-                    null, null, null, null);
-            try {
-                if (cursor != null) {
-                    int count = cursor.getCount();
-                    if (DBG) logd("[getAllSubInfoCount]- " + count + " SUB(s) in DB");
-                    return count;
-                }
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-            }
-            if (DBG) logd("[getAllSubInfoCount]- no SUB in DB");
-
-            return 0;
+            int count = getSubInfoTable().mAll.size();
+            if (DBG) logd("[getAllSubInfoCount]- " + count + " SUB(s) in DB");
+            return count;
         } finally {
             Binder.restoreCallingIdentity(identity);
         }
@@ -819,17 +1109,15 @@ public class SubscriptionController extends ISub.Stub {
         // Now that all security checks pass, perform the operation as ourselves.
         final long identity = Binder.clearCallingIdentity();
         try {
-            String selection = SubscriptionManager.SIM_SLOT_INDEX + ">=0 OR "
-                    + SubscriptionManager.SUBSCRIPTION_TYPE + "="
-                    + SubscriptionManager.SUBSCRIPTION_TYPE_REMOTE_SIM;
-
             EuiccManager euiccManager =
                     (EuiccManager) mContext.getSystemService(Context.EUICC_SERVICE);
-            if (euiccManager.isEnabled()) {
-                selection += " OR " + SubscriptionManager.IS_EMBEDDED + "=1";
-            }
+            final boolean isEuiccEnabled = euiccManager.isEnabled();
 
-            List<SubscriptionInfo> subList = getSubInfo(selection, null /* queryKey */);
+            List<SubscriptionInfo> subList = getSubInfoTable().filter(
+                    info -> info.getSimSlotIndex() >= 0
+                            || info.getSubscriptionType()
+                                    == SubscriptionManager.SUBSCRIPTION_TYPE_REMOTE_SIM
+                            || (isEuiccEnabled && info.isEmbedded()));
 
             if (subList != null) {
                 subList.sort(SUBSCRIPTION_INFO_COMPARATOR);
@@ -839,7 +1127,7 @@ public class SubscriptionController extends ISub.Stub {
                 if (DBG) logdl("[getAvailableSubInfoList]- no info return");
             }
 
-            return subList;
+            return copySubInfoList(subList);
         } finally {
             Binder.restoreCallingIdentity(identity);
         }
@@ -864,7 +1152,7 @@ public class SubscriptionController extends ISub.Stub {
         final long identity = Binder.clearCallingIdentity();
         List<SubscriptionInfo> subList;
         try {
-            subList = getSubInfo(SubscriptionManager.IS_EMBEDDED + "=1", null);
+            subList = getSubInfoTable().filter(SubscriptionInfo::isEmbedded);
         } finally {
             Binder.restoreCallingIdentity(identity);
         }
@@ -879,6 +1167,7 @@ public class SubscriptionController extends ISub.Stub {
                 .filter(subscriptionInfo ->
                         subscriptionInfo.canManageSubscription(mContext, callingPackage))
                 .sorted(SUBSCRIPTION_INFO_COMPARATOR)
+                .map(this::copySubInfo)
                 .collect(Collectors.toList());
         if (VDBG) {
             logdl("[getAccessibleSubInfoList] " + filteredList.size() + " infos returned");
@@ -1077,8 +1366,7 @@ public class SubscriptionController extends ISub.Stub {
                         }
 
                         if (value.size() > 0) {
-                            resolver.update(SubscriptionManager.getUriForSubscriptionId(subId),
-                                    value, null, null);
+                            updateSubInfoTable(subId, value);
                         }
 
                         if (DBG) logdl("[addSubInfoRecord] Record already exists");
@@ -1163,7 +1451,7 @@ public class SubscriptionController extends ISub.Stub {
 
             // Refresh the Cache of Active Subscription Info List. This should be done after
             // updating sSlotIndexToSubIds which is done through addToSubIdList() above.
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             if (isSubscriptionForRemoteSim(subscriptionType)) {
                 notifySubscriptionInfoChanged();
@@ -1188,11 +1476,10 @@ public class SubscriptionController extends ISub.Stub {
 
                     ContentValues value = new ContentValues();
                     value.put(SubscriptionManager.DISPLAY_NAME, nameToSet);
-                    resolver.update(SubscriptionManager.getUriForSubscriptionId(subId), value,
-                            null, null);
+                    updateSubInfoTable(subId, value);
 
                     // Refresh the Cache of Active Subscription Info List
-                    refreshCachedActiveSubscriptionInfoList();
+                    updateCachedActiveSubscriptionInfoList();
 
                     if (DBG) logdl("[addSubInfoRecord] sim name = " + nameToSet);
                 }
@@ -1267,7 +1554,7 @@ public class SubscriptionController extends ISub.Stub {
         // validate the given info - does it exist in the active subscription list
         int subId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
         int slotIndex = SubscriptionManager.INVALID_SIM_SLOT_INDEX;
-        for (SubscriptionInfo info : mCacheActiveSubInfoList) {
+        for (SubscriptionInfo info : mActiveSubInfoSnapshot.mList) {
             if ((info.getSubscriptionType() == subscriptionType)
                     && info.getIccId().equalsIgnoreCase(uniqueId)) {
                 subId = info.getSubscriptionId();
@@ -1289,8 +1576,7 @@ public class SubscriptionController extends ISub.Stub {
         int result = 0;
         final long identity = Binder.clearCallingIdentity();
         try {
-            ContentResolver resolver = mContext.getContentResolver();
-            result = resolver.delete(SubscriptionManager.CONTENT_URI,
+            result = deleteFromSubInfoTable(SubscriptionManager.CONTENT_URI,
                     SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=? AND "
                             + SubscriptionManager.SUBSCRIPTION_TYPE + "=?",
                     new String[]{Integer.toString(subId), Integer.toString(subscriptionType)});
@@ -1301,7 +1587,7 @@ public class SubscriptionController extends ISub.Stub {
                 }
                 return -1;
             }
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             // update sSlotIndexToSubIds struct
             ArrayList<Integer> subIdsList = sSlotIndexToSubIds.get(slotIndex);
@@ -1347,18 +1633,16 @@ public class SubscriptionController extends ISub.Stub {
 
         // update simInfo db with invalid slot index
         List<SubscriptionInfo> oldSubInfo = getSubInfoUsingSlotIndexPrivileged(slotIndex);
-        ContentResolver resolver = mContext.getContentResolver();
         ContentValues value = new ContentValues(1);
         value.put(SubscriptionManager.SIM_SLOT_INDEX,
                 SubscriptionManager.INVALID_SIM_SLOT_INDEX);
         if (oldSubInfo != null) {
             for (int i = 0; i < oldSubInfo.size(); i++) {
-                resolver.update(SubscriptionManager.getUriForSubscriptionId(
-                        oldSubInfo.get(i).getSubscriptionId()), value, null, null);
+                updateSubInfoTable(oldSubInfo.get(i).getSubscriptionId(), value);
             }
         }
         // Refresh the Cache of Active Subscription Info List
-        refreshCachedActiveSubscriptionInfoList();
+        updateCachedActiveSubscriptionInfoList();
 
         sSlotIndexToSubIds.remove(slotIndex);
     }
@@ -1379,7 +1663,6 @@ public class SubscriptionController extends ISub.Stub {
 
     Uri insertEmptySubInfoRecord(String uniqueId, String displayName, int slotIndex,
             int subscriptionType) {
-        ContentResolver resolver = mContext.getContentResolver();
         ContentValues value = new ContentValues();
         value.put(SubscriptionManager.ICC_ID, uniqueId);
         int color = getUnusedColor(mContext.getOpPackageName());
@@ -1401,10 +1684,10 @@ public class SubscriptionController extends ISub.Stub {
             }
         }
 
-        Uri uri = resolver.insert(SubscriptionManager.CONTENT_URI, value);
+        Uri uri = insertIntoSubInfoTable(SubscriptionManager.CONTENT_URI, value);
 
         // Refresh the Cache of Active Subscription Info List
-        refreshCachedActiveSubscriptionInfoList();
+        updateCachedActiveSubscriptionInfoList();
 
         return uri;
     }
@@ -1470,11 +1753,10 @@ public class SubscriptionController extends ISub.Stub {
             ContentValues value = new ContentValues(1);
             value.put(SubscriptionManager.CARRIER_NAME, text);
 
-            int result = mContext.getContentResolver().update(
-                    SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+            int result = updateSubInfoTable(subId, value);
 
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             notifySubscriptionInfoChanged();
 
@@ -1504,11 +1786,10 @@ public class SubscriptionController extends ISub.Stub {
             value.put(SubscriptionManager.COLOR, tint);
             if (DBG) logd("[setIconTint]- tint:" + tint + " set");
 
-            int result = mContext.getContentResolver().update(
-                    SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+            int result = updateSubInfoTable(subId, value);
 
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             notifySubscriptionInfoChanged();
 
@@ -1559,16 +1840,12 @@ public class SubscriptionController extends ISub.Stub {
         final long identity = Binder.clearCallingIdentity();
         try {
             validateSubId(subId);
-            List<SubscriptionInfo> allSubInfo = getSubInfo(null, null);
-            // if there is no sub in the db, return 0 since subId does not exist in db
-            if (allSubInfo == null || allSubInfo.isEmpty()) return 0;
-            for (SubscriptionInfo subInfo : allSubInfo) {
-                if (subInfo.getSubscriptionId() == subId
-                        && (getNameSourcePriority(subInfo.getNameSource())
-                                > getNameSourcePriority(nameSource)
-                        || (displayName != null && displayName.equals(subInfo.getDisplayName())))) {
-                    return 0;
-                }
+            SubscriptionInfo subInfo = getSubscriptionInfo(subId);
+            // if the sub does not exist in the db, return 0
+            if (subInfo == null) return 0;
+            if (getNameSourcePriority(subInfo.getNameSource()) > getNameSourcePriority(nameSource)
+                    || (displayName != null && displayName.equals(subInfo.getDisplayName()))) {
+                return 0;
             }
             String nameToSet;
             if (displayName == null) {
@@ -1585,10 +1862,9 @@ public class SubscriptionController extends ISub.Stub {
             if (DBG) logd("[setDisplayName]- mDisplayName:" + nameToSet + " set");
 
             // Update the nickname on the eUICC chip if it's an embedded subscription.
-            SubscriptionInfo sub = getSubscriptionInfo(subId);
-            if (sub != null && sub.isEmbedded()) {
+            if (subInfo.isEmbedded()) {
                 // Ignore the result.
-                int cardId = sub.getCardId();
+                int cardId = subInfo.getCardId();
                 if (DBG) logd("Updating embedded sub nickname on cardId: " + cardId);
                 EuiccManager euiccManager = ((EuiccManager)
                         mContext.getSystemService(Context.EUICC_SERVICE)).createForCardId(cardId);
@@ -1597,11 +1873,10 @@ public class SubscriptionController extends ISub.Stub {
                             mContext, 0 /* requestCode */, new Intent(), 0 /* flags */));
             }
 
-            int result = mContext.getContentResolver().update(
-                    SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+            int result = updateSubInfoTable(subId, value);
 
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             notifySubscriptionInfoChanged();
 
@@ -1642,11 +1917,10 @@ public class SubscriptionController extends ISub.Stub {
             // that was removed as there doesn't seem to be a reason for that. If it is added
             // back, watch out for deadlocks.
 
-            result = mContext.getContentResolver().update(
-                    SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+            result = updateSubInfoTable(subId, value);
 
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             if (DBG) logd("[setDisplayNumber]- update result :" + result);
             notifySubscriptionInfoChanged();
@@ -1678,11 +1952,10 @@ public class SubscriptionController extends ISub.Stub {
         value.put(SubscriptionManager.EHPLMNS, formattedEhplmns);
         value.put(SubscriptionManager.HPLMNS, formattedHplmns);
 
-        int count = mContext.getContentResolver().update(
-                SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+        int count = updateSubInfoTable(subId, value);
 
         // Refresh the Cache of Active Subscription Info List
-        refreshCachedActiveSubscriptionInfoList();
+        updateCachedActiveSubscriptionInfoList();
 
         if (DBG) logd("[setAssociatedPlmns]- update result :" + count);
         notifySubscriptionInfoChanged();
@@ -1715,7 +1988,7 @@ public class SubscriptionController extends ISub.Stub {
             int result = databaseUpdateHelper(value, subId, true);
 
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             notifySubscriptionInfoChanged();
 
@@ -1741,15 +2014,14 @@ public class SubscriptionController extends ISub.Stub {
                 mContext.getOpPackageName());
         if (!updateEntireGroup || infoList == null || infoList.size() == 0) {
             // Only update specified subscriptions.
-            return mContext.getContentResolver().update(
-                    SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+            return updateSubInfoTable(subId, value);
         } else {
             // Update all subscriptions in the same group.
             int[] subIdList = new int[infoList.size()];
             for (int i = 0; i < infoList.size(); i++) {
                 subIdList[i] = infoList.get(i).getSubscriptionId();
             }
-            return mContext.getContentResolver().update(SubscriptionManager.CONTENT_URI,
+            return updateSubInfoTable(SubscriptionManager.CONTENT_URI,
                     value, getSelectionForSubIdList(subIdList), null);
         }
     }
@@ -1773,11 +2045,10 @@ public class SubscriptionController extends ISub.Stub {
             validateSubId(subId);
             ContentValues value = new ContentValues(1);
             value.put(SubscriptionManager.CARRIER_ID, carrierId);
-            int result = mContext.getContentResolver().update(
-                    SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+            int result = updateSubInfoTable(subId, value);
 
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             notifySubscriptionInfoChanged();
 
@@ -1811,11 +2082,10 @@ public class SubscriptionController extends ISub.Stub {
         value.put(SubscriptionManager.MCC_STRING, mccString);
         value.put(SubscriptionManager.MNC_STRING, mncString);
 
-        int result = mContext.getContentResolver().update(
-                SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+        int result = updateSubInfoTable(subId, value);
 
         // Refresh the Cache of Active Subscription Info List
-        refreshCachedActiveSubscriptionInfoList();
+        updateCachedActiveSubscriptionInfoList();
 
         notifySubscriptionInfoChanged();
 
@@ -1832,11 +2102,10 @@ public class SubscriptionController extends ISub.Stub {
         ContentValues value = new ContentValues(1);
         value.put(SubscriptionManager.IMSI, imsi);
 
-        int result = mContext.getContentResolver().update(
-                SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+        int result = updateSubInfoTable(subId, value);
 
         // Refresh the Cache of Active Subscription Info List
-        refreshCachedActiveSubscriptionInfoList();
+        updateCachedActiveSubscriptionInfoList();
 
         notifySubscriptionInfoChanged();
 
@@ -1854,22 +2123,8 @@ public class SubscriptionController extends ISub.Stub {
      * @return imsi
      */
     public String getImsiPrivileged(int subId) {
-        try (Cursor cursor = mContext.getContentResolver().query(
-                SubscriptionManager.CONTENT_URI, null,
-                SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=?",
-                new String[] {String.valueOf(subId)}, null)) {
-            String imsi = null;
-            if (cursor != null) {
-                if (cursor.moveToNext()) {
-                    imsi = getOptionalStringFromCursor(cursor, SubscriptionManager.IMSI,
-                            /*defaultVal*/ null);
-                }
-            } else {
-                logd("getImsiPrivileged: failed to retrieve imsi.");
-            }
-
-            return imsi;
-        }
+        ContentValues row = getSubInfoTable().mRowsBySubId.get(subId);
+        return row == null ? null : row.getAsString(SubscriptionManager.IMSI);
     }
 
     /**
@@ -1883,11 +2138,10 @@ public class SubscriptionController extends ISub.Stub {
         ContentValues value = new ContentValues();
         value.put(SubscriptionManager.ISO_COUNTRY_CODE, iso);
 
-        int result = mContext.getContentResolver().update(
-                SubscriptionManager.getUriForSubscriptionId(subId), value, null, null);
+        int result = updateSubInfoTable(subId, value);
 
         // Refresh the Cache of Active Subscription Info List
-        refreshCachedActiveSubscriptionInfoList();
+        updateCachedActiveSubscriptionInfoList();
 
         notifySubscriptionInfoChanged();
         return result;
@@ -2376,30 +2630,13 @@ public class SubscriptionController extends ISub.Stub {
             return null;
         }
 
-        Cursor cursor = mContext.getContentResolver().query(SubscriptionManager.CONTENT_URI,
-                null, SubscriptionManager.SIM_SLOT_INDEX + "=?",
-                new String[]{String.valueOf(slotIndex)}, null);
-        ArrayList<SubscriptionInfo> subList = null;
-        try {
-            if (cursor != null) {
-                while (cursor.moveToNext()) {
-                    SubscriptionInfo subInfo = getSubInfoRecord(cursor);
-                    if (subInfo != null) {
-                        if (subList == null) {
-                            subList = new ArrayList<SubscriptionInfo>();
-                        }
-                        subList.add(subInfo);
-                    }
-                }
-            }
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
+        List<SubscriptionInfo> subList = getSubInfoTable().mBySlotIndex.get(slotIndex);
+        if (subList == null) {
+            if (DBG) logd("[getSubInfoUsingSlotIndex]- null info return");
+            return null;
         }
-        if (DBG) logd("[getSubInfoUsingSlotIndex]- null info return");
 
-        return subList;
+        return copySubInfoList(subList);
     }
 
     @UnsupportedAppUsage
@@ -2551,11 +2788,9 @@ public class SubscriptionController extends ISub.Stub {
 
         try {
             validateSubId(subId);
-            ContentResolver resolver = mContext.getContentResolver();
-            int result = setSubscriptionPropertyIntoContentResolver(
-                    subId, propKey, propValue, resolver);
+            int result = setSubscriptionPropertyIntoContentResolver(subId, propKey, propValue);
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             return result;
         } finally {
@@ -2563,8 +2798,8 @@ public class SubscriptionController extends ISub.Stub {
         }
     }
 
-    private static int setSubscriptionPropertyIntoContentResolver(
-            int subId, String propKey, String propValue, ContentResolver resolver) {
+    private int setSubscriptionPropertyIntoContentResolver(
+            int subId, String propKey, String propValue) {
         ContentValues value = new ContentValues();
         switch (propKey) {
             case SubscriptionManager.CB_EXTREME_THREAT_ALERT:
@@ -2593,8 +2828,7 @@ public class SubscriptionController extends ISub.Stub {
                 break;
         }
 
-        return resolver.update(SubscriptionManager.getUriForSubscriptionId(subId),
-                value, null, null);
+        return updateSubInfoTable(subId, value);
     }
 
     /**
@@ -2629,55 +2863,69 @@ public class SubscriptionController extends ISub.Stub {
      */
     public String getSubscriptionProperty(int subId, String propKey) {
         String resultValue = null;
-        try (Cursor cursor = mContext.getContentResolver().query(SubscriptionManager.CONTENT_URI,
-                new String[]{propKey},
-                SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=?",
-                new String[]{subId + ""}, null)) {
-            if (cursor != null) {
-                if (cursor.moveToFirst()) {
-                    switch (propKey) {
-                        case SubscriptionManager.CB_EXTREME_THREAT_ALERT:
-                        case SubscriptionManager.CB_SEVERE_THREAT_ALERT:
-                        case SubscriptionManager.CB_AMBER_ALERT:
-                        case SubscriptionManager.CB_EMERGENCY_ALERT:
-                        case SubscriptionManager.CB_ALERT_SOUND_DURATION:
-                        case SubscriptionManager.CB_ALERT_REMINDER_INTERVAL:
-                        case SubscriptionManager.CB_ALERT_VIBRATE:
-                        case SubscriptionManager.CB_ALERT_SPEECH:
-                        case SubscriptionManager.CB_ETWS_TEST_ALERT:
-                        case SubscriptionManager.CB_CHANNEL_50_ALERT:
-                        case SubscriptionManager.CB_CMAS_TEST_ALERT:
-                        case SubscriptionManager.CB_OPT_OUT_DIALOG:
-                        case SubscriptionManager.ENHANCED_4G_MODE_ENABLED:
-                        case SubscriptionManager.VT_IMS_ENABLED:
-                        case SubscriptionManager.WFC_IMS_ENABLED:
-                        case SubscriptionManager.WFC_IMS_MODE:
-                        case SubscriptionManager.WFC_IMS_ROAMING_MODE:
-                        case SubscriptionManager.WFC_IMS_ROAMING_ENABLED:
-                        case SubscriptionManager.IS_OPPORTUNISTIC:
-                        case SubscriptionManager.GROUP_UUID:
-                        case SubscriptionManager.WHITE_LISTED_APN_DATA:
-                            resultValue = cursor.getInt(0) + "";
-                            break;
-                        case SubscriptionManager.DATA_ENABLED_OVERRIDE_RULES:
-                            resultValue = cursor.getString(0);
-                            break;
-                        default:
-                            if(DBG) logd("Invalid column name");
-                            break;
-                    }
-                } else {
-                    if(DBG) logd("Valid row not present in db");
-                }
-            } else {
-                if(DBG) logd("Query failed");
+        ContentValues row = getSubInfoTable().mRowsBySubId.get(subId);
+        if (row != null) {
+            switch (propKey) {
+                case SubscriptionManager.CB_EXTREME_THREAT_ALERT:
+                case SubscriptionManager.CB_SEVERE_THREAT_ALERT:
+                case SubscriptionManager.CB_AMBER_ALERT:
+                case SubscriptionManager.CB_EMERGENCY_ALERT:
+                case SubscriptionManager.CB_ALERT_SOUND_DURATION:
+                case SubscriptionManager.CB_ALERT_REMINDER_INTERVAL:
+                case SubscriptionManager.CB_ALERT_VIBRATE:
+                case SubscriptionManager.CB_ALERT_SPEECH:
+                case SubscriptionManager.CB_ETWS_TEST_ALERT:
+                case SubscriptionManager.CB_CHANNEL_50_ALERT:
+                case SubscriptionManager.CB_CMAS_TEST_ALERT:
+                case SubscriptionManager.CB_OPT_OUT_DIALOG:
+                case SubscriptionManager.ENHANCED_4G_MODE_ENABLED:
+                case SubscriptionManager.VT_IMS_ENABLED:
+                case SubscriptionManager.WFC_IMS_ENABLED:
+                case SubscriptionManager.WFC_IMS_MODE:
+                case SubscriptionManager.WFC_IMS_ROAMING_MODE:
+                case SubscriptionManager.WFC_IMS_ROAMING_ENABLED:
+                case SubscriptionManager.IS_OPPORTUNISTIC:
+                case SubscriptionManager.GROUP_UUID:
+                case SubscriptionManager.WHITE_LISTED_APN_DATA:
+                    resultValue = getIntColumnValue(row, propKey) + "";
+                    break;
+                case SubscriptionManager.DATA_ENABLED_OVERRIDE_RULES:
+                    resultValue = row.getAsString(propKey);
+                    break;
+                default:
+                    if(DBG) logd("Invalid column name");
+                    break;
             }
+        } else {
+            if(DBG) logd("Valid row not present in db");
         }
 
         if (DBG) logd("getSubscriptionProperty Query value = " + resultValue);
         return resultValue;
     }
 
+    /**
+     * Read a cached column the way {@link Cursor#getInt} reads it from SQLite: the leading integer
+     * of the stored text, or 0 if the value is null or does not start with a number.
+     */
+    private static int getIntColumnValue(ContentValues row, String column) {
+        String value = row.getAsString(column);
+        if (value == null) return 0;
+        value = value.trim();
+        int end = 0;
+        if (end < value.length() && (value.charAt(end) == '-' || value.charAt(end) == '+')) {
+            end++;
+        }
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        try {
+            return Integer.parseInt(value.substring(0, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private static void printStackTrace(String msg) {
         RuntimeException re = new RuntimeException();
         slogd("StackTrace - " + msg);
@@ -2789,7 +3037,7 @@ public class SubscriptionController extends ISub.Stub {
             if (prevSetting != DEPRECATED_SETTING) {
                 // Write previous setting into Subscription DB.
                 setSubscriptionPropertyIntoContentResolver(defaultSubId, subscriptionProperty,
-                        Integer.toString(prevSetting), resolver);
+                        Integer.toString(prevSetting));
                 // Write global setting value with DEPRECATED_SETTING making sure
                 // migration only happen once.
                 Settings.Global.putInt(resolver, settingGlobal, DEPRECATED_SETTING);
@@ -2843,12 +3091,11 @@ public class SubscriptionController extends ISub.Stub {
 
         SubscriptionManager subManager = (SubscriptionManager)
                 mContext.getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
-        List<SubscriptionInfo> subInfo = getSubInfo(
-                SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=" + subId, null);
+        SubscriptionInfo subInfo = getSubscriptionInfo(subId);
 
         try {
-            if (!isActiveSubId(subId) && subInfo != null && subInfo.size() == 1
-                    && subManager.canManageSubscription(subInfo.get(0), callingPackage)) {
+            if (!isActiveSubId(subId) && subInfo != null
+                    && subManager.canManageSubscription(subInfo, callingPackage)) {
                 return;
             }
             throw new SecurityException(message);
@@ -2940,12 +3187,12 @@ public class SubscriptionController extends ISub.Stub {
             ContentValues value = new ContentValues();
             value.put(SubscriptionManager.GROUP_UUID, groupUUID.toString());
             value.put(SubscriptionManager.GROUP_OWNER, callingPackage);
-            int result = mContext.getContentResolver().update(SubscriptionManager.CONTENT_URI,
+            int result = updateSubInfoTable(SubscriptionManager.CONTENT_URI,
                     value, getSelectionForSubIdList(subIdList), null);
 
             if (DBG) logdl("createSubscriptionGroup update DB result: " + result);
 
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
 
             notifySubscriptionInfoChanged();
 
@@ -2960,8 +3207,7 @@ public class SubscriptionController extends ISub.Stub {
     private String getOwnerPackageOfSubGroup(ParcelUuid groupUuid) {
         if (groupUuid == null) return null;
 
-        List<SubscriptionInfo> infoList = getSubInfo(SubscriptionManager.GROUP_UUID
-                + "=\'" + groupUuid.toString() + "\'", null);
+        List<SubscriptionInfo> infoList = getSubInfoTable().mByGroupUuid.get(groupUuid);
 
         return ArrayUtils.isEmpty(infoList) ? null : infoList.get(0).getGroupOwner();
     }
@@ -2986,8 +3232,7 @@ public class SubscriptionController extends ISub.Stub {
         // Getting all subscriptions in the group.
         long identity = Binder.clearCallingIdentity();
         try {
-            infoList = getSubInfo(SubscriptionManager.GROUP_UUID
-                    + "=\'" + groupUuid.toString() + "\'", null);
+            infoList = getSubInfoTable().mByGroupUuid.get(groupUuid);
         } finally {
             Binder.restoreCallingIdentity(identity);
         }
@@ -3022,7 +3267,7 @@ public class SubscriptionController extends ISub.Stub {
         // permission checks on all members.
         ContentValues value = new ContentValues(1);
         value.put(SubscriptionManager.GROUP_OWNER, groupOwner);
-        return mContext.getContentResolver().update(SubscriptionManager.CONTENT_URI,
+        return updateSubInfoTable(SubscriptionManager.CONTENT_URI,
                 value, SubscriptionManager.GROUP_UUID + "=\"" + groupUuid + "\"", null);
     }
 
@@ -3064,14 +3309,14 @@ public class SubscriptionController extends ISub.Stub {
 
             ContentValues value = new ContentValues();
             value.put(SubscriptionManager.GROUP_UUID, groupUuid.toString());
-            int result = mContext.getContentResolver().update(SubscriptionManager.CONTENT_URI,
+            int result = updateSubInfoTable(SubscriptionManager.CONTENT_URI,
                     value, getSelectionForSubIdList(subIdList), null);
 
             if (DBG) logdl("addSubscriptionsIntoGroup update DB result: " + result);
 
             if (result > 0) {
                 updateGroupOwner(groupUuid, callingPackage);
-                refreshCachedActiveSubscriptionInfoList();
+                updateCachedActiveSubscriptionInfoList();
                 notifySubscriptionInfoChanged();
                 MultiSimSettingController.getInstance().notifySubscriptionGroupChanged(groupUuid);
             }
@@ -3118,8 +3363,7 @@ public class SubscriptionController extends ISub.Stub {
         long identity = Binder.clearCallingIdentity();
 
         try {
-            List<SubscriptionInfo> subInfoList = getSubInfo(getSelectionForSubIdList(subIdList),
-                    null);
+            List<SubscriptionInfo> subInfoList = getSubInfoTable().getBySubIds(subIdList);
             for (SubscriptionInfo info : subInfoList) {
                 if (!groupUuid.equals(info.getGroupUuid())) {
                     throw new IllegalArgumentException("Subscription " + info.getSubscriptionId()
@@ -3129,14 +3373,14 @@ public class SubscriptionController extends ISub.Stub {
             ContentValues value = new ContentValues();
             value.put(SubscriptionManager.GROUP_UUID, (String) null);
             value.put(SubscriptionManager.GROUP_OWNER, (String) null);
-            int result = mContext.getContentResolver().update(SubscriptionManager.CONTENT_URI,
+            int result = updateSubInfoTable(SubscriptionManager.CONTENT_URI,
                     value, getSelectionForSubIdList(subIdList), null);
 
             if (DBG) logdl("removeSubscriptionsFromGroup update DB result: " + result);
 
             if (result > 0) {
                 updateGroupOwner(groupUuid, callingPackage);
-                refreshCachedActiveSubscriptionInfoList();
+                updateCachedActiveSubscriptionInfoList();
                 notifySubscriptionInfoChanged();
             }
         } finally {
@@ -3178,8 +3422,7 @@ public class SubscriptionController extends ISub.Stub {
             // Check access rules for each sub info.
             SubscriptionManager subscriptionManager = (SubscriptionManager)
                     mContext.getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
-            List<SubscriptionInfo> subInfoList = getSubInfo(
-                    getSelectionForSubIdList(subIdList), null);
+            List<SubscriptionInfo> subInfoList = getSubInfoTable().getBySubIds(subIdList);
 
             // Didn't find all the subscriptions specified in subIdList.
             if (subInfoList == null || subInfoList.size() != subIdList.length) {
@@ -3239,38 +3482,26 @@ public class SubscriptionController extends ISub.Stub {
     @Override
     public List<SubscriptionInfo> getSubscriptionsInGroup(ParcelUuid groupUuid,
             String callingPackage) {
-        long identity = Binder.clearCallingIdentity();
-        List<SubscriptionInfo> subInfoList;
+        if (groupUuid == null) {
+            return new ArrayList<>();
+        }
 
-        try {
-            subInfoList = getAllSubInfoList(mContext.getOpPackageName());
-            if (groupUuid == null || subInfoList == null || subInfoList.isEmpty()) {
-                return new ArrayList<>();
-            }
-        } finally {
-            Binder.restoreCallingIdentity(identity);
+        List<SubscriptionInfo> subInfoList = getSubInfoTable().mByGroupUuid.get(groupUuid);
+        if (subInfoList == null) {
+            return new ArrayList<>();
         }
 
         return subInfoList.stream().filter(info -> {
-            if (!groupUuid.equals(info.getGroupUuid())) return false;
             int subId = info.getSubscriptionId();
             return TelephonyPermissions.checkCallingOrSelfReadPhoneState(mContext, subId,
                     callingPackage, "getSubscriptionsInGroup")
                     || (info.isEmbedded() && info.canManageSubscription(mContext, callingPackage));
-        }).collect(Collectors.toList());
+        }).map(this::copySubInfo).collect(Collectors.toList());
     }
 
     public ParcelUuid getGroupUuid(int subId) {
-        ParcelUuid groupUuid;
-        List<SubscriptionInfo> subInfo = getSubInfo(SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID
-                        + "=" + subId, null);
-        if (subInfo == null || subInfo.size() == 0) {
-            groupUuid = null;
-        } else {
-            groupUuid = subInfo.get(0).getGroupUuid();
-        }
-
-        return groupUuid;
+        SubscriptionInfo subInfo = getSubInfoTable().mBySubId.get(subId);
+        return subInfo == null ? null : subInfo.getGroupUuid();
     }
 
 
@@ -3456,14 +3687,13 @@ public class SubscriptionController extends ISub.Stub {
                         "isSubscriptionEnabled not usable subId " + subId);
             }
 
-            List<SubscriptionInfo> infoList = getSubInfo(
-                    SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=" + subId, null);
-            if (infoList == null || infoList.isEmpty()) {
+            SubscriptionInfo info = getSubscriptionInfo(subId);
+            if (info == null) {
                 // Subscription doesn't exist.
                 return false;
             }
 
-            boolean isEmbedded = infoList.get(0).isEmbedded();
+            boolean isEmbedded = info.isEmbedded();
 
             if (isEmbedded) {
                 return isActiveSubId(subId);
@@ -3533,25 +3763,24 @@ public class SubscriptionController extends ISub.Stub {
             canReadAllPhoneState = false;
         }
 
-        synchronized (mSubInfoListLock) {
-            // If the caller can read all phone state, just return the full list.
-            if (canReadAllPhoneState) {
-                return new ArrayList<>(cacheSubList);
-            }
-
-            // Filter the list to only include subscriptions which the caller can manage.
-            return cacheSubList.stream()
-                    .filter(subscriptionInfo -> {
-                        try {
-                            return TelephonyPermissions.checkCallingOrSelfReadPhoneState(mContext,
-                                    subscriptionInfo.getSubscriptionId(), callingPackage,
-                                    "getSubscriptionInfoList");
-                        } catch (SecurityException e) {
-                            return false;
-                        }
-                    })
-                    .collect(Collectors.toList());
+        // Both caches are replaced rather than modified, so no lock is needed to read them.
+        // If the caller can read all phone state, just return the full list.
+        if (canReadAllPhoneState) {
+            return new ArrayList<>(cacheSubList);
         }
+
+        // Filter the list to only include subscriptions which the caller can manage.
+        return cacheSubList.stream()
+                .filter(subscriptionInfo -> {
+                    try {
+                        return TelephonyPermissions.checkCallingOrSelfReadPhoneState(mContext,
+                                subscriptionInfo.getSubscriptionId(), callingPackage,
+                                "getSubscriptionInfoList");
+                    } catch (SecurityException e) {
+                        return false;
+                    }
+                })
+                .collect(Collectors.toList());
     }
 
     private synchronized boolean addToSubIdList(int slotIndex, int subId, int subscriptionType) {
@@ -3616,10 +3845,9 @@ public class SubscriptionController extends ISub.Stub {
         synchronized (mSubInfoListLock) {
             List<SubscriptionInfo> oldOpptCachedList = mCacheOpportunisticSubInfoList;
 
-            List<SubscriptionInfo> subList = getSubInfo(
-                    SubscriptionManager.IS_OPPORTUNISTIC + "=1 AND ("
-                            + SubscriptionManager.SIM_SLOT_INDEX + ">=0 OR "
-                            + SubscriptionManager.IS_EMBEDDED + "=1)", null);
+            List<SubscriptionInfo> subList = copySubInfoList(getSubInfoTable().filter(
+                    info -> info.isOpportunistic()
+                            && (info.getSimSlotIndex() >= 0 || info.isEmbedded())));
 
             if (subList != null) {
                 subList.sort(SUBSCRIPTION_INFO_COMPARATOR);
@@ -3660,7 +3888,7 @@ public class SubscriptionController extends ISub.Stub {
     private boolean shouldDisableSubGroup(ParcelUuid groupUuid) {
         if (groupUuid == null) return false;
 
-        for (SubscriptionInfo activeInfo : mCacheActiveSubInfoList) {
+        for (SubscriptionInfo activeInfo : mActiveSubInfoSnapshot.mList) {
             if (!activeInfo.isOpportunistic() && groupUuid.equals(activeInfo.getGroupUuid())) {
                 return false;
             }
@@ -3719,7 +3947,7 @@ public class SubscriptionController extends ISub.Stub {
 
         if (result) {
             // Refresh the Cache of Active Subscription Info List
-            refreshCachedActiveSubscriptionInfoList();
+            updateCachedActiveSubscriptionInfoList();
             notifySubscriptionInfoChanged();
         }
 
@@ -17,11 +17,13 @@
 package com.android.internal.telephony;
 
 import android.text.TextUtils;
+import android.util.LruCache;
 
 import libcore.timezone.CountryTimeZones;
 import libcore.timezone.TimeZoneFinder;
 
 import java.util.Date;
+import java.util.Objects;
 import java.util.TimeZone;
 
 /**
@@ -141,9 +143,70 @@ public class TimeZoneLookupHelper {
 
     private static final int MS_PER_HOUR = 60 * 60 * 1000;
 
+    /** The number of results of each kind of country lookup that are memoized. */
+    private static final int LOOKUP_CACHE_SIZE = 8;
+
+    /**
+     * Lookups for times in the same bucket share their memoized result. Time zone offset
+     * transitions happen on quarter hours so the result cannot change within a bucket.
+     */
+    private static final long LOOKUP_TIME_BUCKET_MILLIS = 15 * 60 * 1000;
+
+    /** The key of a memoized country lookup result. */
+    private static final class LookupKey {
+        private final String mIsoCountryCode;
+        private final int mUtcOffsetMillis;
+        private final boolean mIsDst;
+        private final long mTimeBucket;
+        private final String mBiasZoneId;
+
+        LookupKey(String isoCountryCode, int utcOffsetMillis, boolean isDst, long whenMillis,
+                String biasZoneId) {
+            mIsoCountryCode = isoCountryCode;
+            mUtcOffsetMillis = utcOffsetMillis;
+            mIsDst = isDst;
+            mTimeBucket = Math.floorDiv(whenMillis, LOOKUP_TIME_BUCKET_MILLIS);
+            mBiasZoneId = biasZoneId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            LookupKey that = (LookupKey) o;
+            return mUtcOffsetMillis == that.mUtcOffsetMillis
+                    && mIsDst == that.mIsDst
+                    && mTimeBucket == that.mTimeBucket
+                    && Objects.equals(mIsoCountryCode, that.mIsoCountryCode)
+                    && Objects.equals(mBiasZoneId, that.mBiasZoneId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hashCode(mIsoCountryCode);
+            result = 31 * result + mUtcOffsetMillis;
+            result = 31 * result + (mIsDst ? 1 : 0);
+            result = 31 * result + Long.hashCode(mTimeBucket);
+            result = 31 * result + Objects.hashCode(mBiasZoneId);
+            return result;
+        }
+    }
+
     /** The last CountryTimeZones object retrieved. */
     private CountryTimeZones mLastCountryTimeZones;
 
+    /** Memoized results of {@link #lookupByNitzCountry}. Null results are not memoized. */
+    private final LruCache<LookupKey, OffsetResult> mNitzCountryLookupCache =
+            new LruCache<>(LOOKUP_CACHE_SIZE);
+
+    /** Memoized results of {@link #lookupByCountry}. Null results are not memoized. */
+    private final LruCache<LookupKey, CountryResult> mCountryLookupCache =
+            new LruCache<>(LOOKUP_CACHE_SIZE);
+
     public TimeZoneLookupHelper() {}
 
     /**
@@ -155,11 +218,18 @@ public class TimeZoneLookupHelper {
      * matching time zones are found.
      */
     public OffsetResult lookupByNitzCountry(NitzData nitzData, String isoCountryCode) {
+        android.icu.util.TimeZone bias = android.icu.util.TimeZone.getDefault();
+        LookupKey key = new LookupKey(isoCountryCode, nitzData.getLocalOffsetMillis(),
+                nitzData.isDst(), nitzData.getCurrentTimeInMillis(), bias.getID());
+        OffsetResult result = mNitzCountryLookupCache.get(key);
+        if (result != null) {
+            return result;
+        }
+
         CountryTimeZones countryTimeZones = getCountryTimeZones(isoCountryCode);
         if (countryTimeZones == null) {
             return null;
         }
-        android.icu.util.TimeZone bias = android.icu.util.TimeZone.getDefault();
 
         CountryTimeZones.OffsetResult offsetResult = countryTimeZones.lookupByOffsetWithBias(
                 nitzData.getLocalOffsetMillis(), nitzData.isDst(),
@@ -168,7 +238,9 @@ public class TimeZoneLookupHelper {
         if (offsetResult == null) {
             return null;
         }
-        return new OffsetResult(offsetResult.mTimeZone.getID(), offsetResult.mOneMatch);
+        result = new OffsetResult(offsetResult.mTimeZone.getID(), offsetResult.mOneMatch);
+        mNitzCountryLookupCache.put(key, result);
+        return result;
     }
 
     /**
@@ -192,6 +264,15 @@ public class TimeZoneLookupHelper {
      * {@code null} can be returned.
      */
     public CountryResult lookupByCountry(String isoCountryCode, long whenMillis) {
+        LookupKey key = new LookupKey(isoCountryCode, 0 /* utcOffsetMillis */, false /* isDst */,
+                whenMillis, null /* biasZoneId */);
+        CountryResult result = mCountryLookupCache.get(key);
+        if (result != null) {
+            // The memoized result may be for another time in the same bucket.
+            return result.whenMillis == whenMillis ? result
+                    : new CountryResult(result.zoneId, result.allZonesHaveSameOffset, whenMillis);
+        }
+
         CountryTimeZones countryTimeZones = getCountryTimeZones(isoCountryCode);
         if (countryTimeZones == null) {
             // Unknown country code.
@@ -201,10 +282,12 @@ public class TimeZoneLookupHelper {
             return null;
         }
 
-        return new CountryResult(
+        result = new CountryResult(
                 countryTimeZones.getDefaultTimeZoneId(),
                 countryTimeZones.isDefaultOkForCountryTimeZoneDetection(whenMillis),
                 whenMillis);
+        mCountryLookupCache.put(key, result);
+        return result;
     }
 
     /**
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.util.TimeUtils;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+
+/**
+ * Tracks the number of TCP packets sent since the last packet was received, which is what the
+ * data stall alarm of {@link DcTracker} checks against the watchdog trigger. Each sample only
+ * carries the packets sent and received since the previous one, so the count is kept up to date
+ * without going back over earlier samples.
+ *
+ * The most recent samples are kept in a fixed size ring for dumpsys, so that a reported stall
+ * can be matched with the traffic that led to it.
+ */
+final class DataStallDetector {
+    @VisibleForTesting
+    static final int MAX_SAMPLES = 32;
+
+    private final long[] mSampleTimeMs = new long[MAX_SAMPLES];
+    private final long[] mSampleSent = new long[MAX_SAMPLES];
+    private final long[] mSampleReceived = new long[MAX_SAMPLES];
+    private final long[] mSampleSentSinceLastRecv = new long[MAX_SAMPLES];
+    // Index of the next sample to write and the number of valid samples
+    private int mNextSample;
+    private int mSampleCount;
+
+    // Number of packets sent since the last received packet
+    private long mSentSinceLastRecv;
+
+    /**
+     * Add a sample.
+     *
+     * @param timeMs elapsed realtime of the sample.
+     * @param sent packets sent since the previous sample.
+     * @param received packets received since the previous sample.
+     * @param countSent whether packets sent without anything received count towards a stall.
+     *        If {@code false}, e.g. during a voice call, the count restarts instead.
+     */
+    public void addSample(long timeMs, long sent, long received, boolean countSent) {
+        if (received > 0) {
+            mSentSinceLastRecv = 0;
+        } else if (sent > 0) {
+            mSentSinceLastRecv = countSent ? mSentSinceLastRecv + sent : 0;
+        }
+
+        mSampleTimeMs[mNextSample] = timeMs;
+        mSampleSent[mNextSample] = sent;
+        mSampleReceived[mNextSample] = received;
+        mSampleSentSinceLastRecv[mNextSample] = mSentSinceLastRecv;
+        mNextSample = (mNextSample + 1) % MAX_SAMPLES;
+        if (mSampleCount < MAX_SAMPLES) {
+            mSampleCount++;
+        }
+    }
+
+    /**
+     * @return the number of packets sent since the last received packet.
+     */
+    public long getSentSinceLastRecv() {
+        return mSentSinceLastRecv;
+    }
+
+    /**
+     * @return {@code true} if at least {@code trigger} packets were sent since the last received
+     *         packet.
+     */
+    public boolean isStallSuspected(int trigger) {
+        return mSentSinceLastRecv >= trigger;
+    }
+
+    /**
+     * Restart counting sent packets, e.g. after a recovery action. The samples are kept.
+     */
+    public void resetSentSinceLastRecv() {
+        mSentSinceLastRecv = 0;
+    }
+
+    /**
+     * @return the number of samples currently kept.
+     */
+    @VisibleForTesting
+    int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * Dump the kept samples, oldest first.
+     */
+    public void dump(PrintWriter pw) {
+        pw.println(" DataStallDetector: mSentSinceLastRecv=" + mSentSinceLastRecv
+                + " samples=" + mSampleCount);
+        int index = (mNextSample - mSampleCount + MAX_SAMPLES) % MAX_SAMPLES;
+        for (int i = 0; i < mSampleCount; i++) {
+            pw.print("  ");
+            TimeUtils.formatDuration(mSampleTimeMs[index], pw);
+            pw.println(" sent=" + mSampleSent[index] + " received=" + mSampleReceived[index]
+                    + " sentSinceLastRecv=" + mSampleSentSinceLastRecv[index]);
+            index = (index + 1) % MAX_SAMPLES;
+        }
+    }
+}
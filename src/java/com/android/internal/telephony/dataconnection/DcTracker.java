@@ -107,7 +107,6 @@ import com.android.internal.telephony.dataconnection.DataEnabledSettings.DataEna
 import com.android.internal.telephony.metrics.TelephonyMetrics;
 import com.android.internal.telephony.uicc.IccRecords;
 import com.android.internal.telephony.uicc.UiccController;
-import com.android.internal.util.ArrayUtils;
 import com.android.internal.util.AsyncChannel;
 
 import java.io.FileDescriptor;
@@ -235,6 +234,9 @@ public class DcTracker extends Handler {
     private static final int POLL_NETSTAT_MILLIS = 1000;
     // 10 min. default polling interval when screen is off.
     private static final int POLL_NETSTAT_SCREEN_OFF_MILLIS = 1000*60*10;
+
+    // Maximum factor the screen off poll period is multiplied by while there is no traffic
+    private static final int POLL_NETSTAT_IDLE_MAX_BACKOFF = 8;
     // Default sent packets without ack which triggers initial recovery steps
     private static final int NUMBER_SENT_PACKETS_OF_HANG = 10;
 
@@ -277,6 +279,20 @@ public class DcTracker extends Handler {
     /** all APN settings applicable to the current carrier */
     private ArrayList<ApnSetting> mAllApnSettings = new ArrayList<>();
 
+    /**
+     * APN settings from mAllApnSettings by the APN type bitmask they can handle and the network
+     * type they support, in mAllApnSettings order. Filled on demand and cleared whenever
+     * mAllApnSettings is rebuilt.
+     */
+    private final Map<Long, ArrayList<ApnSetting>> mApnSettingsByTypeAndNetwork =
+            new HashMap<>();
+
+    /**
+     * TCP buffer sizes used by all data connections of this DcTracker. Replaced as a whole on
+     * carrier config change, which also covers resource overlay changes on MCC change.
+     */
+    private volatile TcpBufferSizeTable mTcpBufferSizeTable;
+
     /** preferred apn */
     private ApnSetting mPreferredApn = null;
 
@@ -323,6 +339,14 @@ public class DcTracker extends Handler {
 
     private final LocalLog mDataRoamingLeakageLog = new LocalLog(50);
     private final LocalLog mApnSettingsInitializationLog = new LocalLog(50);
+    private final LocalLog mAllConnectableApnsSetupLog = new LocalLog(50);
+
+    /**
+     * Time when setupDataOnAllConnectableApns started bringing up data connections which have
+     * not all completed yet, or 0 if there are none.
+     */
+    private long mAllConnectableApnsSetupStartMs = 0;
+    private String mAllConnectableApnsSetupReason;
 
     private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver () {
         @Override
@@ -351,6 +375,7 @@ public class DcTracker extends Handler {
                 onActionIntentProvisioningApnAlarm(intent);
             } else if (action.equals(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED)) {
                 if (DBG) log("received carrier config change");
+                mTcpBufferSizeTable = createTcpBufferSizeTable();
                 if (mIccRecords.get() != null && mIccRecords.get().getRecordsLoaded()) {
                     setDefaultDataRoamingEnabled();
                 }
@@ -363,15 +388,27 @@ public class DcTracker extends Handler {
     private final Runnable mPollNetStat = new Runnable() {
         @Override
         public void run() {
-            updateDataActivity();
+            boolean hadTraffic = updateDataActivity();
 
             if (mIsScreenOn) {
+                // The data activity reported from here must follow traffic closely, so the
+                // configured period is always used while the screen is on.
+                mNetStatIdleBackoff = 1;
                 mNetStatPollPeriod = Settings.Global.getInt(mResolver,
                         Settings.Global.PDP_WATCHDOG_POLL_INTERVAL_MS, POLL_NETSTAT_MILLIS);
             } else {
-                mNetStatPollPeriod = Settings.Global.getInt(mResolver,
+                int basePollPeriod = Settings.Global.getInt(mResolver,
                         Settings.Global.PDP_WATCHDOG_LONG_POLL_INTERVAL_MS,
                         POLL_NETSTAT_SCREEN_OFF_MILLIS);
+                // Back off while there is no traffic, doubling the period on each idle poll up to
+                // POLL_NETSTAT_IDLE_MAX_BACKOFF times the configured one. Turning the screen on
+                // restarts the poll at the screen on period.
+                if (hadTraffic) {
+                    mNetStatIdleBackoff = 1;
+                } else if (mNetStatIdleBackoff < POLL_NETSTAT_IDLE_MAX_BACKOFF) {
+                    mNetStatIdleBackoff *= 2;
+                }
+                mNetStatPollPeriod = basePollPeriod * mNetStatIdleBackoff;
             }
 
             if (mNetStatPollEnabled) {
@@ -562,6 +599,8 @@ public class DcTracker extends Handler {
     private long mTxPkts;
     private long mRxPkts;
     private int mNetStatPollPeriod;
+    // Factor applied to the screen on poll period, see mPollNetStat
+    private int mNetStatIdleBackoff = 1;
     private boolean mNetStatPollEnabled = false;
 
     private TxRxSum mDataStallTxRxSum = new TxRxSum(0, 0);
@@ -569,8 +608,8 @@ public class DcTracker extends Handler {
     private int mDataStallAlarmTag = (int) SystemClock.elapsedRealtime();
     // The current data stall alarm intent
     private PendingIntent mDataStallAlarmIntent = null;
-    // Number of packets sent since the last received packet
-    private long mSentSinceLastRecv;
+    // Counts the packets sent since the last received packet
+    private final DataStallDetector mDataStallDetector = new DataStallDetector();
     // Controls when a simple recovery attempt it to be tried
     private int mNoRecvPollCount = 0;
     // Reference counter for enabling fail fast
@@ -1423,9 +1462,55 @@ public class DcTracker extends Handler {
             log("setupDataOnAllConnectableApns: " + reason + " " + sb);
         }
 
+        // Drop a previous measurement whose connections were torn down before completing.
+        if (mAllConnectableApnsSetupStartMs != 0 && !isAnyApnContextConnecting()) {
+            mAllConnectableApnsSetupStartMs = 0;
+        }
+
         for (ApnContext apnContext : mPrioritySortedApnContexts) {
             setupDataOnConnectableApn(apnContext, reason, retryFailures);
         }
+
+        // The bring-ups above are all in flight at the same time, DataConnection does not wait
+        // for the previous setup response. Measure how long it takes until none is pending.
+        if (mAllConnectableApnsSetupStartMs == 0 && isAnyApnContextConnecting()) {
+            mAllConnectableApnsSetupStartMs = SystemClock.elapsedRealtime();
+            mAllConnectableApnsSetupReason = reason;
+        }
+    }
+
+    private boolean isAnyApnContextConnecting() {
+        for (ApnContext apnContext : mApnContexts.values()) {
+            if (apnContext.getState() == DctConstants.State.CONNECTING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Log the time it took to bring up the data connections started by
+     * setupDataOnAllConnectableApns once none of them is connecting anymore.
+     */
+    private void checkAllConnectableApnsSetupDone() {
+        if (mAllConnectableApnsSetupStartMs == 0 || isAnyApnContextConnecting()) {
+            return;
+        }
+        StringBuilder connected = new StringBuilder();
+        for (ApnContext apnContext : mPrioritySortedApnContexts) {
+            if (apnContext.getState() == DctConstants.State.CONNECTED) {
+                connected.append(apnContext.getApnType()).append(' ');
+            }
+        }
+        long durationMs = SystemClock.elapsedRealtime() - mAllConnectableApnsSetupStartMs;
+        mAllConnectableApnsSetupLog.log("reason=" + mAllConnectableApnsSetupReason
+                + " durationMs=" + durationMs + " connected=[ " + connected + "]");
+        if (DBG) {
+            log("checkAllConnectableApnsSetupDone: " + durationMs + "ms, connected=[ "
+                    + connected + "]");
+        }
+        mAllConnectableApnsSetupStartMs = 0;
+        mAllConnectableApnsSetupReason = null;
     }
 
     private void setupDataOnConnectableApn(ApnContext apnContext, String reason,
@@ -1747,14 +1832,10 @@ public class DcTracker extends Handler {
         }
 
         if (dunCandidates.isEmpty()) {
-            if (!ArrayUtils.isEmpty(mAllApnSettings)) {
-                for (ApnSetting apn : mAllApnSettings) {
-                    if (apn.canHandleType(ApnSetting.TYPE_DUN)) {
-                        dunCandidates.add(apn);
-                    }
-                }
-                if (VDBG) log("fetchDunApns: dunCandidates from database: " + dunCandidates);
-            }
+            retDunSettings.addAll(getApnSettingsForTypeAndNetwork(ApnSetting.TYPE_DUN,
+                    ServiceState.rilRadioTechnologyToNetworkType(bearer)));
+            if (VDBG) log("fetchDunApns: dunSettings from database: " + retDunSettings);
+            return retDunSettings;
         }
 
         for (ApnSetting dunSetting : dunCandidates) {
@@ -2222,6 +2303,7 @@ public class DcTracker extends Handler {
 
         cleanUpAllConnectionsInternal(true, Phone.REASON_SIM_NOT_READY);
         mAllApnSettings.clear();
+        clearApnSettingsByTypeAndNetwork();
         mAutoAttachOnCreationConfig = false;
         // Clear auto attach as modem is expected to do a new attach once SIM is ready
         mAutoAttachEnabled.set(false);
@@ -3120,6 +3202,8 @@ public class DcTracker extends Handler {
 
         dedupeApnSettings();
 
+        clearApnSettingsByTypeAndNetwork();
+
         if (mAllApnSettings.isEmpty()) {
             log("createAllApnList: No APN found for carrier, operator: " + operator);
             mApnSettingsInitializationLog.log("no APN found for carrier, operator: "
@@ -3290,29 +3374,51 @@ public class DcTracker extends Handler {
         }
 
         if (DBG) log("buildWaitingApns: mAllApnSettings=" + mAllApnSettings);
-        for (ApnSetting apn : mAllApnSettings) {
-            if (apn.canHandleType(requestedApnTypeBitmask)) {
-                if (apn.canSupportNetworkType(
-                        ServiceState.rilRadioTechnologyToNetworkType(radioTech))) {
-                    if (VDBG) log("buildWaitingApns: adding apn=" + apn);
-                    apnList.add(apn);
-                } else {
-                    if (DBG) {
-                        log("buildWaitingApns: networkTypeBitmask:"
-                                + apn.getNetworkTypeBitmask()
-                                + " does not include radioTech:"
-                                + ServiceState.rilRadioTechnologyToString(radioTech));
+        apnList.addAll(getApnSettingsForTypeAndNetwork(requestedApnTypeBitmask,
+                ServiceState.rilRadioTechnologyToNetworkType(radioTech)));
+
+        apnList = sortApnListByPreferred(apnList);
+        if (DBG) log("buildWaitingApns: " + apnList.size() + " APNs in the list: " + apnList);
+        return apnList;
+    }
+
+    /**
+     * Get the APN settings which can handle the APN type and support the network type.
+     *
+     * @param apnTypeBitmask the requested APN type bitmask
+     * @param networkType the network type, e.g. {@link TelephonyManager#NETWORK_TYPE_LTE}
+     * @return the matching APN settings in mAllApnSettings order. The list is shared, callers
+     *         must copy it before modifying.
+     */
+    private ArrayList<ApnSetting> getApnSettingsForTypeAndNetwork(int apnTypeBitmask,
+            int networkType) {
+        final long key = ((long) apnTypeBitmask << 32) | (networkType & 0xffffffffL);
+        synchronized (mApnSettingsByTypeAndNetwork) {
+            ArrayList<ApnSetting> apnList = mApnSettingsByTypeAndNetwork.get(key);
+            if (apnList == null) {
+                apnList = new ArrayList<>();
+                for (ApnSetting apn : mAllApnSettings) {
+                    if (!apn.canHandleType(apnTypeBitmask)) {
+                        continue;
+                    }
+                    if (apn.canSupportNetworkType(networkType)) {
+                        apnList.add(apn);
+                    } else if (VDBG) {
+                        log("getApnSettingsForTypeAndNetwork: networkTypeBitmask:"
+                                + apn.getNetworkTypeBitmask() + " does not include networkType:"
+                                + TelephonyManager.getNetworkTypeName(networkType));
                     }
                 }
-            } else if (VDBG) {
-                log("buildWaitingApns: couldn't handle requested ApnType="
-                        + requestedApnType);
+                mApnSettingsByTypeAndNetwork.put(key, apnList);
             }
+            return apnList;
         }
+    }
 
-        apnList = sortApnListByPreferred(apnList);
-        if (DBG) log("buildWaitingApns: " + apnList.size() + " APNs in the list: " + apnList);
-        return apnList;
+    private void clearApnSettingsByTypeAndNetwork() {
+        synchronized (mApnSettingsByTypeAndNetwork) {
+            mApnSettingsByTypeAndNetwork.clear();
+        }
     }
 
     /**
@@ -3600,6 +3706,7 @@ public class DcTracker extends Handler {
                         cause = (int) ar.result;
                     }
                     onDataSetupComplete(apnContext, success, cause, requestType);
+                    checkAllConnectableApnsSetupDone();
                 } else {
                     loge("EVENT_DATA_SETUP_COMPLETE: Dropped the event because generation "
                             + "did not match.");
@@ -3614,6 +3721,7 @@ public class DcTracker extends Handler {
                 requestType = msg.arg2;
                 if (apnContext.getConnectionGeneration() == generation) {
                     onDataSetupCompleteError(apnContext, requestType);
+                    checkAllConnectableApnsSetupDone();
                 } else {
                     loge("EVENT_DATA_SETUP_COMPLETE_ERROR: Dropped the event because generation "
                             + "did not match.");
@@ -3945,6 +4053,23 @@ public class DcTracker extends Handler {
         Rlog.e(mLogTag, s);
     }
 
+    /**
+     * @return the TCP buffer sizes to use for the data connections of this DcTracker.
+     */
+    TcpBufferSizeTable getTcpBufferSizeTable() {
+        TcpBufferSizeTable table = mTcpBufferSizeTable;
+        if (table == null) {
+            table = createTcpBufferSizeTable();
+            mTcpBufferSizeTable = table;
+        }
+        return table;
+    }
+
+    private TcpBufferSizeTable createTcpBufferSizeTable() {
+        return new TcpBufferSizeTable(mPhone.getContext().getResources().getStringArray(
+                com.android.internal.R.array.config_mobile_tcp_buffers));
+    }
+
     public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
         pw.println("DcTracker:");
         pw.println(" RADIO_TESTS=" + RADIO_TESTS);
@@ -3958,12 +4083,17 @@ public class DcTracker extends Handler {
         pw.println(" mTxPkts=" + mTxPkts);
         pw.println(" mRxPkts=" + mRxPkts);
         pw.println(" mNetStatPollPeriod=" + mNetStatPollPeriod);
+        pw.println(" mNetStatIdleBackoff=" + mNetStatIdleBackoff);
         pw.println(" mNetStatPollEnabled=" + mNetStatPollEnabled);
         pw.println(" mDataStallTxRxSum=" + mDataStallTxRxSum);
         pw.println(" mDataStallAlarmTag=" + mDataStallAlarmTag);
         pw.println(" mDataStallNoRxEnabled=" + mDataStallNoRxEnabled);
         pw.println(" mEmergencyApn=" + mEmergencyApn);
-        pw.println(" mSentSinceLastRecv=" + mSentSinceLastRecv);
+        mDataStallDetector.dump(pw);
+        TcpBufferSizeTable tcpBufferSizeTable = mTcpBufferSizeTable;
+        if (tcpBufferSizeTable != null) {
+            tcpBufferSizeTable.dump(pw);
+        }
         pw.println(" mNoRecvPollCount=" + mNoRecvPollCount);
         pw.println(" mResolver=" + mResolver);
         pw.println(" mReconnectIntent=" + mReconnectIntent);
@@ -3975,6 +4105,8 @@ public class DcTracker extends Handler {
         mDataRoamingLeakageLog.dump(fd, pw, args);
         pw.println(" mApnSettingsInitializationLog= ");
         mApnSettingsInitializationLog.dump(fd, pw, args);
+        pw.println(" mAllConnectableApnsSetupLog= ");
+        mAllConnectableApnsSetupLog.dump(fd, pw, args);
         pw.flush();
         pw.println(" ***************************************");
         DcController dcc = mDcc;
@@ -4210,6 +4342,7 @@ public class DcTracker extends Handler {
         mTxPkts = -1;
         mRxPkts = -1;
         mNetStatPollPeriod = POLL_NETSTAT_MILLIS;
+        mNetStatIdleBackoff = 1;
     }
 
     private void startNetStatPoll() {
@@ -4285,8 +4418,12 @@ public class DcTracker extends Handler {
         }
     }
 
-    private void updateDataActivity() {
+    /**
+     * @return {@code true} if any packet was sent or received since the previous poll.
+     */
+    private boolean updateDataActivity() {
         long sent, received;
+        boolean hadTraffic = false;
 
         DctConstants.Activity newActivity;
 
@@ -4306,6 +4443,7 @@ public class DcTracker extends Handler {
 
             if (VDBG)
                 log("updateDataActivity: sent=" + sent + " received=" + received);
+            hadTraffic = sent > 0 || received > 0;
             if (sent > 0 && received > 0) {
                 newActivity = DctConstants.Activity.DATAINANDOUT;
             } else if (sent > 0 && received == 0) {
@@ -4324,6 +4462,7 @@ public class DcTracker extends Handler {
                 mPhone.notifyDataActivity();
             }
         }
+        return hadTraffic;
     }
 
     private void handlePcoData(AsyncResult ar) {
@@ -4489,14 +4628,14 @@ public class DcTracker extends Handler {
                 switch (recoveryAction) {
                     case RECOVERY_ACTION_GET_DATA_CALL_LIST:
                         EventLog.writeEvent(EventLogTags.DATA_STALL_RECOVERY_GET_DATA_CALL_LIST,
-                            mSentSinceLastRecv);
+                            mDataStallDetector.getSentSinceLastRecv());
                         if (DBG) log("doRecovery() get data call list");
                         mDataServiceManager.requestDataCallList(obtainMessage());
                         putRecoveryAction(RECOVERY_ACTION_CLEANUP);
                         break;
                     case RECOVERY_ACTION_CLEANUP:
                         EventLog.writeEvent(EventLogTags.DATA_STALL_RECOVERY_CLEANUP,
-                            mSentSinceLastRecv);
+                            mDataStallDetector.getSentSinceLastRecv());
                         if (DBG) log("doRecovery() cleanup all connections");
                         cleanUpConnection(mApnContexts.get(ApnSetting.getApnTypeString(
                                 ApnSetting.TYPE_DEFAULT)));
@@ -4504,14 +4643,14 @@ public class DcTracker extends Handler {
                         break;
                     case RECOVERY_ACTION_REREGISTER:
                         EventLog.writeEvent(EventLogTags.DATA_STALL_RECOVERY_REREGISTER,
-                            mSentSinceLastRecv);
+                            mDataStallDetector.getSentSinceLastRecv());
                         if (DBG) log("doRecovery() re-register");
                         mPhone.getServiceStateTracker().reRegisterNetwork(null);
                         putRecoveryAction(RECOVERY_ACTION_RADIO_RESTART);
                         break;
                     case RECOVERY_ACTION_RADIO_RESTART:
                         EventLog.writeEvent(EventLogTags.DATA_STALL_RECOVERY_RADIO_RESTART,
-                            mSentSinceLastRecv);
+                            mDataStallDetector.getSentSinceLastRecv());
                         if (DBG) log("restarting radio");
                         restartRadio();
                         reset();
@@ -4520,7 +4659,7 @@ public class DcTracker extends Handler {
                         throw new RuntimeException("doRecovery: Invalid recoveryAction="
                             + recoveryAction);
                 }
-                mSentSinceLastRecv = 0;
+                mDataStallDetector.resetSentSinceLastRecv();
                 mTimeLastRecoveryStartMs = SystemClock.elapsedRealtime();
             }
         }
@@ -4572,23 +4711,19 @@ public class DcTracker extends Handler {
                 received = 0;
             }
         }
+        // Packets sent without anything received only count while no voice call is active
+        boolean countSent = received > 0 || sent == 0 || isPhoneStateIdle();
+        mDataStallDetector.addSample(SystemClock.elapsedRealtime(), sent, received, countSent);
         if ( sent > 0 && received > 0 ) {
             if (VDBG_STALL) log("updateDataStallInfo: IN/OUT");
-            mSentSinceLastRecv = 0;
             mDsRecoveryHandler.reset();
         } else if (sent > 0 && received == 0) {
-            if (isPhoneStateIdle()) {
-                mSentSinceLastRecv += sent;
-            } else {
-                mSentSinceLastRecv = 0;
-            }
             if (DBG) {
-                log("updateDataStallInfo: OUT sent=" + sent +
-                        " mSentSinceLastRecv=" + mSentSinceLastRecv);
+                log("updateDataStallInfo: OUT sent=" + sent + " mSentSinceLastRecv="
+                        + mDataStallDetector.getSentSinceLastRecv());
             }
         } else if (sent == 0 && received > 0) {
             if (VDBG_STALL) log("updateDataStallInfo: IN");
-            mSentSinceLastRecv = 0;
             mDsRecoveryHandler.reset();
         } else {
             if (VDBG_STALL) log("updateDataStallInfo: NONE");
@@ -4622,7 +4757,7 @@ public class DcTracker extends Handler {
                 NUMBER_SENT_PACKETS_OF_HANG);
 
         boolean suspectedStall = DATA_STALL_NOT_SUSPECTED;
-        if (mSentSinceLastRecv >= hangWatchdogTrigger) {
+        if (mDataStallDetector.isStallSuspected(hangWatchdogTrigger)) {
             if (DBG) {
                 log("onDataStallAlarm: tag=" + tag + " do recovery action="
                         + mDsRecoveryHandler.getRecoveryAction());
@@ -4631,7 +4766,8 @@ public class DcTracker extends Handler {
             sendMessage(obtainMessage(DctConstants.EVENT_DO_RECOVERY));
         } else {
             if (VDBG_STALL) {
-                log("onDataStallAlarm: tag=" + tag + " Sent " + String.valueOf(mSentSinceLastRecv) +
+                log("onDataStallAlarm: tag=" + tag + " Sent "
+                    + String.valueOf(mDataStallDetector.getSentSinceLastRecv()) +
                     " pkts since last received, < watchdogTrigger=" + hangWatchdogTrigger);
             }
         }
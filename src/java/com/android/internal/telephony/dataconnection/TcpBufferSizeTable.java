@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.telephony.ServiceState;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * TCP buffer sizes for each ril radio technology, built once from the
+ * {@code config_mobile_tcp_buffers} overrides and the telephony defaults. The table is immutable
+ * so it can be shared by all the {@link DataConnection}s of a {@link DcTracker} and replaced as a
+ * whole when the configuration changes.
+ *
+ * There are 6 parameters read_min, read_default, read_max, write_min, write_default, write_max
+ * in the TCP buffer config string and they are separated by a comma. The unit of these parameters
+ * is byte.
+ */
+final class TcpBufferSizeTable {
+    private static final String TCP_BUFFER_SIZES_GPRS = "4092,8760,48000,4096,8760,48000";
+    private static final String TCP_BUFFER_SIZES_EDGE = "4093,26280,70800,4096,16384,70800";
+    private static final String TCP_BUFFER_SIZES_UMTS = "58254,349525,1048576,58254,349525,1048576";
+    private static final String TCP_BUFFER_SIZES_1XRTT = "16384,32768,131072,4096,16384,102400";
+    private static final String TCP_BUFFER_SIZES_EVDO = "4094,87380,262144,4096,16384,262144";
+    private static final String TCP_BUFFER_SIZES_EHRPD = "131072,262144,1048576,4096,16384,524288";
+    private static final String TCP_BUFFER_SIZES_HSDPA = "61167,367002,1101005,8738,52429,262114";
+    private static final String TCP_BUFFER_SIZES_HSPA = "40778,244668,734003,16777,100663,301990";
+    private static final String TCP_BUFFER_SIZES_LTE =
+            "524288,1048576,2097152,262144,524288,1048576";
+    private static final String TCP_BUFFER_SIZES_HSPAP =
+            "122334,734003,2202010,32040,192239,576717";
+    private static final String TCP_BUFFER_SIZES_NR =
+            "2097152,6291456,16777216,512000,2097152,8388608";
+
+    private static final String RAT_NAME_5G = "nr";
+    private static final String RAT_NAME_EVDO = "evdo";
+
+    // Ril radio technologies are used as bit positions in an int bitmask, so they are below 32
+    private static final int RIL_RAT_COUNT = 32;
+
+    // Sizes indexed by ril radio technology, null to use the system default
+    private final String[] mSizesByRilRat = new String[RIL_RAT_COUNT];
+    // Sizes used on LTE while connected to NR 5G Non-Standalone
+    private final String mNrNonStandaloneSizes;
+
+    /**
+     * @param configOverride the {@code config_mobile_tcp_buffers} resource, in the form
+     *        "ratname:rmem_min,rmem_def,rmem_max,wmem_min,wmem_def,wmem_max".
+     */
+    TcpBufferSizeTable(String[] configOverride) {
+        Map<String, String> overrides = new HashMap<>();
+        if (configOverride != null) {
+            for (String entry : configOverride) {
+                String[] split = entry.split(":");
+                if (split.length == 2 && !overrides.containsKey(split[0])) {
+                    overrides.put(split[0], split[1]);
+                }
+            }
+        }
+
+        for (int rilRat = 0; rilRat < RIL_RAT_COUNT; rilRat++) {
+            String sizes = overrides.get(getRatName(rilRat));
+            mSizesByRilRat[rilRat] = sizes != null ? sizes : getDefaultSizes(rilRat);
+        }
+        String sizes = overrides.get(RAT_NAME_5G);
+        mNrNonStandaloneSizes = sizes != null ? sizes : TCP_BUFFER_SIZES_NR;
+    }
+
+    /**
+     * @param rilRat the ril radio technology of the data connection.
+     * @param isNrConnected whether NR 5G Non-Standalone is connected.
+     * @return the TCP buffer sizes, or {@code null} to use the system default.
+     */
+    String getTcpBufferSizes(int rilRat, boolean isNrConnected) {
+        if (rilRat == ServiceState.RIL_RADIO_TECHNOLOGY_LTE_CA) {
+            // for now treat CA as LTE.  Plan to surface the extra bandwith in a more
+            // precise manner which should affect buffer sizes
+            rilRat = ServiceState.RIL_RADIO_TECHNOLOGY_LTE;
+        }
+        // NR 5G Non-Standalone use LTE cell as the primary cell, the ril technology is LTE in this
+        // case. We use NR 5G TCP buffer size when connected to NR 5G Non-Standalone network.
+        if (rilRat == ServiceState.RIL_RADIO_TECHNOLOGY_LTE && isNrConnected) {
+            return mNrNonStandaloneSizes;
+        }
+        if (rilRat < 0 || rilRat >= RIL_RAT_COUNT) {
+            return null;
+        }
+        return mSizesByRilRat[rilRat];
+    }
+
+    private static String getRatName(int rilRat) {
+        // ServiceState gives slightly different names for EVDO tech ("evdo-rev.0" for ex)
+        // - patch it up:
+        if (rilRat == ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_0
+                || rilRat == ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_A
+                || rilRat == ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_B) {
+            return RAT_NAME_EVDO;
+        }
+        return ServiceState.rilRadioTechnologyToString(rilRat).toLowerCase(Locale.ROOT);
+    }
+
+    @VisibleForTesting
+    static String getDefaultSizes(int rilRat) {
+        // doing it this way allows device or carrier to just override the types they
+        // care about and inherit the defaults for the others.
+        switch (rilRat) {
+            case ServiceState.RIL_RADIO_TECHNOLOGY_GPRS:
+                return TCP_BUFFER_SIZES_GPRS;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_EDGE:
+                return TCP_BUFFER_SIZES_EDGE;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_UMTS:
+                return TCP_BUFFER_SIZES_UMTS;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_1xRTT:
+                return TCP_BUFFER_SIZES_1XRTT;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_0:
+            case ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_A:
+            case ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_B:
+                return TCP_BUFFER_SIZES_EVDO;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_EHRPD:
+                return TCP_BUFFER_SIZES_EHRPD;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_HSDPA:
+                return TCP_BUFFER_SIZES_HSDPA;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_HSPA:
+            case ServiceState.RIL_RADIO_TECHNOLOGY_HSUPA:
+                return TCP_BUFFER_SIZES_HSPA;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_LTE:
+            case ServiceState.RIL_RADIO_TECHNOLOGY_LTE_CA:
+                return TCP_BUFFER_SIZES_LTE;
+            case ServiceState.RIL_RADIO_TECHNOLOGY_HSPAP:
+                return TCP_BUFFER_SIZES_HSPAP;
+            default:
+                // Leave empty - this will let ConnectivityService use the system default.
+                return null;
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println(" TcpBufferSizeTable:");
+        for (int rilRat = 0; rilRat < RIL_RAT_COUNT; rilRat++) {
+            if (mSizesByRilRat[rilRat] != null) {
+                pw.println("  " + ServiceState.rilRadioTechnologyToString(rilRat) + ": "
+                        + mSizesByRilRat[rilRat]);
+            }
+        }
+        pw.println("  NR NSA: " + mNrNonStandaloneSizes);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.emergency;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trie over a set of emergency numbers which checks a dialed number in a single pass over its
+ * characters.
+ *
+ * An emergency number is either added as extendable, in which case a dialed number starting with
+ * it matches unless an exact match is requested, or as exact only, in which case only the same
+ * number matches. The matcher is immutable once built and safe to read from any thread.
+ */
+public final class EmergencyNumberMatcher {
+    private static final class Node {
+        private final Map<Character, Node> mChildren = new HashMap<>();
+        private boolean mIsNumber;
+        private boolean mIsExtendable;
+    }
+
+    private final Node mRoot = new Node();
+    private int mSize;
+
+    /**
+     * Builds an {@link EmergencyNumberMatcher}.
+     */
+    public static final class Builder {
+        private EmergencyNumberMatcher mMatcher = new EmergencyNumberMatcher();
+
+        /**
+         * Add an emergency number.
+         *
+         * @param number the emergency number.
+         * @param extendable whether a dialed number with extra digits after {@code number} also
+         *        matches when no exact match is requested.
+         * @return this builder.
+         */
+        public Builder add(String number, boolean extendable) {
+            Node node = mMatcher.mRoot;
+            for (int i = 0; i < number.length(); i++) {
+                Character c = number.charAt(i);
+                Node child = node.mChildren.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.mChildren.put(c, child);
+                }
+                node = child;
+            }
+            if (!node.mIsNumber) {
+                node.mIsNumber = true;
+                mMatcher.mSize++;
+            }
+            node.mIsExtendable |= extendable;
+            return this;
+        }
+
+        /**
+         * @return the matcher. The builder must not be used afterwards.
+         */
+        public EmergencyNumberMatcher build() {
+            EmergencyNumberMatcher matcher = mMatcher;
+            mMatcher = null;
+            return matcher;
+        }
+    }
+
+    private EmergencyNumberMatcher() {}
+
+    /**
+     * Check a dialed number against the emergency numbers.
+     *
+     * @param number the dialed number, already stripped of separators.
+     * @param exactMatch if {@code true}, only an emergency number equal to {@code number}
+     *        matches. Otherwise an extendable emergency number which {@code number} starts with
+     *        matches as well.
+     * @return {@code true} if {@code number} matches one of the emergency numbers.
+     */
+    public boolean matches(String number, boolean exactMatch) {
+        if (number == null) {
+            return false;
+        }
+        Node node = mRoot;
+        for (int i = 0; i < number.length(); i++) {
+            if (!exactMatch && node.mIsExtendable) {
+                return true;
+            }
+            node = node.mChildren.get(number.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.mIsNumber;
+    }
+
+    /**
+     * @return the number of distinct emergency numbers in this matcher.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public String toString() {
+        return "[EmergencyNumberMatcher: size=" + mSize + "]";
+    }
+}
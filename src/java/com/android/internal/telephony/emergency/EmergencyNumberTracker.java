@@ -58,7 +58,9 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -83,12 +85,24 @@ public class EmergencyNumberTracker extends Handler {
     private String[] mEmergencyNumberPrefix = new String[0];
 
     private static final String EMERGENCY_NUMBER_DB_ASSETS_FILE = "eccdata";
+    // Emergency number database keyed by upper case country ISO. The asset is parsed once per
+    // process and shared by all phones, a country change only looks up its entries.
+    private static final Object sEccInfoByCountryLock = new Object();
+    private static Map<String, List<EccInfo>> sEccInfoByCountry;
 
     private List<EmergencyNumber> mEmergencyNumberListFromDatabase = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberListFromRadio = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberListWithPrefix = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberListFromTestMode = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberList = new ArrayList<>();
+    // mEmergencyNumberList keyed by number, in list order. Rebuilt together with the list.
+    private Map<String, List<EmergencyNumber>> mEmergencyNumberListByNumber = new HashMap<>();
+    // Matcher over mEmergencyNumberList. Rebuilt together with the list.
+    private EmergencyNumberMatcher mEmergencyNumberMatcher =
+            new EmergencyNumberMatcher.Builder().build();
+    // Matcher over the ecclist used when the radio does not report emergency numbers.
+    // Read from binder threads without locking, so it is replaced as a whole.
+    private volatile EccListMatcher mEccListMatcher;
 
     private final LocalLog mEmergencyNumberListDatabaseLocalLog = new LocalLog(20);
     private final LocalLog mEmergencyNumberListRadioLocalLog = new LocalLog(20);
@@ -311,29 +325,53 @@ public class EmergencyNumberTracker extends Handler {
     }
 
     private void cacheEmergencyDatabaseByCountry(String countryIso) {
-        BufferedInputStream inputStream = null;
-        ProtobufEccData.AllInfo allEccMessages = null;
         List<EmergencyNumber> updatedEmergencyNumberList = new ArrayList<>();
         try {
-            inputStream = new BufferedInputStream(
-                    mPhone.getContext().getAssets().open(EMERGENCY_NUMBER_DB_ASSETS_FILE));
-            allEccMessages = ProtobufEccData.AllInfo.parseFrom(readInputStreamToByteArray(
-                    new GZIPInputStream(inputStream)));
+            List<EccInfo> eccInfoList = getEccInfoByCountry().get(countryIso.toUpperCase());
             logd(countryIso + " emergency database is loaded. ");
-            for (ProtobufEccData.CountryInfo countryEccInfo : allEccMessages.countries) {
-                if (countryEccInfo.isoCode.equals(countryIso.toUpperCase())) {
-                    for (ProtobufEccData.EccInfo eccInfo : countryEccInfo.eccs) {
-                        updatedEmergencyNumberList.add(convertEmergencyNumberFromEccInfo(
-                                eccInfo, countryIso));
-                    }
+            if (eccInfoList != null) {
+                for (EccInfo eccInfo : eccInfoList) {
+                    updatedEmergencyNumberList.add(convertEmergencyNumberFromEccInfo(
+                            eccInfo, countryIso));
                 }
             }
             EmergencyNumber.mergeSameNumbersInEmergencyNumberList(updatedEmergencyNumberList);
             mEmergencyNumberListFromDatabase = updatedEmergencyNumberList;
         } catch (IOException ex) {
             loge("Cache emergency database failure: " + ex);
-        } finally {
-            IoUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Get the emergency number database grouped by country, reading it from the assets on first
+     * use. A failed read is not cached and is retried on the next call.
+     */
+    private Map<String, List<EccInfo>> getEccInfoByCountry() throws IOException {
+        synchronized (sEccInfoByCountryLock) {
+            if (sEccInfoByCountry == null) {
+                BufferedInputStream inputStream = null;
+                try {
+                    inputStream = new BufferedInputStream(
+                            mPhone.getContext().getAssets().open(EMERGENCY_NUMBER_DB_ASSETS_FILE));
+                    ProtobufEccData.AllInfo allEccMessages = ProtobufEccData.AllInfo.parseFrom(
+                            readInputStreamToByteArray(new GZIPInputStream(inputStream)));
+                    Map<String, List<EccInfo>> eccInfoByCountry = new HashMap<>();
+                    for (ProtobufEccData.CountryInfo countryEccInfo : allEccMessages.countries) {
+                        List<EccInfo> eccInfoList = eccInfoByCountry.get(countryEccInfo.isoCode);
+                        if (eccInfoList == null) {
+                            eccInfoList = new ArrayList<>();
+                            eccInfoByCountry.put(countryEccInfo.isoCode, eccInfoList);
+                        }
+                        Collections.addAll(eccInfoList, countryEccInfo.eccs);
+                    }
+                    logd("Emergency database is parsed: " + eccInfoByCountry.size()
+                            + " countries");
+                    sEccInfoByCountry = eccInfoByCountry;
+                } finally {
+                    IoUtils.closeQuietly(inputStream);
+                }
+            }
+            return sEccInfoByCountry;
         }
     }
 
@@ -448,7 +486,20 @@ public class EmergencyNumberTracker extends Handler {
         mergedEmergencyNumberList.addAll(mEmergencyNumberListWithPrefix);
         mergedEmergencyNumberList.addAll(mEmergencyNumberListFromTestMode);
         EmergencyNumber.mergeSameNumbersInEmergencyNumberList(mergedEmergencyNumberList);
+        Map<String, List<EmergencyNumber>> emergencyNumberListByNumber = new HashMap<>();
+        EmergencyNumberMatcher.Builder matcherBuilder = new EmergencyNumberMatcher.Builder();
+        for (EmergencyNumber num : mergedEmergencyNumberList) {
+            matcherBuilder.add(num.getNumber(), true);
+            List<EmergencyNumber> numbers = emergencyNumberListByNumber.get(num.getNumber());
+            if (numbers == null) {
+                numbers = new ArrayList<>(1);
+                emergencyNumberListByNumber.put(num.getNumber(), numbers);
+            }
+            numbers.add(num);
+        }
         mEmergencyNumberList = mergedEmergencyNumberList;
+        mEmergencyNumberListByNumber = emergencyNumberListByNumber;
+        mEmergencyNumberMatcher = matcherBuilder.build();
     }
 
     /**
@@ -476,27 +527,14 @@ public class EmergencyNumberTracker extends Handler {
         }
         number = PhoneNumberUtils.stripSeparators(number);
         if (!mEmergencyNumberListFromRadio.isEmpty()) {
-            for (EmergencyNumber num : mEmergencyNumberList) {
-                // According to com.android.i18n.phonenumbers.ShortNumberInfo, in
-                // these countries, if extra digits are added to an emergency number,
-                // it no longer connects to the emergency service.
-                if (mCountryIso.equals("br") || mCountryIso.equals("cl")
-                        || mCountryIso.equals("ni")) {
-                    exactMatch = true;
-                } else {
-                    exactMatch = false || exactMatch;
-                }
-                if (exactMatch) {
-                    if (num.getNumber().equals(number)) {
-                        return true;
-                    }
-                } else {
-                    if (number.startsWith(num.getNumber())) {
-                        return true;
-                    }
-                }
+            // According to com.android.i18n.phonenumbers.ShortNumberInfo, in
+            // these countries, if extra digits are added to an emergency number,
+            // it no longer connects to the emergency service.
+            if (mCountryIso.equals("br") || mCountryIso.equals("cl")
+                    || mCountryIso.equals("ni")) {
+                exactMatch = true;
             }
-            return false;
+            return mEmergencyNumberMatcher.matches(number, exactMatch);
         } else {
             return isEmergencyNumberFromEccList(number, exactMatch)
                     || isEmergencyNumberForTest(number);
@@ -511,12 +549,8 @@ public class EmergencyNumberTracker extends Handler {
      */
     public EmergencyNumber getEmergencyNumber(String emergencyNumber) {
         emergencyNumber = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        for (EmergencyNumber num : getEmergencyNumberList()) {
-            if (num.getNumber().equals(emergencyNumber)) {
-                return num;
-            }
-        }
-        return null;
+        List<EmergencyNumber> numbers = getEmergencyNumbersWithNumber(emergencyNumber);
+        return numbers.isEmpty() ? null : numbers.get(0);
     }
 
     /**
@@ -530,12 +564,10 @@ public class EmergencyNumberTracker extends Handler {
      */
     public @EmergencyServiceCategories int getEmergencyServiceCategories(String emergencyNumber) {
         emergencyNumber = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        for (EmergencyNumber num : getEmergencyNumberList()) {
-            if (num.getNumber().equals(emergencyNumber)) {
-                if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_NETWORK_SIGNALING)
-                        || num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_SIM)) {
-                    return num.getEmergencyServiceCategoryBitmask();
-                }
+        for (EmergencyNumber num : getEmergencyNumbersWithNumber(emergencyNumber)) {
+            if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_NETWORK_SIGNALING)
+                    || num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_SIM)) {
+                return num.getEmergencyServiceCategoryBitmask();
             }
         }
         return EmergencyNumber.EMERGENCY_SERVICE_CATEGORY_UNSPECIFIED;
@@ -550,16 +582,31 @@ public class EmergencyNumberTracker extends Handler {
      */
     public @EmergencyCallRouting int getEmergencyCallRouting(String emergencyNumber) {
         emergencyNumber = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        for (EmergencyNumber num : getEmergencyNumberList()) {
-            if (num.getNumber().equals(emergencyNumber)) {
-                if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_DATABASE)) {
-                    return num.getEmergencyCallRouting();
-                }
+        for (EmergencyNumber num : getEmergencyNumbersWithNumber(emergencyNumber)) {
+            if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_DATABASE)) {
+                return num.getEmergencyCallRouting();
             }
         }
         return EmergencyNumber.EMERGENCY_CALL_ROUTING_UNKNOWN;
     }
 
+    /**
+     * Get the entries of {@link #getEmergencyNumberList()} with the given number, in list order.
+     */
+    private List<EmergencyNumber> getEmergencyNumbersWithNumber(String number) {
+        if (!mEmergencyNumberListFromRadio.isEmpty()) {
+            List<EmergencyNumber> numbers = mEmergencyNumberListByNumber.get(number);
+            return (numbers == null) ? Collections.emptyList() : numbers;
+        }
+        List<EmergencyNumber> numbers = new ArrayList<>();
+        for (EmergencyNumber num : getEmergencyNumberList()) {
+            if (num.getNumber().equals(number)) {
+                numbers.add(num);
+            }
+        }
+        return numbers;
+    }
+
     /**
      * Get Emergency number list based on EccList. This util is used for solving backward
      * compatibility if device does not support the 1.4 IRadioIndication HAL that reports
@@ -678,37 +725,12 @@ public class EmergencyNumberTracker extends Handler {
         }
 
         if (!TextUtils.isEmpty(emergencyNumbers)) {
-            // searches through the comma-separated list for a match,
-            // return true if one is found.
-            for (String emergencyNum : emergencyNumbers.split(",")) {
-                // According to com.android.i18n.phonenumbers.ShortNumberInfo, in
-                // these countries, if extra digits are added to an emergency number,
-                // it no longer connects to the emergency service.
-                if (useExactMatch || mCountryIso.equals("br") || mCountryIso.equals("cl")
-                        || mCountryIso.equals("ni")) {
-                    if (number.equals(emergencyNum)) {
-                        return true;
-                    } else {
-                        for (String prefix : mEmergencyNumberPrefix) {
-                            if (number.equals(prefix + emergencyNum)) {
-                                return true;
-                            }
-                        }
-                    }
-                } else {
-                    if (number.startsWith(emergencyNum)) {
-                        return true;
-                    } else {
-                        for (String prefix : mEmergencyNumberPrefix) {
-                            if (number.startsWith(prefix + emergencyNum)) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-            }
-            // no matches found against the list!
-            return false;
+            // According to com.android.i18n.phonenumbers.ShortNumberInfo, in
+            // these countries, if extra digits are added to an emergency number,
+            // it no longer connects to the emergency service.
+            return getEccListMatcher(emergencyNumbers, true).matches(number,
+                    useExactMatch || mCountryIso.equals("br") || mCountryIso.equals("cl")
+                            || mCountryIso.equals("ni"));
         }
 
         logd("System property doesn't provide any emergency numbers."
@@ -719,28 +741,8 @@ public class EmergencyNumberTracker extends Handler {
         // ECC numbers when SIM/USIM is not present.
         emergencyNumbers = ((slotId < 0) ? "112,911,000,08,110,118,119,999" : "112,911");
 
-        for (String emergencyNum : emergencyNumbers.split(",")) {
-            if (useExactMatch) {
-                if (number.equals(emergencyNum)) {
-                    return true;
-                } else {
-                    for (String prefix : mEmergencyNumberPrefix) {
-                        if (number.equals(prefix + emergencyNum)) {
-                            return true;
-                        }
-                    }
-                }
-            } else {
-                if (number.startsWith(emergencyNum)) {
-                    return true;
-                } else {
-                    for (String prefix : mEmergencyNumberPrefix) {
-                        if (number.equals(prefix + emergencyNum)) {
-                            return true;
-                        }
-                    }
-                }
-            }
+        if (getEccListMatcher(emergencyNumbers, false).matches(number, useExactMatch)) {
+            return true;
         }
 
         // No ecclist system property, so use our own list.
@@ -775,6 +777,54 @@ public class EmergencyNumberTracker extends Handler {
         return false;
     }
 
+    /**
+     * Get the matcher for a comma-separated ecclist and the current emergency number prefixes,
+     * building it only when either changed since the last call.
+     *
+     * @param emergencyNumbers comma-separated emergency numbers.
+     * @param fromProperty whether the list comes from the ecclist system property. Prefixed
+     *        numbers of the embedded list only match without extra digits.
+     */
+    private EmergencyNumberMatcher getEccListMatcher(String emergencyNumbers,
+            boolean fromProperty) {
+        EccListMatcher cached = mEccListMatcher;
+        String[] emergencyNumberPrefix = mEmergencyNumberPrefix;
+        if (cached != null && cached.mFromProperty == fromProperty
+                && cached.mEmergencyNumbers.equals(emergencyNumbers)
+                && cached.mEmergencyNumberPrefix == emergencyNumberPrefix) {
+            return cached.mMatcher;
+        }
+        EmergencyNumberMatcher.Builder builder = new EmergencyNumberMatcher.Builder();
+        for (String emergencyNum : emergencyNumbers.split(",")) {
+            builder.add(emergencyNum, true);
+            for (String prefix : emergencyNumberPrefix) {
+                builder.add(prefix + emergencyNum, fromProperty);
+            }
+        }
+        EmergencyNumberMatcher matcher = builder.build();
+        mEccListMatcher = new EccListMatcher(emergencyNumbers, fromProperty,
+                emergencyNumberPrefix, matcher);
+        return matcher;
+    }
+
+    /**
+     * Matcher for an ecclist together with the inputs it was built from.
+     */
+    private static final class EccListMatcher {
+        final String mEmergencyNumbers;
+        final boolean mFromProperty;
+        final String[] mEmergencyNumberPrefix;
+        final EmergencyNumberMatcher mMatcher;
+
+        EccListMatcher(String emergencyNumbers, boolean fromProperty,
+                String[] emergencyNumberPrefix, EmergencyNumberMatcher matcher) {
+            mEmergencyNumbers = emergencyNumbers;
+            mFromProperty = fromProperty;
+            mEmergencyNumberPrefix = emergencyNumberPrefix;
+            mMatcher = matcher;
+        }
+    }
+
     /**
      * Execute command for updating emergency number for test mode.
      */
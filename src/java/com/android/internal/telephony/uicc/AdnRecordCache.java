@@ -42,6 +42,9 @@ public class AdnRecordCache extends Handler implements IccConstants {
     SparseArray<ArrayList<AdnRecord>> mAdnLikeFiles
         = new SparseArray<ArrayList<AdnRecord>>();
 
+    // Indexes over mAdnLikeFiles, indexed by EF ID
+    SparseArray<AdnRecordIndex> mAdnLikeIndexes = new SparseArray<AdnRecordIndex>();
+
     // People waiting for ADN-like files to be loaded
     @UnsupportedAppUsage
     SparseArray<ArrayList<Message>> mAdnLikeWaiters
@@ -73,6 +76,7 @@ public class AdnRecordCache extends Handler implements IccConstants {
     @UnsupportedAppUsage
     public void reset() {
         mAdnLikeFiles.clear();
+        mAdnLikeIndexes.clear();
         mUsimPhoneBookManager.reset();
 
         clearWaiters();
@@ -212,13 +216,20 @@ public class AdnRecordCache extends Handler implements IccConstants {
         }
 
         int index = -1;
-        int count = 1;
-        for (Iterator<AdnRecord> it = oldAdnList.iterator(); it.hasNext(); ) {
-            if (oldAdn.isEqual(it.next())) {
-                index = count;
-                break;
+        AdnRecordIndex adnIndex = mAdnLikeIndexes.get(efid);
+        if (adnIndex != null) {
+            index = adnIndex.indexOf(oldAdn);
+        } else {
+            // EF_PBR records are owned by UsimPhoneBookManager and may be reloaded behind
+            // our back, so they are still searched linearly.
+            int count = 1;
+            for (Iterator<AdnRecord> it = oldAdnList.iterator(); it.hasNext(); ) {
+                if (oldAdn.isEqual(it.next())) {
+                    index = count;
+                    break;
+                }
+                count++;
             }
-            count++;
         }
 
         if (index == -1) {
@@ -351,7 +362,9 @@ public class AdnRecordCache extends Handler implements IccConstants {
                 mAdnLikeWaiters.delete(efid);
 
                 if (ar.exception == null) {
-                    mAdnLikeFiles.put(efid, (ArrayList<AdnRecord>) ar.result);
+                    ArrayList<AdnRecord> records = (ArrayList<AdnRecord>) ar.result;
+                    mAdnLikeFiles.put(efid, records);
+                    mAdnLikeIndexes.put(efid, new AdnRecordIndex(records));
                 }
                 notifyWaiters(waiters, ar);
                 break;
@@ -362,7 +375,12 @@ public class AdnRecordCache extends Handler implements IccConstants {
                 AdnRecord adn = (AdnRecord) (ar.userObj);
 
                 if (ar.exception == null) {
-                    mAdnLikeFiles.get(efid).set(index - 1, adn);
+                    AdnRecordIndex adnIndex = mAdnLikeIndexes.get(efid);
+                    if (adnIndex != null) {
+                        adnIndex.update(index, adn);
+                    } else {
+                        mAdnLikeFiles.get(efid).set(index - 1, adn);
+                    }
                     mUsimPhoneBookManager.invalidateCache();
                 }
 
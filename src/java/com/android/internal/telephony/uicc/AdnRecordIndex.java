@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.uicc;
+
+import android.telephony.PhoneNumberUtils;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Index over the records of one ADN-like EF, keyed by record index and normalized number.
+ * The index shares the record list with {@link AdnRecordCache} and is
+ * kept in sync by {@link #update} whenever a single record is written, so the whole EF never
+ * has to be rescanned after a write.
+ *
+ * All record indexes are 1-based, matching the record numbers used on the SIM.
+ *
+ * {@hide}
+ */
+public class AdnRecordIndex {
+    private final ArrayList<AdnRecord> mRecords;
+
+    // Normalized number -> sorted 1-based record indexes
+    private final HashMap<String, ArrayList<Integer>> mByNumber = new HashMap<>();
+
+    /**
+     * @param records the records of the EF, in record order. The list is not copied; callers
+     *        must route every modification through {@link #update}.
+     */
+    public AdnRecordIndex(ArrayList<AdnRecord> records) {
+        mRecords = records;
+        for (int i = 0, s = records.size(); i < s; i++) {
+            addToIndex(i + 1, records.get(i));
+        }
+    }
+
+    /** @return the number of records in the EF */
+    public int size() {
+        return mRecords.size();
+    }
+
+    /** @return the record at the 1-based index, or null if out of range */
+    public AdnRecord getRecord(int recordIndex) {
+        if (recordIndex < 1 || recordIndex > mRecords.size()) {
+            return null;
+        }
+        return mRecords.get(recordIndex - 1);
+    }
+
+    /**
+     * Find the first record which {@link AdnRecord#isEqual} the given one.
+     *
+     * @return the 1-based record index, or -1 if no record matches
+     */
+    public int indexOf(AdnRecord adn) {
+        ArrayList<Integer> candidates = mByNumber.get(normalizeNumber(adn.getNumber()));
+        if (candidates == null) {
+            return -1;
+        }
+        for (int i = 0, s = candidates.size(); i < s; i++) {
+            int recordIndex = candidates.get(i);
+            if (adn.isEqual(mRecords.get(recordIndex - 1))) {
+                return recordIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replace the record at the 1-based index and update the index incrementally.
+     */
+    public void update(int recordIndex, AdnRecord adn) {
+        AdnRecord old = mRecords.set(recordIndex - 1, adn);
+        removeFromIndex(recordIndex, old);
+        addToIndex(recordIndex, adn);
+    }
+
+    private void addToIndex(int recordIndex, AdnRecord adn) {
+        if (adn == null) return;
+        insertSorted(mByNumber, normalizeNumber(adn.getNumber()), recordIndex);
+    }
+
+    private void removeFromIndex(int recordIndex, AdnRecord adn) {
+        if (adn == null) return;
+        removeSorted(mByNumber, normalizeNumber(adn.getNumber()), recordIndex);
+    }
+
+    private static void insertSorted(HashMap<String, ArrayList<Integer>> map, String key,
+            int recordIndex) {
+        ArrayList<Integer> indexes = map.get(key);
+        if (indexes == null) {
+            indexes = new ArrayList<>(1);
+            map.put(key, indexes);
+        }
+        int pos = Collections.binarySearch(indexes, recordIndex);
+        if (pos < 0) {
+            indexes.add(-pos - 1, recordIndex);
+        }
+    }
+
+    private static void removeSorted(HashMap<String, ArrayList<Integer>> map, String key,
+            int recordIndex) {
+        ArrayList<Integer> indexes = map.get(key);
+        if (indexes == null) return;
+        int pos = Collections.binarySearch(indexes, recordIndex);
+        if (pos >= 0) {
+            indexes.remove(pos);
+        }
+        if (indexes.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * The number key must not merge numbers which {@link AdnRecord#isEqual} tells apart in a way
+     * that would hide a match, so only visual separators are dropped.
+     */
+    private static String normalizeNumber(String number) {
+        if (TextUtils.isEmpty(number)) {
+            return "";
+        }
+        return PhoneNumberUtils.stripSeparators(number);
+    }
+}
@@ -27,6 +27,7 @@ import android.telephony.PhoneNumberUtils;
 import android.telephony.Rlog;
 import android.telephony.SmsMessage;
 import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
 import android.text.TextUtils;
 
 import com.android.internal.telephony.CommandsInterface;
@@ -769,6 +770,7 @@ public class SIMRecords extends IccRecords {
                         mMsisdn = mNewMsisdn;
                         mMsisdnTag = mNewMsisdnTag;
                         log("Success to update EF[MSISDN]");
+                        updateDisplayNumber();
                     }
 
                     if (ar.userObj != null) {
@@ -1317,6 +1319,18 @@ public class SIMRecords extends IccRecords {
         return 0;
     }
 
+    /**
+     * The number of {@link SubscriptionInfo} follows the line 1 number, so store the new MSISDN
+     * as the display number of the subscription.
+     */
+    private void updateDisplayNumber() {
+        SubscriptionController subscriptionController = SubscriptionController.getInstance();
+        int subId = subscriptionController.getSubIdUsingPhoneId(mParentApp.getPhoneId());
+        if (mMsisdn != null && SubscriptionManager.isValidSubscriptionId(subId)) {
+            subscriptionController.setDisplayNumber(mMsisdn, subId);
+        }
+    }
+
     private void handleSms(byte[] ba) {
         if (ba[0] != 0)
             Rlog.d("ENF", "status : " + ba[0]);
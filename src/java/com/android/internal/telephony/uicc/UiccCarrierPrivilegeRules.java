@@ -41,6 +41,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -197,6 +198,15 @@ public class UiccCarrierPrivilegeRules extends Handler {
     private int mRetryCount;  // Number of retries for open logical channel.
     private boolean mCheckedRules = false;  // Flag that used to mark whether get rules from ARA-D.
     private int mAIDInUse;  // Message component to identify which AID is currently in-use.
+    // Carrier privilege status by package name, for the rules currently loaded. Entries are
+    // dropped when the package changes or the rules finish (re)loading.
+    private final ConcurrentHashMap<String, Integer> mPackageStatusCache =
+            new ConcurrentHashMap<>();
+    // Bumped on every cache invalidation, so that a status computed from package info fetched
+    // before an invalidation is not cached after it.
+    private final AtomicInteger mPackageStatusCacheGeneration = new AtomicInteger();
+    private final AtomicInteger mPackageStatusCacheHits = new AtomicInteger();
+    private final AtomicInteger mPackageStatusCacheMisses = new AtomicInteger();
     private final Runnable mRetryRunnable = new Runnable() {
         @Override
         public void run() {
@@ -300,30 +310,69 @@ public class UiccCarrierPrivilegeRules extends Handler {
      * @return Access status.
      */
     public int getCarrierPrivilegeStatus(PackageManager packageManager, String packageName) {
-        try {
-            // Short-circuit if there are no rules to check against, so we don't need to fetch
-            // the package info with signatures.
-            if (!hasCarrierPrivilegeRules()) {
-                int state = mState.get();
-                if (state == STATE_LOADING) {
-                    return TelephonyManager.CARRIER_PRIVILEGE_STATUS_RULES_NOT_LOADED;
-                } else if (state == STATE_ERROR) {
-                    return TelephonyManager.CARRIER_PRIVILEGE_STATUS_ERROR_LOADING_RULES;
-                }
-                return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+        // Short-circuit if there are no rules to check against, so we don't need to fetch
+        // the package info with signatures.
+        if (!hasCarrierPrivilegeRules()) {
+            int state = mState.get();
+            if (state == STATE_LOADING) {
+                return TelephonyManager.CARRIER_PRIVILEGE_STATUS_RULES_NOT_LOADED;
+            } else if (state == STATE_ERROR) {
+                return TelephonyManager.CARRIER_PRIVILEGE_STATUS_ERROR_LOADING_RULES;
             }
+            return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+        }
+        // A hit skips fetching the package signatures, which is the expensive part. The package
+        // broadcasts drop the entry once the package is installed, updated or removed.
+        Integer cached = mPackageStatusCache.get(packageName);
+        if (cached != null) {
+            mPackageStatusCacheHits.incrementAndGet();
+            return cached;
+        }
+        mPackageStatusCacheMisses.incrementAndGet();
+        int generation = mPackageStatusCacheGeneration.get();
+        PackageInfo pInfo;
+        try {
             // Include DISABLED_UNTIL_USED components. This facilitates cases where a carrier app
             // is disabled by default, and some other component wants to enable it when it has
             // gained carrier privileges (as an indication that a matching SIM has been inserted).
-            PackageInfo pInfo = packageManager.getPackageInfo(packageName,
+            pInfo = packageManager.getPackageInfo(packageName,
                     PackageManager.GET_SIGNATURES
                             | PackageManager.MATCH_DISABLED_UNTIL_USED_COMPONENTS
                             | PackageManager.MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS);
-            return getCarrierPrivilegeStatus(pInfo);
         } catch (PackageManager.NameNotFoundException ex) {
+            // Not cached, as the package may just not be installed yet.
             log("Package " + packageName + " not found for carrier privilege status check");
+            return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+        }
+        int status = getCarrierPrivilegeStatus(pInfo);
+        cachePackageStatus(packageName, status, generation);
+        return status;
+    }
+
+    private void cachePackageStatus(String packageName, int status, int generation) {
+        if (mState.get() != STATE_LOADED) {
+            return;
+        }
+        mPackageStatusCache.put(packageName, status);
+        if (mPackageStatusCacheGeneration.get() != generation) {
+            // Invalidated while the status was being computed, which may be stale now.
+            mPackageStatusCache.remove(packageName);
+        }
+    }
+
+    /**
+     * Drops the cached carrier privilege status of a package. Must be called when the package is
+     * installed, updated or removed, since its signatures may have changed.
+     *
+     * @param packageName name of the package, or null to drop the status of all packages.
+     */
+    public void onPackageChanged(@Nullable String packageName) {
+        mPackageStatusCacheGeneration.incrementAndGet();
+        if (packageName == null) {
+            mPackageStatusCache.clear();
+        } else {
+            mPackageStatusCache.remove(packageName);
         }
-        return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
     }
 
     /**
@@ -688,6 +737,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
      */
     private void updateState(int newState, String statusMessage) {
         mState.set(newState);
+        onPackageChanged(null);
         if (mLoadedCallback != null) {
             mLoadedCallback.sendToTarget();
         }
@@ -719,6 +769,9 @@ public class UiccCarrierPrivilegeRules extends Handler {
         } else {
             pw.println(" mAccessRules: null");
         }
+        pw.println(" mPackageStatusCache: size=" + mPackageStatusCache.size() + " hits="
+                + mPackageStatusCacheHits.get() + " misses="
+                + mPackageStatusCacheMisses.get());
         if (mUiccPkcs15 != null) {
             pw.println(" mUiccPkcs15: " + mUiccPkcs15);
             mUiccPkcs15.dump(fd, pw, args);
@@ -46,6 +46,7 @@ import com.android.internal.telephony.IccCardConstants;
 import com.android.internal.telephony.PhoneConstants;
 import com.android.internal.telephony.PhoneFactory;
 import com.android.internal.telephony.RadioConfig;
+import com.android.internal.telephony.SubscriptionController;
 import com.android.internal.telephony.SubscriptionInfoUpdater;
 import com.android.internal.telephony.uicc.euicc.EuiccCard;
 
@@ -609,7 +610,10 @@ public class UiccController extends Handler {
         if (eidIsNotSupported(status)) {
             // we will never get EID from the HAL, so set mDefaultEuiccCardId to UNSUPPORTED_CARD_ID
             if (DBG) log("eid is not supported");
-            mDefaultEuiccCardId = UNSUPPORTED_CARD_ID;
+            if (mDefaultEuiccCardId != UNSUPPORTED_CARD_ID) {
+                mDefaultEuiccCardId = UNSUPPORTED_CARD_ID;
+                notifyCardIdsChanged();
+            }
         }
         mPhoneIdToSlotId[index] = slotId;
 
@@ -678,6 +682,18 @@ public class UiccController extends Handler {
         if (!mCardStrings.contains(cardString)) {
             mCardStrings.add(cardString);
             saveCardStrings();
+            notifyCardIdsChanged();
+        }
+    }
+
+    /**
+     * Let SubscriptionController update the public card ids it caches, after the result of
+     * {@link #convertToPublicCardId(String)} changed.
+     */
+    private void notifyCardIdsChanged() {
+        SubscriptionController subscriptionController = SubscriptionController.getInstance();
+        if (subscriptionController != null) {
+            subscriptionController.refreshCachedCardIds();
         }
     }
 
@@ -144,6 +144,19 @@ public class UiccProfile extends IccCard {
 
     private final BroadcastReceiver mReceiver=new BroadcastReceiver(){@Override public void onReceive(Context context,Intent intent){if(intent.getAction().equals(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED)){mHandler.sendMessage(mHandler.obtainMessage(EVENT_CARRIER_CONFIG_CHANGED));}}};
 
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data == null ? null : data.getSchemeSpecificPart();
+            synchronized (mLock) {
+                if (mCarrierPrivilegeRules != null) {
+                    mCarrierPrivilegeRules.onPackageChanged(packageName);
+                }
+            }
+        }
+    };
+
     @VisibleForTesting
     public final Handler mHandler=new Handler(){@Override public void handleMessage(Message msg){
     // We still need to handle the following response messages even the UiccProfile
@@ -191,6 +204,15 @@ public class UiccProfile extends IccCard {
         IntentFilter intentfilter = new IntentFilter();
         intentfilter.addAction(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED);
         c.registerReceiver(mReceiver, intentfilter);
+
+        // Cached carrier privilege status depends on package signatures.
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        c.registerReceiver(mPackageReceiver, packageFilter);
     }
 
     /**
@@ -215,6 +237,7 @@ public class UiccProfile extends IccCard {
 
             mCi.unregisterForOffOrNotAvailable(mHandler);
             mContext.unregisterReceiver(mReceiver);
+            mContext.unregisterReceiver(mPackageReceiver);
 
             if (mCatService != null)
                 mCatService.dispose();
@@ -32,6 +32,7 @@ import android.telephony.euicc.EuiccCardManager;
 import android.telephony.euicc.EuiccNotification;
 import android.telephony.euicc.EuiccRulesAuthTable;
 import android.text.TextUtils;
+import android.util.SparseArray;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.telephony.CommandsInterface;
@@ -68,6 +69,9 @@ public class EuiccCard extends UiccCard {
     private static final boolean DBG = true;
 
     private static final String ISD_R_AID = "A0000005591010FFFFFFFF8900000100";
+    // How long the logical channel to ISD-R is kept open after a request, so that back-to-back
+    // operations (e.g. getAllProfiles followed by getEid) don't reopen it each time.
+    private static final long ISD_R_CHANNEL_IDLE_TIMEOUT_MILLIS = 2000;
     private static final int ICCID_LENGTH = 20;
 
     // APDU status for SIM refresh
@@ -127,7 +131,8 @@ public class EuiccCard extends UiccCard {
     public EuiccCard(Context c, CommandsInterface ci, IccCardStatus ics, int phoneId, Object lock) {
         super(c, ci, ics, phoneId, lock);
         // TODO: Set supportExtendedApdu based on ATR.
-        mApduSender = new ApduSender(ci, ISD_R_AID, false /* supportExtendedApdu */);
+        mApduSender = new ApduSender(ci, ISD_R_AID, false /* supportExtendedApdu */,
+                ISD_R_CHANNEL_IDLE_TIMEOUT_MILLIS);
 
         if (TextUtils.isEmpty(ics.eid)) {
             loge("no eid given in constructor for phone " + phoneId);
@@ -204,12 +209,23 @@ public class EuiccCard extends UiccCard {
                 (byte[] response) -> mSpecVersion, callback, handler);
     }
 
+    @Override
+    public void dispose() {
+        mApduSender.closeIdleChannel();
+        super.dispose();
+    }
+
     @Override
     public void update(Context c, CommandsInterface ci, IccCardStatus ics) {
         synchronized (mLock) {
             if (!TextUtils.isEmpty(ics.eid)) {
                 mEid = ics.eid;
             }
+            // The ISD-R channel kept open for reuse does not survive a card state change. This is
+            // also called from the super constructor, before mApduSender is set.
+            if (mApduSender != null && ics.mCardState != getCardState()) {
+                mApduSender.closeIdleChannel();
+            }
             super.update(c, ci, ics);
         }
     }
@@ -235,7 +251,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_GET_PROFILES)
                                 .addChildAsBytes(Tags.TAG_TAG_LIST, Tags.EUICC_PROFILE_TAGS)
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     List<Asn1Node> profileNodes = new Asn1Decoder(response).nextNode()
                             .getChild(Tags.TAG_CTX_COMP_0).getChildren(Tags.TAG_PROFILE_INFO);
@@ -279,7 +295,7 @@ public class EuiccCard extends UiccCard {
                                         Tags.TAG_ICCID, IccUtils.bcdToBytes(padTrailingFs(iccid)))
                                     .build())
                                 .addChildAsBytes(Tags.TAG_TAG_LIST, Tags.EUICC_PROFILE_TAGS)
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     List<Asn1Node> profileNodes = new Asn1Decoder(response).nextNode()
                             .getChild(Tags.TAG_CTX_COMP_0).getChildren(Tags.TAG_PROFILE_INFO);
@@ -314,7 +330,7 @@ public class EuiccCard extends UiccCard {
                             .addChild(Asn1Node.newBuilder(Tags.TAG_CTX_COMP_0)
                                     .addChildAsBytes(Tags.TAG_ICCID, iccidBytes))
                             .addChildAsBoolean(Tags.TAG_CTX_1, refresh)
-                            .build().toHex());
+                            .build().toBytes());
                 }),
                 response -> {
                     int result;
@@ -353,7 +369,7 @@ public class EuiccCard extends UiccCard {
                             .addChild(Asn1Node.newBuilder(Tags.TAG_CTX_COMP_0)
                                     .addChildAsBytes(Tags.TAG_ICCID, iccidBytes))
                             .addChildAsBoolean(Tags.TAG_CTX_1, refresh)
-                            .build().toHex());
+                            .build().toBytes());
                 }),
                 response -> {
                     int result;
@@ -398,7 +414,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_GET_EID)
                                 .addChildAsBytes(Tags.TAG_TAG_LIST, new byte[] {Tags.TAG_EID})
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     String eid = IccUtils.bytesToHexString(parseResponse(response)
                             .getChild(Tags.TAG_EID).asBytes());
@@ -426,7 +442,7 @@ public class EuiccCard extends UiccCard {
                                 .addChildAsBytes(Tags.TAG_ICCID,
                                         IccUtils.bcdToBytes(padTrailingFs(iccid)))
                                 .addChildAsString(Tags.TAG_NICKNAME, nickname)
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     // SGP.22 v2.0 SetNicknameResponse
                     int result = parseSimpleResult(response);
@@ -452,7 +468,7 @@ public class EuiccCard extends UiccCard {
                     byte[] iccidBytes = IccUtils.bcdToBytes(padTrailingFs(iccid));
                     requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_DELETE_PROFILE)
                             .addChildAsBytes(Tags.TAG_ICCID, iccidBytes)
-                            .build().toHex());
+                            .build().toBytes());
                 }),
                 response -> {
                     // SGP.22 v2.0 DeleteProfileRequest
@@ -480,7 +496,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_EUICC_MEMORY_RESET)
                                 .addChildAsBits(Tags.TAG_CTX_2, options)
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     int result = parseSimpleResult(response);
                     if (result != CODE_OK && result != CODE_NOTHING_TO_DELETE) {
@@ -504,7 +520,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(
                                 Asn1Node.newBuilder(Tags.TAG_GET_CONFIGURED_ADDRESSES)
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 (byte[] response) -> parseResponse(response).getChild(Tags.TAG_CTX_0).asString(),
                 callback, handler);
     }
@@ -521,7 +537,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(
                                 Asn1Node.newBuilder(Tags.TAG_GET_CONFIGURED_ADDRESSES)
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 (byte[] response) -> parseResponse(response).getChild(Tags.TAG_CTX_1).asString(),
                 callback, handler);
     }
@@ -540,7 +556,7 @@ public class EuiccCard extends UiccCard {
                         requestBuilder.addStoreData(
                                 Asn1Node.newBuilder(Tags.TAG_SET_DEFAULT_SMDP_ADDRESS)
                                         .addChildAsString(Tags.TAG_CTX_0, defaultSmdpAddress)
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 response -> {
                     // SGP.22 v2.0 SetDefaultDpAddressResponse
                     int result = parseSimpleResult(response);
@@ -565,7 +581,7 @@ public class EuiccCard extends UiccCard {
         sendApdu(
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_GET_RAT)
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     Asn1Node root = parseResponse(response);
                     List<Asn1Node> nodes = root.getChildren(Tags.TAG_CTX_COMP_0);
@@ -602,7 +618,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(
                                 Asn1Node.newBuilder(Tags.TAG_GET_EUICC_CHALLENGE)
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 (byte[] response) -> parseResponse(response).getChild(Tags.TAG_CTX_0).asBytes(),
                 callback, handler);
     }
@@ -619,7 +635,7 @@ public class EuiccCard extends UiccCard {
         sendApdu(
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_GET_EUICC_INFO_1)
-                                .build().toHex())),
+                                .build().toBytes())),
                 (response) -> response,
                 callback, handler);
     }
@@ -636,7 +652,7 @@ public class EuiccCard extends UiccCard {
         sendApdu(
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_GET_EUICC_INFO_2)
-                                .build().toHex())),
+                                .build().toBytes())),
                 (response) -> response,
                 callback, handler);
     }
@@ -686,7 +702,7 @@ public class EuiccCard extends UiccCard {
                             .addChild(new Asn1Decoder(euiccCiPkIdToBeUsed).nextNode())
                             .addChild(new Asn1Decoder(serverCertificate).nextNode())
                             .addChild(ctxParams1Builder)
-                            .build().toHex());
+                            .build().toBytes());
                 }),
                 response -> {
                     Asn1Node root = parseResponse(response);
@@ -724,7 +740,7 @@ public class EuiccCard extends UiccCard {
                     }
                     requestBuilder.addStoreData(
                             builder.addChild(new Asn1Decoder(smdpCertificate).nextNode())
-                                    .build().toHex());
+                                    .build().toBytes());
                 }),
                 response -> {
                     Asn1Node root = parseResponse(response);
@@ -764,25 +780,31 @@ public class EuiccCard extends UiccCard {
                     Asn1Node sequenceOf86 = bppNode.getChild(Tags.TAG_CTX_COMP_3);
                     List<Asn1Node> elementSeqs = sequenceOf86.getChildren(Tags.TAG_CTX_6);
 
-                    requestBuilder.addStoreData(bppNode.getHeadAsHex()
-                            + initialiseSecureChannelRequest.toHex());
+                    byte[] bppHead = getHeadAsBytes(bppNode);
+                    byte[] firstCommand = new byte[bppHead.length
+                            + initialiseSecureChannelRequest.getEncodedLength()];
+                    System.arraycopy(bppHead, 0, firstCommand, 0, bppHead.length);
+                    initialiseSecureChannelRequest.writeToBytes(firstCommand, bppHead.length);
+                    requestBuilder.addStoreData(firstCommand);
 
-                    requestBuilder.addStoreData(firstSequenceOf87.toHex());
+                    requestBuilder.addStoreData(firstSequenceOf87.toBytes());
 
-                    requestBuilder.addStoreData(sequenceOf88.getHeadAsHex());
+                    requestBuilder.addStoreData(getHeadAsBytes(sequenceOf88));
                     int size = metaDataSeqs.size();
                     for (int i = 0; i < size; i++) {
-                        requestBuilder.addStoreData(metaDataSeqs.get(i).toHex());
+                        requestBuilder.addStoreData(metaDataSeqs.get(i).toBytes());
                     }
 
                     if (bppNode.hasChild(Tags.TAG_CTX_COMP_2)) {
-                        requestBuilder.addStoreData(bppNode.getChild(Tags.TAG_CTX_COMP_2).toHex());
+                        // sequenceOfA2 (ES8+.ReplaceSessionKeys)
+                        Asn1Node sequenceOfA2 = bppNode.getChild(Tags.TAG_CTX_COMP_2);
+                        requestBuilder.addStoreData(sequenceOfA2.toBytes());
                     }
 
-                    requestBuilder.addStoreData(sequenceOf86.getHeadAsHex());
+                    requestBuilder.addStoreData(getHeadAsBytes(sequenceOf86));
                     size = elementSeqs.size();
                     for (int i = 0; i < size; i++) {
-                        requestBuilder.addStoreData(elementSeqs.get(i).toHex());
+                        requestBuilder.addStoreData(elementSeqs.get(i).toBytes());
                     }
                 }),
                 response -> {
@@ -830,7 +852,7 @@ public class EuiccCard extends UiccCard {
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_CANCEL_SESSION)
                                 .addChildAsBytes(Tags.TAG_CTX_0, transactionId)
                                 .addChildAsInteger(Tags.TAG_CTX_1, reason)
-                                .build().toHex())),
+                                .build().toBytes())),
                 (byte[] response) ->
                         parseResponseAndCheckSimpleError(response,
                                 EuiccCardErrorException.OPERATION_CANCEL_SESSION).toBytes(),
@@ -851,7 +873,7 @@ public class EuiccCard extends UiccCard {
                 newRequestProvider((RequestBuilder requestBuilder) ->
                         requestBuilder.addStoreData(Asn1Node.newBuilder(Tags.TAG_LIST_NOTIFICATION)
                                 .addChildAsBits(Tags.TAG_CTX_1, events)
-                                .build().toHex())),
+                                .build().toBytes())),
                 response -> {
                     Asn1Node root = parseResponseAndCheckSimpleError(response,
                             EuiccCardErrorException.OPERATION_LIST_NOTIFICATIONS);
@@ -881,7 +903,7 @@ public class EuiccCard extends UiccCard {
                                 Asn1Node.newBuilder(Tags.TAG_RETRIEVE_NOTIFICATIONS_LIST)
                                         .addChild(Asn1Node.newBuilder(Tags.TAG_CTX_COMP_0)
                                                 .addChildAsBits(Tags.TAG_CTX_1, events))
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 response -> {
                     Asn1Node root = parseResponse(response);
                     if (root.hasChild(Tags.TAG_CTX_1)) {
@@ -922,7 +944,7 @@ public class EuiccCard extends UiccCard {
                                 Asn1Node.newBuilder(Tags.TAG_RETRIEVE_NOTIFICATIONS_LIST)
                                         .addChild(Asn1Node.newBuilder(Tags.TAG_CTX_COMP_0)
                                                 .addChildAsInteger(Tags.TAG_CTX_0, seqNumber))
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 response -> {
                     Asn1Node root = parseResponseAndCheckSimpleError(response,
                             EuiccCardErrorException.OPERATION_RETRIEVE_NOTIFICATION);
@@ -950,7 +972,7 @@ public class EuiccCard extends UiccCard {
                         requestBuilder.addStoreData(
                                 Asn1Node.newBuilder(Tags.TAG_REMOVE_NOTIFICATION_FROM_LIST)
                                         .addChildAsInteger(Tags.TAG_CTX_0, seqNumber)
-                                        .build().toHex())),
+                                        .build().toBytes())),
                 response -> {
                     // SGP.22 v2.0 NotificationSentResponse
                     int result = parseSimpleResult(response);
@@ -1141,7 +1163,7 @@ public class EuiccCard extends UiccCard {
             Handler handler) {
         sendApdu(requestBuilder, responseHandler,
                 (e) -> callback.onException(new EuiccCardException("Cannot send APDU.", e)),
-                null, callback, handler);
+                null, callback, handler, true /* keepChannel */);
     }
 
     private <T> void sendApdu(RequestProvider requestBuilder,
@@ -1150,13 +1172,14 @@ public class EuiccCard extends UiccCard {
             AsyncResultCallback<T> callback, Handler handler) {
         sendApdu(requestBuilder, responseHandler,
                 (e) -> callback.onException(new EuiccCardException("Cannot send APDU.", e)),
-                intermediateResultHandler, callback, handler);
+                intermediateResultHandler, callback, handler, true /* keepChannel */);
     }
 
     /**
      * This is a workaround solution to the bug that a SIM refresh may interrupt the modem to return
      * the reset of responses of the original APDU command. This applies to disable profile, switch
-     * profile, and reset eUICC memory.
+     * profile, and reset eUICC memory. As these commands may refresh the card, the logical
+     * channel is not kept open for reuse afterwards.
      *
      * <p>TODO: Use
      * {@link #sendApdu(RequestProvider, ApduResponseHandler, AsyncResultCallback, Handler)} when
@@ -1173,7 +1196,7 @@ public class EuiccCard extends UiccCard {
             } else {
                 callback.onException(new EuiccCardException("Cannot send APDU.", e));
             }
-        }, null, callback, handler);
+        }, null, callback, handler, false /* keepChannel */);
     }
 
     private <T> void sendApdu(RequestProvider requestBuilder,
@@ -1181,7 +1204,8 @@ public class EuiccCard extends UiccCard {
             ApduExceptionHandler exceptionHandler,
             @Nullable ApduIntermediateResultHandler intermediateResultHandler,
             AsyncResultCallback<T> callback,
-            Handler handler) {
+            Handler handler,
+            boolean keepChannel) {
         mApduSender.send(requestBuilder, new ApduSenderResultCallback() {
             @Override
             public void onResult(byte[] response) {
@@ -1207,54 +1231,60 @@ public class EuiccCard extends UiccCard {
             public void onException(Throwable e) {
                 exceptionHandler.handleException(e);
             }
-        }, handler);
+        }, handler, keepChannel);
     }
 
     private static void buildProfile(Asn1Node profileNode, EuiccProfileInfo.Builder profileBuilder)
             throws TagNotFoundException, InvalidAsn1DataException {
-        if (profileNode.hasChild(Tags.TAG_NICKNAME)) {
-            profileBuilder.setNickname(profileNode.getChild(Tags.TAG_NICKNAME).asString());
+        // ProfileInfo has a dozen optional children, so index them in one pass instead of
+        // scanning the children twice (hasChild + getChild) for each of them.
+        SparseArray<Asn1Node> children = indexChildrenByTag(profileNode);
+
+        Asn1Node nickname = children.get(Tags.TAG_NICKNAME);
+        if (nickname != null) {
+            profileBuilder.setNickname(nickname.asString());
         }
 
-        if (profileNode.hasChild(Tags.TAG_SERVICE_PROVIDER_NAME)) {
-            profileBuilder.setServiceProviderName(
-                    profileNode.getChild(Tags.TAG_SERVICE_PROVIDER_NAME).asString());
+        Asn1Node serviceProviderName = children.get(Tags.TAG_SERVICE_PROVIDER_NAME);
+        if (serviceProviderName != null) {
+            profileBuilder.setServiceProviderName(serviceProviderName.asString());
         }
 
-        if (profileNode.hasChild(Tags.TAG_PROFILE_NAME)) {
-            profileBuilder.setProfileName(
-                    profileNode.getChild(Tags.TAG_PROFILE_NAME).asString());
+        Asn1Node profileName = children.get(Tags.TAG_PROFILE_NAME);
+        if (profileName != null) {
+            profileBuilder.setProfileName(profileName.asString());
         }
 
-        if (profileNode.hasChild(Tags.TAG_OPERATOR_ID)) {
-            profileBuilder.setCarrierIdentifier(
-                    buildCarrierIdentifier(profileNode.getChild(Tags.TAG_OPERATOR_ID)));
+        Asn1Node operatorId = children.get(Tags.TAG_OPERATOR_ID);
+        if (operatorId != null) {
+            profileBuilder.setCarrierIdentifier(buildCarrierIdentifier(operatorId));
         }
 
-        if (profileNode.hasChild(Tags.TAG_PROFILE_STATE)) {
+        Asn1Node state = children.get(Tags.TAG_PROFILE_STATE);
+        if (state != null) {
             // noinspection WrongConstant
-            profileBuilder.setState(profileNode.getChild(Tags.TAG_PROFILE_STATE).asInteger());
+            profileBuilder.setState(state.asInteger());
         } else {
             profileBuilder.setState(EuiccProfileInfo.PROFILE_STATE_DISABLED);
         }
 
-        if (profileNode.hasChild(Tags.TAG_PROFILE_CLASS)) {
+        Asn1Node profileClass = children.get(Tags.TAG_PROFILE_CLASS);
+        if (profileClass != null) {
             // noinspection WrongConstant
-            profileBuilder.setProfileClass(
-                    profileNode.getChild(Tags.TAG_PROFILE_CLASS).asInteger());
+            profileBuilder.setProfileClass(profileClass.asInteger());
         } else {
             profileBuilder.setProfileClass(EuiccProfileInfo.PROFILE_CLASS_OPERATIONAL);
         }
 
-        if (profileNode.hasChild(Tags.TAG_PROFILE_POLICY_RULE)) {
+        Asn1Node policyRules = children.get(Tags.TAG_PROFILE_POLICY_RULE);
+        if (policyRules != null) {
             // noinspection WrongConstant
-            profileBuilder.setPolicyRules(
-                    profileNode.getChild(Tags.TAG_PROFILE_POLICY_RULE).asBits());
+            profileBuilder.setPolicyRules(policyRules.asBits());
         }
 
-        if (profileNode.hasChild(Tags.TAG_CARRIER_PRIVILEGE_RULES)) {
-            List<Asn1Node> refArDoNodes = profileNode.getChild(Tags.TAG_CARRIER_PRIVILEGE_RULES)
-                    .getChildren(Tags.TAG_REF_AR_DO);
+        Asn1Node privilegeRules = children.get(Tags.TAG_CARRIER_PRIVILEGE_RULES);
+        if (privilegeRules != null) {
+            List<Asn1Node> refArDoNodes = privilegeRules.getChildren(Tags.TAG_REF_AR_DO);
             UiccAccessRule[] rules = buildUiccAccessRule(refArDoNodes);
             List<UiccAccessRule> rulesList = null;
             if (rules != null) {
@@ -1264,6 +1294,24 @@ public class EuiccCard extends UiccCard {
         }
     }
 
+    /**
+     * Returns the direct children of {@code node} by tag. Like {@link Asn1Node#getChild}, only the
+     * first child is kept if a tag occurs more than once.
+     */
+    private static SparseArray<Asn1Node> indexChildrenByTag(Asn1Node node)
+            throws InvalidAsn1DataException {
+        List<Asn1Node> children = node.getChildren();
+        int size = children.size();
+        SparseArray<Asn1Node> index = new SparseArray<>(size);
+        for (int i = 0; i < size; i++) {
+            Asn1Node child = children.get(i);
+            if (index.indexOfKey(child.getTag()) < 0) {
+                index.put(child.getTag(), child);
+            }
+        }
+        return index;
+    }
+
     private static CarrierIdentifier buildCarrierIdentifier(Asn1Node node)
             throws InvalidAsn1DataException, TagNotFoundException {
         String gid1 = null;
@@ -1366,6 +1414,28 @@ public class EuiccCard extends UiccCard {
         return IccUtils.stripTrailingFs(IccUtils.bchToString(iccId, 0, iccId.length));
     }
 
+    /**
+     * Encodes the tag and length of a node, which is what {@link Asn1Node#getHeadAsHex()} returns,
+     * without going through hex.
+     */
+    private static byte[] getHeadAsBytes(Asn1Node node) {
+        int tag = node.getTag();
+        int dataLength = node.getDataLength();
+        int tagBytes = IccUtils.byteNumForUnsignedInt(tag);
+        byte[] head;
+        if (dataLength <= 0x7F) {
+            head = new byte[tagBytes + 1];
+            head[tagBytes] = (byte) dataLength;
+        } else {
+            int lengthBytes = IccUtils.byteNumForUnsignedInt(dataLength);
+            head = new byte[tagBytes + 1 + lengthBytes];
+            head[tagBytes] = (byte) (0x80 | lengthBytes);
+            IccUtils.unsignedIntToBytes(dataLength, head, tagBytes + 1);
+        }
+        IccUtils.unsignedIntToBytes(tag, head, 0);
+        return head;
+    }
+
     /** Pad an iccId with trailing 'F' characters until the length is 20. */
     private static String padTrailingFs(String iccId) {
         if (!TextUtils.isEmpty(iccId) && iccId.length() < ICCID_LENGTH) {
@@ -1397,5 +1467,6 @@ public class EuiccCard extends UiccCard {
         super.dump(fd, pw, args);
         pw.println("EuiccCard:");
         pw.println(" mEid=" + mEid);
+        mApduSender.dump(pw);
     }
 }
@@ -16,6 +16,10 @@
 
 package com.android.internal.telephony.uicc.euicc.apdu;
 
+import com.android.internal.telephony.uicc.IccUtils;
+
+import java.util.Arrays;
+
 /**
  * Parts of an APDU command.
  *
@@ -40,8 +44,16 @@ class ApduCommand {
     /** Parameter 3 of an APDU as defined in GlobalPlatform Card Specification v.2.3. */
     public final int p3;
 
-    /** Command data of an APDU as defined in GlobalPlatform Card Specification v.2.3. */
-    public final String cmdHex;
+    /**
+     * Command data of an APDU in hex as defined in GlobalPlatform Card Specification v.2.3. If the
+     * command data is given as bytes, this is null until {@link #getCmdHex} encodes it.
+     */
+    private String mCmdHex;
+
+    /** Command data of an APDU in bytes, or null if the command data is given in hex. */
+    private final byte[] mCmd;
+    private final int mCmdOffset;
+    private final int mCmdLength;
 
     /** The parameters are defined as in GlobalPlatform Card Specification v.2.3. */
     ApduCommand(int channel, int cla, int ins, int p1, int p2, int p3, String cmdHex) {
@@ -51,12 +63,47 @@ class ApduCommand {
         this.p1 = p1;
         this.p2 = p2;
         this.p3 = p3;
-        this.cmdHex = cmdHex;
+        mCmdHex = cmdHex;
+        mCmd = null;
+        mCmdOffset = 0;
+        mCmdLength = 0;
+    }
+
+    /**
+     * The parameters are defined as in GlobalPlatform Card Specification v.2.3. The command data
+     * is {@code length} bytes of {@code cmd} starting at {@code offset}. The array is not copied
+     * and must not be modified until the command has been sent.
+     */
+    ApduCommand(int channel, int cla, int ins, int p1, int p2, int p3, byte[] cmd, int offset,
+            int length) {
+        this.channel = channel;
+        this.cla = cla;
+        this.ins = ins;
+        this.p1 = p1;
+        this.p2 = p2;
+        this.p3 = p3;
+        mCmdHex = null;
+        mCmd = cmd;
+        mCmdOffset = offset;
+        mCmdLength = length;
+    }
+
+    /**
+     * Returns the command data in hex, which is what the radio interface takes. Command data given
+     * as bytes is encoded on the first call and the result is kept, so each command is encoded at
+     * most once and no hex string of the whole request is ever built.
+     */
+    String getCmdHex() {
+        if (mCmdHex == null) {
+            mCmdHex = IccUtils.bytesToHexString(
+                    Arrays.copyOfRange(mCmd, mCmdOffset, mCmdOffset + mCmdLength));
+        }
+        return mCmdHex;
     }
 
     @Override
     public String toString() {
         return "ApduCommand(channel=" + channel + ", cla=" + cla + ", ins=" + ins + ", p1=" + p1
-                + ", p2=" + p2 + ", p3=" + p3 + ", cmd=" + cmdHex + ")";
+                + ", p2=" + p2 + ", p3=" + p3 + ", cmd=" + getCmdHex() + ")";
     }
 }
@@ -28,14 +28,17 @@ import com.android.internal.telephony.uicc.euicc.async.AsyncResultHelper;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
 
 /**
  * This class sends a list of APDU commands to an AID on a UICC. A logical channel will be opened
- * before sending and closed after all APDU commands are sent. The complete response of the last
- * APDU command will be returned. If any APDU command returns an error status (other than
- * {@link #STATUS_NO_ERROR}) or causing an exception, an {@link ApduException} will be returned
- * immediately without sending the rest of commands. This class is thread-safe.
+ * before sending and closed after all APDU commands are sent, or, if a channel idle timeout is
+ * given, kept open for that long so that a following request can reuse it without another
+ * open/close round-trip. The complete response of the last APDU command will be returned. If any
+ * APDU command returns an error status (other than {@link #STATUS_NO_ERROR}) or causing an
+ * exception, an {@link ApduException} will be returned immediately without sending the rest of
+ * commands. This class is thread-safe.
  *
  * @hide
  */
@@ -49,6 +52,10 @@ public class ApduSender {
     // Status code of APDU response
     private static final int STATUS_NO_ERROR = 0x9000;
     private static final int SW1_NO_ERROR = 0x91;
+    // Status codes with which a card rejects a command sent on a logical channel that is no
+    // longer open, as defined in ISO/IEC 7816-4.
+    private static final int STATUS_LOGICAL_CHANNEL_NOT_SUPPORTED = 0x6881;
+    private static final int STATUS_FUNCTION_NOT_SUPPORTED = 0x6A81;
 
     private static void logv(String msg) {
         Rlog.v(LOG_TAG, msg);
@@ -56,26 +63,71 @@ public class ApduSender {
 
     private final String mAid;
     private final boolean mSupportExtendedApdu;
+    private final long mChannelIdleTimeoutMillis;
     private final OpenLogicalChannelInvocation mOpenChannel;
     private final CloseLogicalChannelInvocation mCloseChannel;
     private final TransmitApduLogicalChannelInvocation mTransmitApdu;
+    private final Runnable mCloseIdleChannelRunnable = this::closeIdleChannel;
 
-    // Lock for accessing mChannelOpened. We only allow to open a single logical channel at any
-    // time for an AID.
+    // Lock for accessing mChannelOpened and the idle channel. We only allow to open a single
+    // logical channel at any time for an AID.
     private final Object mChannelLock = new Object();
+    // Whether a request is using a logical channel.
     private boolean mChannelOpened;
+    // A logical channel kept open after the last request, and the select response it was opened
+    // with. INVALID_CHANNEL if there is none.
+    private int mIdleChannel = IccOpenLogicalChannelResponse.INVALID_CHANNEL;
+    private byte[] mIdleSelectResponse;
+    private Handler mIdleChannelHandler;
+    // Whether the channel of the current request may be kept open after it has finished.
+    private boolean mKeepChannel;
+
+    // The select response of the channel used by the current request.
+    private byte[] mSelectResponse;
+    // The number of APDU round-trips, including GET RESPONSE, of the current request.
+    private int mRequestApduCount;
+
+    // Statistics for dumpsys, guarded by mChannelLock.
+    private int mRequestCount;
+    private int mChannelOpenCount;
+    private int mChannelReuseCount;
+    private long mApduCount;
 
     /**
      * @param aid The AID that will be used to open a logical channel to.
      */
     public ApduSender(CommandsInterface ci, String aid, boolean supportExtendedApdu) {
+        this(ci, aid, supportExtendedApdu, 0 /* channelIdleTimeoutMillis */);
+    }
+
+    /**
+     * @param aid The AID that will be used to open a logical channel to.
+     * @param channelIdleTimeoutMillis How long a logical channel is kept open after a request has
+     *     finished successfully, waiting to be reused by the next request. If it's 0, the channel
+     *     is closed as soon as each request has finished.
+     */
+    public ApduSender(CommandsInterface ci, String aid, boolean supportExtendedApdu,
+            long channelIdleTimeoutMillis) {
         mAid = aid;
         mSupportExtendedApdu = supportExtendedApdu;
+        mChannelIdleTimeoutMillis = channelIdleTimeoutMillis;
         mOpenChannel = new OpenLogicalChannelInvocation(ci);
         mCloseChannel = new CloseLogicalChannelInvocation(ci);
         mTransmitApdu = new TransmitApduLogicalChannelInvocation(ci);
     }
 
+    /**
+     * Sends APDU commands. The logical channel may be kept open for reuse afterwards.
+     *
+     * @see #send(RequestProvider, ApduSenderResultCallback, Handler, boolean)
+     */
+    public void send(
+            RequestProvider requestProvider,
+            ApduSenderResultCallback resultCallback,
+            Handler handler) {
+        send(requestProvider, resultCallback, handler, true /* keepChannel */);
+    }
+
     /**
      * Sends APDU commands.
      *
@@ -87,11 +139,18 @@ public class ApduSender {
      *     returned as an {@link ApduException} exception.
      * @param handler The handler that {@code requestProvider} and {@code resultCallback} will be
      *     executed on.
+     * @param keepChannel Whether the logical channel may be kept open for reuse after the request.
+     *     This should be {@code false} for commands which may refresh or reset the card, as the
+     *     channel does not survive that. Such a request never reuses an idle channel either, so
+     *     it is always sent exactly once on a newly opened channel.
      */
     public void send(
             RequestProvider requestProvider,
             ApduSenderResultCallback resultCallback,
-            Handler handler) {
+            Handler handler,
+            boolean keepChannel) {
+        int idleChannel;
+        byte[] idleSelectResponse;
         synchronized (mChannelLock) {
             if (mChannelOpened) {
                 AsyncResultHelper.throwException(
@@ -100,8 +159,52 @@ public class ApduSender {
                 return;
             }
             mChannelOpened = true;
+            mKeepChannel = keepChannel;
+            mRequestCount++;
+            mRequestApduCount = 0;
+
+            idleChannel = mIdleChannel;
+            idleSelectResponse = mIdleSelectResponse;
+            mIdleChannel = IccOpenLogicalChannelResponse.INVALID_CHANNEL;
+            mIdleSelectResponse = null;
+            if (mIdleChannelHandler != null) {
+                mIdleChannelHandler.removeCallbacks(mCloseIdleChannelRunnable);
+                mIdleChannelHandler = null;
+            }
+            if (idleChannel != IccOpenLogicalChannelResponse.INVALID_CHANNEL && keepChannel) {
+                mChannelReuseCount++;
+            }
         }
 
+        if (idleChannel != IccOpenLogicalChannelResponse.INVALID_CHANNEL && !keepChannel) {
+            logv("Close idle logical channel " + idleChannel + " for AID: " + mAid);
+            mCloseChannel.invoke(idleChannel, new AsyncResultCallback<Boolean>() {
+                @Override
+                public void onResult(Boolean aBoolean) {
+                    openChannelAndSend(requestProvider, resultCallback, handler);
+                }
+            }, handler);
+            return;
+        }
+
+        if (idleChannel != IccOpenLogicalChannelResponse.INVALID_CHANNEL) {
+            logv("Reuse logical channel " + idleChannel + " for AID: " + mAid);
+            // The card may have closed the channel without us knowing, e.g. after a reset. If the
+            // first command is rejected because of that, retry once on a newly opened one.
+            handler.post(() -> sendRequest(idleChannel, idleSelectResponse, requestProvider,
+                    resultCallback, handler,
+                    () -> openChannelAndSend(requestProvider, resultCallback, handler)));
+            return;
+        }
+
+        openChannelAndSend(requestProvider, resultCallback, handler);
+    }
+
+    /** Opens a new logical channel and sends the request over it. */
+    private void openChannelAndSend(
+            RequestProvider requestProvider,
+            ApduSenderResultCallback resultCallback,
+            Handler handler) {
         mOpenChannel.invoke(mAid, new AsyncResultCallback<IccOpenLogicalChannelResponse>() {
             @Override
             public void onResult(IccOpenLogicalChannelResponse openChannelResponse) {
@@ -117,39 +220,66 @@ public class ApduSender {
                                     + mAid + ", with status: " + status));
                     return;
                 }
-
-                RequestBuilder builder = new RequestBuilder(channel, mSupportExtendedApdu);
-                Throwable requestException = null;
-                try {
-                    requestProvider.buildRequest(openChannelResponse.getSelectResponse(), builder);
-                } catch (Throwable e) {
-                    requestException = e;
-                }
-                if (builder.getCommands().isEmpty() || requestException != null) {
-                    // Just close the channel if we don't have commands to send or an error
-                    // was encountered.
-                    closeAndReturn(channel, null /* response */, requestException, resultCallback,
-                            handler);
-                    return;
+                synchronized (mChannelLock) {
+                    mChannelOpenCount++;
                 }
-                sendCommand(builder.getCommands(), 0 /* index */, resultCallback, handler);
+                sendRequest(channel, openChannelResponse.getSelectResponse(), requestProvider,
+                        resultCallback, handler, null /* retryOnNewChannel */);
             }
         }, handler);
     }
 
+    /**
+     * Builds the request and sends its commands over the opened {@code channel}.
+     *
+     * @param retryOnNewChannel If not null, this will be run instead of returning an error when
+     *     the first command is rejected because the channel is not open, after the channel has
+     *     been closed.
+     */
+    private void sendRequest(
+            int channel,
+            byte[] selectResponse,
+            RequestProvider requestProvider,
+            ApduSenderResultCallback resultCallback,
+            Handler handler,
+            @Nullable Runnable retryOnNewChannel) {
+        mSelectResponse = selectResponse;
+        RequestBuilder builder = new RequestBuilder(channel, mSupportExtendedApdu);
+        Throwable requestException = null;
+        try {
+            requestProvider.buildRequest(selectResponse, builder);
+        } catch (Throwable e) {
+            requestException = e;
+        }
+        if (builder.getCommands().isEmpty() || requestException != null) {
+            // Just close the channel if we don't have commands to send or an error
+            // was encountered.
+            closeAndReturn(channel, null /* response */, requestException, resultCallback,
+                    handler);
+            return;
+        }
+        sendCommand(builder.getCommands(), 0 /* index */, resultCallback, handler,
+                retryOnNewChannel);
+    }
+
     /**
      * Sends the current command and then continue to send the next one. If this is the last
      * command or any error happens, {@code resultCallback} will be called.
      *
      * @param commands All commands to be sent.
      * @param index The current command index.
+     * @param retryOnNewChannel If not null, this will be run instead of returning an error when
+     *     the first command is rejected because the channel is not open, after the channel has
+     *     been closed.
      */
     private void sendCommand(
             List<ApduCommand> commands,
             int index,
             ApduSenderResultCallback resultCallback,
-            Handler handler) {
+            Handler handler,
+            @Nullable Runnable retryOnNewChannel) {
         ApduCommand command = commands.get(index);
+        mRequestApduCount++;
         mTransmitApdu.invoke(command, new AsyncResultCallback<IccIoResult>() {
             @Override
             public void onResult(IccIoResult response) {
@@ -162,6 +292,14 @@ public class ApduSender {
                                 logv("Full APDU response: " + fullResponse);
                                 int status = (fullResponse.sw1 << 8) | fullResponse.sw2;
                                 if (status != STATUS_NO_ERROR && fullResponse.sw1 != SW1_NO_ERROR) {
+                                    if (index == 0 && retryOnNewChannel != null
+                                            && isChannelNotOpenStatus(status)) {
+                                        logv("Reused logical channel " + command.channel
+                                                + " failed with status " + status + ", retry");
+                                        closeChannel(command.channel, handler);
+                                        retryOnNewChannel.run();
+                                        return;
+                                    }
                                     closeAndReturn(command.channel, null /* response */,
                                             new ApduException(status), resultCallback, handler);
                                     return;
@@ -173,7 +311,8 @@ public class ApduSender {
                                                 fullResponse);
                                 if (continueSendCommand) {
                                     // Sends the next command
-                                    sendCommand(commands, index + 1, resultCallback, handler);
+                                    sendCommand(commands, index + 1, resultCallback, handler,
+                                            null /* retryOnNewChannel */);
                                 } else {
                                     // Returns the result of the last command
                                     closeAndReturn(command.channel, fullResponse.payload,
@@ -214,6 +353,7 @@ public class ApduSender {
             return;
         }
 
+        mRequestApduCount++;
         mTransmitApdu.invoke(
                 new ApduCommand(channel, 0 /* cls  */, INS_GET_MORE_RESPONSE, 0 /* p1 */,
                         0 /* p2 */, lastResponse.sw2, "" /* cmdHex */),
@@ -227,7 +367,8 @@ public class ApduSender {
     }
 
     /**
-     * Closes the opened logical channel.
+     * Closes the opened logical channel, or keeps it open for reuse if the request has succeeded,
+     * a channel idle timeout is set and the request allows to keep it.
      *
      * @param response If {@code exception} is null, this will be returned to {@code resultCallback}
      *     after the channel has been closed.
@@ -240,10 +381,30 @@ public class ApduSender {
             @Nullable Throwable exception,
             ApduSenderResultCallback resultCallback,
             Handler handler) {
+        logv("Request finished with " + mRequestApduCount + " APDU round-trip(s) on channel "
+                + channel);
+        boolean keepChannel;
+        synchronized (mChannelLock) {
+            keepChannel = mKeepChannel;
+        }
+        if (exception == null && mChannelIdleTimeoutMillis > 0 && keepChannel) {
+            synchronized (mChannelLock) {
+                mApduCount += mRequestApduCount;
+                mIdleChannel = channel;
+                mIdleSelectResponse = mSelectResponse;
+                mIdleChannelHandler = handler;
+                handler.postDelayed(mCloseIdleChannelRunnable, mChannelIdleTimeoutMillis);
+                mChannelOpened = false;
+            }
+            resultCallback.onResult(response);
+            return;
+        }
+
         mCloseChannel.invoke(channel, new AsyncResultCallback<Boolean>() {
             @Override
             public void onResult(Boolean aBoolean) {
                 synchronized (mChannelLock) {
+                    mApduCount += mRequestApduCount;
                     mChannelOpened = false;
                 }
 
@@ -255,4 +416,61 @@ public class ApduSender {
             }
         }, handler);
     }
+
+    /**
+     * Closes the logical channel kept open for reuse, if any. This should be called when the card
+     * has been removed or its state has changed, as the channel may no longer be valid.
+     */
+    public void closeIdleChannel() {
+        int channel;
+        Handler handler;
+        synchronized (mChannelLock) {
+            if (mIdleChannel == IccOpenLogicalChannelResponse.INVALID_CHANNEL) {
+                return;
+            }
+            channel = mIdleChannel;
+            handler = mIdleChannelHandler;
+            mIdleChannel = IccOpenLogicalChannelResponse.INVALID_CHANNEL;
+            mIdleSelectResponse = null;
+            mIdleChannelHandler = null;
+        }
+        handler.removeCallbacks(mCloseIdleChannelRunnable);
+        logv("Close idle logical channel " + channel + " for AID: " + mAid);
+        closeChannel(channel, handler);
+    }
+
+    /**
+     * Returns whether {@code status} means the command was rejected because its logical channel
+     * is not open, so it has not been executed. Other errors, including the 0x6F00 reported for
+     * any radio error, may come from a command the card has already executed.
+     */
+    private static boolean isChannelNotOpenStatus(int status) {
+        return status == STATUS_LOGICAL_CHANNEL_NOT_SUPPORTED
+                || status == STATUS_FUNCTION_NOT_SUPPORTED;
+    }
+
+    /** Closes a logical channel without waiting for the result. */
+    private void closeChannel(int channel, Handler handler) {
+        mCloseChannel.invoke(channel, new AsyncResultCallback<Boolean>() {
+            @Override
+            public void onResult(Boolean aBoolean) {
+                // Nothing to do.
+            }
+        }, handler);
+    }
+
+    /**
+     * Dump the channel usage of this sender.
+     */
+    public void dump(PrintWriter pw) {
+        synchronized (mChannelLock) {
+            pw.println("ApduSender(" + mAid + "):");
+            pw.println(" mChannelIdleTimeoutMillis=" + mChannelIdleTimeoutMillis);
+            pw.println(" mRequestCount=" + mRequestCount);
+            pw.println(" mChannelOpenCount=" + mChannelOpenCount);
+            pw.println(" mChannelReuseCount=" + mChannelReuseCount);
+            pw.println(" mApduCount=" + mApduCount);
+            pw.println(" mIdleChannel=" + mIdleChannel);
+        }
+    }
 }
@@ -67,6 +67,19 @@ public class RequestBuilder {
         mCommands.add(new ApduCommand(mChannel, cla, ins, p1, p2, 0, ""));
     }
 
+    /**
+     * Adds an APDU command with given command data in bytes. P3 will be the length of the command
+     * data. The array is not copied and must not be modified until the request has been sent. The
+     * parameters are defined as in GlobalPlatform Card Specification v.2.3.
+     */
+    public void addApdu(int cla, int ins, int p1, int p2, byte[] cmd) {
+        addApdu(cla, ins, p1, p2, cmd, 0, cmd.length);
+    }
+
+    private void addApdu(int cla, int ins, int p1, int p2, byte[] cmd, int offset, int length) {
+        mCommands.add(new ApduCommand(mChannel, cla, ins, p1, p2, length, cmd, offset, length));
+    }
+
     /**
      * Adds a STORE DATA command. Long command length of which is larger than {@link
      * #mMaxApduDataLen} will be automatically split into multiple ones.
@@ -88,6 +101,27 @@ public class RequestBuilder {
         addApdu(CLA_STORE_DATA, INS_STORE_DATA, P1_STORE_DATA_END, totalSubCmds - 1, data);
     }
 
+    /**
+     * Adds a STORE DATA command with the command data in bytes. Long command length of which is
+     * larger than {@link #mMaxApduDataLen} will be automatically split into multiple ones, each of
+     * which refers to a range of {@code cmd} without copying it.
+     *
+     * @param cmd The STORE DATA command as defined in GlobalPlatform Card Specification v.2.3. The
+     *     array must not be modified until the request has been sent.
+     */
+    public void addStoreData(byte[] cmd) {
+        int startPos = 0;
+        int totalLen = cmd.length;
+        int totalSubCmds = totalLen == 0 ? 1 : (totalLen + mMaxApduDataLen - 1) / mMaxApduDataLen;
+        for (int i = 1; i < totalSubCmds; ++i) {
+            addApdu(CLA_STORE_DATA, INS_STORE_DATA, P1_STORE_DATA_INTERM, i - 1, cmd, startPos,
+                    mMaxApduDataLen);
+            startPos += mMaxApduDataLen;
+        }
+        addApdu(CLA_STORE_DATA, INS_STORE_DATA, P1_STORE_DATA_END, totalSubCmds - 1, cmd, startPos,
+                totalLen - startPos);
+    }
+
     List<ApduCommand> getCommands() {
         return mCommands;
     }
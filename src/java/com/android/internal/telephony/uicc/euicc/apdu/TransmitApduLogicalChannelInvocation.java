@@ -19,6 +19,7 @@ package com.android.internal.telephony.uicc.euicc.apdu;
 import android.os.AsyncResult;
 import android.os.Message;
 import android.telephony.Rlog;
+import android.util.Log;
 
 import com.android.internal.telephony.CommandException;
 import com.android.internal.telephony.CommandsInterface;
@@ -36,6 +37,7 @@ import com.android.internal.telephony.uicc.euicc.async.AsyncMessageInvocation;
 public class TransmitApduLogicalChannelInvocation
         extends AsyncMessageInvocation<ApduCommand, IccIoResult> {
     private static final String LOG_TAG = "TransApdu";
+    private static final boolean VDBG = Rlog.isLoggable(LOG_TAG, Log.VERBOSE);
     private static final int SW1_ERROR = 0x6F;
 
     private final CommandsInterface mCi;
@@ -46,9 +48,12 @@ public class TransmitApduLogicalChannelInvocation
 
     @Override
     protected void sendRequestMessage(ApduCommand command, Message msg) {
-        Rlog.v(LOG_TAG, "Send: " + command);
+        String cmdHex = command.getCmdHex();
+        if (VDBG) {
+            Rlog.v(LOG_TAG, "Send: " + command);
+        }
         mCi.iccTransmitApduLogicalChannel(command.channel, command.cla | command.channel,
-                command.ins, command.p1, command.p2, command.p3, command.cmdHex, msg);
+                command.ins, command.p1, command.p2, command.p3, cmdHex, msg);
     }
 
     @Override
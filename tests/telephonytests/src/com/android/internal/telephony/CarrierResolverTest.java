@@ -19,7 +19,9 @@ package com.android.internal.telephony;
 import static com.android.internal.telephony.TelephonyTestUtils.waitForMs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 
@@ -40,6 +42,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 
 public class CarrierResolverTest extends TelephonyTest {
     private static final String MCCMNC = "311480";
@@ -88,6 +92,7 @@ public class CarrierResolverTest extends TelephonyTest {
 
     private CarrierResolver mCarrierResolver;
     private CarrierResolverHandler mCarrierCarrierResolverHandler;
+    private int mCarrierIdQueryCount;
 
     private class CarrierResolverHandler extends HandlerThread {
         private CarrierResolverHandler(String name) {
@@ -105,6 +110,7 @@ public class CarrierResolverTest extends TelephonyTest {
     public void setUp() throws Exception {
         logd("CarrierResolverTest +Setup!");
         super.setUp(getClass().getSimpleName());
+        replaceInstance(CarrierResolver.class, "sCarrierIdTable", null, null);
         ((MockContentResolver) mContext.getContentResolver()).addProvider(
                 CarrierId.AUTHORITY, new CarrierIdContentProvider());
         // start handler thread
@@ -280,6 +286,77 @@ public class CarrierResolverTest extends TelephonyTest {
         assertEquals(NAME_DOCOMO, mCarrierResolver.getCarrierName());
     }
 
+    @Test
+    @SmallTest
+    public void testCarrierMatchingRuleIndex() {
+        List<CarrierResolver.CarrierMatchingRule> rules = Arrays.asList(
+                makeRule(null, null, null, null, null, null),       // 0: mccmnc only
+                makeRule("311480xx1", null, null, null, null, null),  // 1: imsi pattern
+                makeRule(null, "8914", null, null, null, null),       // 2: iccid prefix
+                makeRule(null, null, "ddff", null, null, null),       // 3: gid1 prefix
+                makeRule(null, null, null, SPN_FI, null, null),       // 4: spn
+                makeRule(null, null, null, null, APN_DOCOMO, null),   // 5: apn
+                makeRule(null, null, null, null, null, "ABCD"),       // 6: cert
+                makeRule(null, null, "ee", SPN_FI, null, null));      // 7: gid1 and spn
+        CarrierResolver.CarrierMatchingRuleIndex index =
+                new CarrierResolver.CarrierMatchingRuleIndex(rules);
+
+        BitSet candidates = index.getCandidates(new CarrierResolver.CarrierMatchingRule(
+                MCCMNC, "311480991", "89148000000", "DDFF0000", null, null,
+                SPN_FI.toLowerCase(), "MOPERA.NET", Arrays.asList("abcd"), CID_UNKNOWN, null,
+                CID_UNKNOWN));
+        assertEquals("{0, 1, 2, 3, 4, 5, 6}", candidates.toString());
+
+        candidates = index.getCandidates(new CarrierResolver.CarrierMatchingRule(
+                MCCMNC, "311480992", null, "EE01", null, null, null, null, null, CID_UNKNOWN,
+                null, CID_UNKNOWN));
+        assertEquals("{0, 7}", candidates.toString());
+    }
+
+    @Test
+    @SmallTest
+    public void testCarrierIdTable() {
+        CarrierResolver.CarrierIdTable table = CarrierResolver.CarrierIdTable.load(mContext);
+
+        List<CarrierResolver.CarrierMatchingRule> rules = table.getRules(MCCMNC);
+        assertEquals(4, rules.size());
+        assertEquals(APN_DOCOMO, rules.get(3).apn);
+        // callers get their own copies to score
+        assertNotSame(rules.get(0), table.getRules(MCCMNC).get(0));
+        assertTrue(table.getRules("12345").isEmpty());
+
+        assertEquals(NAME_FI, table.getCarrierName(CID_FI));
+        assertEquals(NAME_TMO, table.getCarrierName(CID_TMO));
+        assertNull(table.getCarrierName(100));
+
+        assertEquals(CID_VZW, table.getMnoCarrierId(MCCMNC));
+        assertEquals(CID_O2, table.getMnoCarrierId(MCCMNC_O2));
+        assertEquals(CID_UNKNOWN, table.getMnoCarrierId("12345"));
+    }
+
+    @Test
+    @SmallTest
+    public void testReloadCarrierIdTableOncePerChange() {
+        // every phone is notified of the same change before any of them handles it
+        long phone0Change = CarrierResolver.nextCarrierIdDbSequence();
+        long phone1Change = CarrierResolver.nextCarrierIdDbSequence();
+        int queryCount = mCarrierIdQueryCount;
+        CarrierResolver.reloadCarrierIdTable(mContext, phone0Change);
+        CarrierResolver.reloadCarrierIdTable(mContext, phone1Change);
+        assertEquals(queryCount + 1, mCarrierIdQueryCount);
+
+        // a change notified after the last load reloads again
+        CarrierResolver.reloadCarrierIdTable(mContext, CarrierResolver.nextCarrierIdDbSequence());
+        assertEquals(queryCount + 2, mCarrierIdQueryCount);
+    }
+
+    private static CarrierResolver.CarrierMatchingRule makeRule(String imsiPrefix,
+            String iccidPrefix, String gid1, String spn, String apn, String cert) {
+        return new CarrierResolver.CarrierMatchingRule(MCCMNC, imsiPrefix, iccidPrefix, gid1,
+                null, null, spn, apn, cert == null ? null : Arrays.asList(cert), CID_VZW, NAME,
+                CID_UNKNOWN);
+    }
+
     private class CarrierIdContentProvider extends MockContentProvider {
         @Override
         public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
@@ -293,6 +370,7 @@ public class CarrierResolverTest extends TelephonyTest {
 
             if (CarrierId.All.CONTENT_URI.getAuthority().equals(
                     uri.getAuthority())) {
+                mCarrierIdQueryCount++;
                 MatrixCursor mc = new MatrixCursor(
                         new String[]{CarrierId._ID,
                                 CarrierId.All.MCCMNC,
@@ -109,7 +109,7 @@ public class CarrierServiceStateTrackerTest extends TelephonyTest {
     public void testCancelBothNotifications() {
         logd(LOG_TAG + ":testCancelBothNotifications()");
         Message notificationMsg = mSpyCarrierSST.obtainMessage(
-                CarrierServiceStateTracker.CARRIER_EVENT_DATA_REGISTRATION, null);
+                CarrierServiceStateTracker.CARRIER_EVENT_REGISTRATION_STATE_CHANGED, null);
         doReturn(false).when(mSpyCarrierSST).evaluateSendingMessage(any());
         doReturn(mNotificationManager).when(mSpyCarrierSST).getNotificationManager(any());
         mSpyCarrierSST.handleMessage(notificationMsg);
@@ -126,7 +126,7 @@ public class CarrierServiceStateTrackerTest extends TelephonyTest {
         logd(LOG_TAG + ":testSendBothNotifications()");
         Notification.Builder mNotificationBuilder = new Notification.Builder(mContext);
         Message notificationMsg = mSpyCarrierSST.obtainMessage(
-                CarrierServiceStateTracker.CARRIER_EVENT_DATA_DEREGISTRATION, null);
+                CarrierServiceStateTracker.CARRIER_EVENT_REGISTRATION_STATE_CHANGED, null);
         doReturn(true).when(mSpyCarrierSST).evaluateSendingMessage(any());
         doReturn(false).when(mSpyCarrierSST).isRadioOffOrAirplaneMode();
         doReturn(0).when(mSpyCarrierSST).getDelay(any());
@@ -16,6 +16,7 @@
 package com.android.internal.telephony;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.anyInt;
@@ -28,6 +29,7 @@ import android.telephony.CellInfo;
 import android.telephony.DisconnectCause;
 import android.telephony.PreciseCallState;
 import android.telephony.PreciseDisconnectCause;
+import android.telephony.ServiceState;
 import android.telephony.SignalStrength;
 import android.telephony.TelephonyManager;
 import android.telephony.gsm.GsmCellLocation;
@@ -120,6 +122,37 @@ public class DefaultPhoneNotifierTest extends TelephonyTest {
         assertEquals(99, signalStrengthArgumentCaptor.getValue().getGsmSignalStrength());
     }
 
+    @Test @SmallTest
+    public void testNotifyDataActivitySkipsUnchanged() throws Exception {
+        doReturn(Phone.DataActivityState.DATAIN).when(mPhone).getDataActivityState();
+        mDefaultPhoneNotifierUT.notifyDataActivity(mPhone);
+        mDefaultPhoneNotifierUT.notifyDataActivity(mPhone);
+        verify(mTelephonyRegisteryMock, times(1)).notifyDataActivityForSubscriber(eq(0),
+                eq(TelephonyManager.DATA_ACTIVITY_IN));
+
+        // A new subscription on the same phone is always notified
+        doReturn(1).when(mPhone).getSubId();
+        mDefaultPhoneNotifierUT.notifyDataActivity(mPhone);
+        verify(mTelephonyRegisteryMock, times(1)).notifyDataActivityForSubscriber(eq(1),
+                eq(TelephonyManager.DATA_ACTIVITY_IN));
+    }
+
+    @Test @SmallTest
+    public void testNotifyServiceStateSkipsUnchanged() throws Exception {
+        ServiceState ss = new ServiceState();
+        ss.setVoiceRegState(ServiceState.STATE_IN_SERVICE);
+        doReturn(ss).when(mPhone).getServiceState();
+        mDefaultPhoneNotifierUT.notifyServiceState(mPhone);
+        mDefaultPhoneNotifierUT.notifyServiceState(mPhone);
+        verify(mTelephonyRegisteryMock, times(1)).notifyServiceStateForPhoneId(eq(0), eq(0),
+                any(ServiceState.class));
+
+        ss.setVoiceRegState(ServiceState.STATE_OUT_OF_SERVICE);
+        mDefaultPhoneNotifierUT.notifyServiceState(mPhone);
+        verify(mTelephonyRegisteryMock, times(2)).notifyServiceStateForPhoneId(eq(0), eq(0),
+                any(ServiceState.class));
+    }
+
     @Test @SmallTest
     public void testNotifyCellInfo() throws Exception {
         //mock cellinfo
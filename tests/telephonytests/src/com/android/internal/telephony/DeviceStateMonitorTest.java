@@ -21,8 +21,11 @@ import static android.hardware.radio.V1_0.DeviceStateType.LOW_DATA_EXPECTED;
 import static com.android.internal.telephony.TelephonyTestUtils.waitForMs;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.nullable;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -31,6 +34,7 @@ import android.net.ConnectivityManager;
 import android.os.BatteryManager;
 import android.os.HandlerThread;
 import android.os.Message;
+import android.telephony.SignalStrength;
 import android.test.suitebuilder.annotation.MediumTest;
 
 import androidx.test.filters.FlakyTest;
@@ -171,4 +175,43 @@ public class DeviceStateMonitorTest extends TelephonyTest {
         assertEquals(
                 DeviceStateMonitor.CELL_INFO_INTERVAL_SHORT_MS, mDSM.computeCellInfoMinInterval());
     }
+
+    private void sendSignalStrengthIndications(int... dbms) {
+        setReady(false);
+        for (int dbm : dbms) {
+            SignalStrength signalStrength = mock(SignalStrength.class);
+            doReturn(dbm).when(signalStrength).getDbm();
+            mDSM.notifySignalStrengthIndication(signalStrength);
+        }
+        mDSM.post(() -> setReady(true));
+        waitUntilReady();
+    }
+
+    @Test
+    @MediumTest
+    public void testReportingModeFollowsSignalStabilityAndDataActivity() throws Exception {
+        // screen on, no wifi, not charging
+        sendStates(1, 0, 0);
+        assertEquals(DeviceStateMonitor.REPORTING_MODE_NORMAL, mDSM.getReportingMode());
+
+        // A varying signal keeps the normal criteria.
+        sendSignalStrengthIndications(-80, -90, -100, -110, -80, -90, -100, -110);
+        assertEquals(DeviceStateMonitor.REPORTING_MODE_NORMAL, mDSM.getReportingMode());
+
+        // A stable signal relaxes the criteria and the cell info interval.
+        sendSignalStrengthIndications(-100, -101, -100, -99, -100, -101, -100, -99);
+        assertEquals(DeviceStateMonitor.REPORTING_MODE_RELAXED, mDSM.getReportingMode());
+        assertEquals(
+                DeviceStateMonitor.CELL_INFO_INTERVAL_LONG_MS, mDSM.computeCellInfoMinInterval());
+        verify(mPhone).setReportingHysteresis(anyInt(), eq(4), anyInt());
+
+        // Foreground data activity restores the normal criteria.
+        setReady(false);
+        mDSM.notifyDataActivity(PhoneInternalInterface.DataActivityState.DATAINANDOUT);
+        mDSM.post(() -> setReady(true));
+        waitUntilReady();
+        assertEquals(DeviceStateMonitor.REPORTING_MODE_NORMAL, mDSM.getReportingMode());
+        assertEquals(
+                DeviceStateMonitor.CELL_INFO_INTERVAL_SHORT_MS, mDSM.computeCellInfoMinInterval());
+    }
 }
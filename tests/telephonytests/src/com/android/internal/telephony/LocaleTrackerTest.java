@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
@@ -51,6 +52,8 @@ public class LocaleTrackerTest extends TelephonyTest {
     private static final String US_MCC = "310";
     private static final String FAKE_MNC = "123";
     private static final String US_COUNTRY_CODE = "us";
+    private static final String DE_MCC = "262";
+    private static final String DE_COUNTRY_CODE = "de";
     private static final String COUNTRY_CODE_UNAVAILABLE = "";
 
     private LocaleTracker mLocaleTracker;
@@ -96,7 +99,7 @@ public class LocaleTrackerTest extends TelephonyTest {
             Message m = invocation.getArgument(1);
             AsyncResult.forMessage(m, Arrays.asList(mCellInfo), null);
             m.sendToTarget();
-            return null; }).when(mPhone).requestCellInfoUpdate(any(), any());
+            return null; }).when(mPhone).requestCellInfoUpdate(any(), any(), anyLong());
 
         logd("LocaleTrackerTest -Setup!");
     }
@@ -126,6 +129,23 @@ public class LocaleTrackerTest extends TelephonyTest {
         waitForHandlerAction(mLocaleTracker, 100);
     }
 
+    private void sendGsmCellInfo(String... mccs) {
+        CellInfo[] cellInfos = new CellInfo[mccs.length];
+        for (int i = 0; i < mccs.length; i++) {
+            CellInfoGsm cellInfo = new CellInfoGsm();
+            cellInfo.setCellIdentity(new CellIdentityGsm(
+                    CellInfo.UNAVAILABLE, CellInfo.UNAVAILABLE,
+                    CellInfo.UNAVAILABLE, CellInfo.UNAVAILABLE,
+                    mccs[i], FAKE_MNC, null, null));
+            cellInfos[i] = cellInfo;
+        }
+        mLocaleTracker
+                .obtainMessage(4 /*UNSOL_CELL_INFO*/,
+                        new AsyncResult(null, Arrays.asList(cellInfos), null))
+                .sendToTarget();
+        waitForHandlerAction(mLocaleTracker, 100);
+    }
+
     private void verifyCountryCodeNotified(String[] countryCodes) {
         ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
         verify(mWifiManager, times(countryCodes.length)).setCountryCode(
@@ -164,6 +184,39 @@ public class LocaleTrackerTest extends TelephonyTest {
         assertTrue(mLocaleTracker.isTracking());
     }
 
+    @Test
+    @SmallTest
+    public void testCellInfoMccChangesOnlyWhenOutweighed() throws Exception {
+        mLocaleTracker.updateOperatorNumeric("");
+        sendGsmCellInfo(US_MCC);
+        assertEquals(US_COUNTRY_CODE, mLocaleTracker.getCurrentCountry());
+
+        // A cell from the other side of the border does not change the country...
+        sendGsmCellInfo(US_MCC, DE_MCC);
+        assertEquals(US_COUNTRY_CODE, mLocaleTracker.getCurrentCountry());
+        verifyCountryCodeNotified(new String[]{COUNTRY_CODE_UNAVAILABLE, US_COUNTRY_CODE});
+
+        // ...until it is seen more than the current one.
+        sendGsmCellInfo(DE_MCC, DE_MCC, DE_MCC);
+        assertEquals(DE_COUNTRY_CODE, mLocaleTracker.getCurrentCountry());
+        verifyCountryCodeNotified(
+                new String[]{COUNTRY_CODE_UNAVAILABLE, US_COUNTRY_CODE, DE_COUNTRY_CODE});
+    }
+
+    @Test
+    @SmallTest
+    public void testCellInfoMccChangesWhenNoLongerSeen() throws Exception {
+        mLocaleTracker.updateOperatorNumeric("");
+        sendGsmCellInfo(US_MCC, US_MCC, US_MCC, US_MCC);
+        assertEquals(US_COUNTRY_CODE, mLocaleTracker.getCurrentCountry());
+
+        // Past the border only the other MCC is seen, which wins despite its lower weight.
+        sendGsmCellInfo(DE_MCC);
+        assertEquals(DE_COUNTRY_CODE, mLocaleTracker.getCurrentCountry());
+        verifyCountryCodeNotified(
+                new String[]{COUNTRY_CODE_UNAVAILABLE, US_COUNTRY_CODE, DE_COUNTRY_CODE});
+    }
+
     @Test
     @SmallTest
     public void testBootupInAirplaneModeOn() throws Exception {
@@ -95,6 +95,34 @@ public class NitzDataTest {
         assertEquals("America/Los_Angeles", nitz.getEmulatorHostTimeZone().getID());
     }
 
+    @Test
+    public void testParse_lenientFields() {
+        // Out of range fields roll over into the next field.
+        assertEquals(createUtcTime(2015, 7, 1, 0, 0, 0),
+                NitzData.parse("15/06/30,24:00:00+0").getCurrentTimeInMillis());
+        assertEquals(createUtcTime(2014, 12, 31, 1, 2, 3),
+                NitzData.parse("15/01/00,01:02:03+0").getCurrentTimeInMillis());
+        assertEquals(createUtcTime(2016, 1, 20, 1, 2, 3),
+                NitzData.parse("15/13/20,01:02:03+0").getCurrentTimeInMillis());
+        assertEquals(createUtcTime(2016, 2, 29, 1, 2, 3),
+                NitzData.parse("16/02/29,01:02:03+0").getCurrentTimeInMillis());
+    }
+
+    @Test
+    public void testParse_separators() {
+        // Trailing separators are ignored.
+        NitzData nitz = NitzData.parse("15/06/20,01:02:03+4,");
+        assertEquals(TimeUnit.MINUTES.toMillis(4 * 15), nitz.getLocalOffsetMillis());
+        assertNull(nitz.getDstAdjustmentMillis());
+
+        // Empty or non-numeric fields are rejected.
+        assertNull(NitzData.parse("15//20,01:02:03+4"));
+        assertNull(NitzData.parse("15/06/20,01:02:03+4,,America!Los_Angeles"));
+        assertNull(NitzData.parse("15/06/20,01:0x:03+4"));
+        assertNull(NitzData.parse("15/06/20,01:02:03+99999999999"));
+        assertNull(NitzData.parse(""));
+    }
+
     @Test
     public void testToString() {
         assertNotNull(NitzData.parse("15/06/20,01:02:03-32").toString());
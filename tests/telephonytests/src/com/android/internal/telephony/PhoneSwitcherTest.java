@@ -60,6 +60,8 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -341,6 +343,54 @@ public class PhoneSwitcherTest extends TelephonyTest {
         mHandlerThread.quit();
     }
 
+    /**
+     * Verify the active phone still follows the highest priority request when there are many
+     * requests, and that releasing them one by one only switches back after the last one.
+     */
+    @Test
+    @SmallTest
+    public void testPrioritizationWithManyRequests() throws Exception {
+        final int numPhones = 2;
+        final int maxActivePhones = 1;
+        final int numMmsRequests = 300;
+        initialize(numPhones, maxActivePhones);
+
+        addInternetNetworkRequest(null, 50);
+        setSlotIndexToSubId(0, 0);
+        setSlotIndexToSubId(1, 1);
+        setDefaultDataSubId(0);
+        waitABit();
+
+        assertTrue("data not allowed", mDataAllowed[0]);
+        assertFalse("data allowed", mDataAllowed[1]);
+
+        List<NetworkRequest> mmsRequests = new ArrayList<>();
+        for (int i = 0; i < numMmsRequests; i++) {
+            mmsRequests.add(addMmsNetworkRequest(1, i + 1));
+        }
+        waitABit();
+
+        assertFalse("data allowed", mDataAllowed[0]);
+        assertTrue("data not allowed", mDataAllowed[1]);
+
+        for (int i = 0; i < numMmsRequests - 1; i++) {
+            releaseNetworkRequest(mmsRequests.get(i));
+        }
+        waitABit();
+
+        // One mms request is left, so phone 1 should stay active
+        assertFalse("data allowed", mDataAllowed[0]);
+        assertTrue("data not allowed", mDataAllowed[1]);
+
+        releaseNetworkRequest(mmsRequests.get(numMmsRequests - 1));
+        waitABit();
+
+        assertTrue("data not allowed", mDataAllowed[0]);
+        assertFalse("data allowed", mDataAllowed[1]);
+
+        mHandlerThread.quit();
+    }
+
     /**
      * Verify we don't send spurious DATA_ALLOWED calls when another NetworkFactory
      * wins (ie, switch to wifi).
@@ -1129,6 +1179,10 @@ public class PhoneSwitcherTest extends TelephonyTest {
      * Create a mms PDN network request and send it to PhoneSwitcher.
      */
     private NetworkRequest addMmsNetworkRequest(Integer subId) throws Exception {
+        return addMmsNetworkRequest(subId, 1);
+    }
+
+    private NetworkRequest addMmsNetworkRequest(Integer subId, int requestId) throws Exception {
         NetworkCapabilities netCap = (new NetworkCapabilities())
                 .addCapability(NetworkCapabilities.NET_CAPABILITY_MMS)
                 .addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_RESTRICTED)
@@ -1138,7 +1192,7 @@ public class PhoneSwitcherTest extends TelephonyTest {
             netCap.setNetworkSpecifier(new StringNetworkSpecifier(Integer.toString(subId)));
         }
         NetworkRequest networkRequest = new NetworkRequest(netCap, ConnectivityManager.TYPE_NONE,
-                1, NetworkRequest.Type.REQUEST);
+                requestId, NetworkRequest.Type.REQUEST);
 
         Message message = Message.obtain();
         message.what = android.net.NetworkFactory.CMD_REQUEST_NETWORK;
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.telephony.ServiceState;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+public class ServiceStateDiffTest extends TestCase {
+
+    @SmallTest
+    public void testNoChange() {
+        ServiceState ss = new ServiceState();
+        ServiceStateDiff diff = ServiceStateDiff.compute(ss, new ServiceState(ss), null, null);
+        assertEquals(0, diff.getChangedFields());
+        assertFalse(diff.isServiceStateChanged());
+    }
+
+    @SmallTest
+    public void testChangedFields() {
+        ServiceState oldSS = new ServiceState();
+        ServiceState newSS = new ServiceState(oldSS);
+        newSS.setVoiceRegState(ServiceState.STATE_IN_SERVICE);
+        newSS.setOperatorName("long", "short", "310260");
+        newSS.setCellBandwidths(new int[] {5000});
+
+        ServiceStateDiff diff = ServiceStateDiff.compute(oldSS, newSS, null, null);
+        assertTrue(diff.isServiceStateChanged());
+        assertTrue(diff.hasChanged(ServiceStateDiff.FIELD_VOICE_REG_STATE));
+        assertTrue(diff.hasChanged(ServiceStateDiff.FIELD_OPERATOR));
+        assertTrue(diff.hasChanged(ServiceStateDiff.FIELD_CELL_BANDWIDTHS));
+        assertFalse(diff.hasChanged(ServiceStateDiff.FIELD_DATA_RAT
+                | ServiceStateDiff.FIELD_ROAMING | ServiceStateDiff.FIELD_CELL_IDENTITY));
+    }
+
+    @SmallTest
+    public void testRoamingChanged() {
+        ServiceState oldSS = new ServiceState();
+        ServiceState newSS = new ServiceState(oldSS);
+        newSS.setVoiceRoaming(true);
+
+        ServiceStateDiff diff = ServiceStateDiff.compute(oldSS, newSS, null, null);
+        assertEquals(ServiceStateDiff.FIELD_ROAMING, diff.getChangedFields());
+    }
+}
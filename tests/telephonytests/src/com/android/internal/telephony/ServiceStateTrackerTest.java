@@ -147,6 +147,7 @@ public class ServiceStateTrackerTest extends TelephonyTest {
     private static final int EVENT_VOICE_ROAMING_ON = 10;
     private static final int EVENT_VOICE_ROAMING_OFF = 11;
     private static final int EVENT_VOICE_RAT_CHANGED = 12;
+    private static final int EVENT_SERVICE_STATE_DIFF = 13;
 
     private static final int PHONE_ID = 0;
 
@@ -401,6 +402,22 @@ public class ServiceStateTrackerTest extends TelephonyTest {
                 mSimulatedCommands.getGetNetworkSelectionModeCallCount());
     }
 
+    @Test
+    @MediumTest
+    public void testModemTriggeredPollStateCoalesced() {
+        sst.setRadioPower(true);
+        waitForMs(250);
+        final int getOperatorCallCount = mSimulatedCommands.getGetOperatorCallCount();
+
+        // A burst of network state changes should only poll the radio once
+        for (int i = 0; i < 5; i++) {
+            sst.sendMessage(sst.obtainMessage(ServiceStateTracker.EVENT_NETWORK_STATE_CHANGED));
+        }
+        waitForMs(250);
+
+        assertEquals(getOperatorCallCount + 1, mSimulatedCommands.getGetOperatorCallCount());
+    }
+
     @FlakyTest
     @Ignore
     @Test
@@ -471,6 +488,39 @@ public class ServiceStateTrackerTest extends TelephonyTest {
         assertEquals(sst.getAllCellInfo(), list);
     }
 
+    @Test
+    @MediumTest
+    public void testCellInfoCacheMaxAge() throws InterruptedException {
+        ArrayList<CellInfo> list = new ArrayList();
+        list.add(getCellInfoGsm());
+        mSimulatedCommands.setCellInfoList(list);
+        sst.setCellInfoMinInterval(0);
+        sst.requestAllCellInfo(null, null);
+        waitForMs(200);
+        assertEquals(list, sst.getAllCellInfo());
+
+        ArrayList<CellInfo> newList = new ArrayList();
+        mSimulatedCommands.setCellInfoList(newList);
+        CellInfoHandler cih = new CellInfoHandler(mSSTTestHandler.getLooper());
+
+        // The cached list is recent enough for the caller, so the modem is not queried.
+        Message rsp = cih.obtainMessage(0x7357);
+        sst.requestAllCellInfo(null, rsp, 60 * 1000);
+        synchronized (rsp) {
+            if (cih.cellInfoResult == null) rsp.wait(5000);
+        }
+        assertEquals(list, cih.cellInfoResult);
+
+        // The cached list is too old for the caller, so a new list is requested.
+        cih.cellInfoResult = null;
+        rsp = cih.obtainMessage(0x7357);
+        sst.requestAllCellInfo(null, rsp, 0);
+        synchronized (rsp) {
+            if (cih.cellInfoResult == null) rsp.wait(5000);
+        }
+        assertEquals(newList, cih.cellInfoResult);
+    }
+
     private static class CellInfoHandler extends Handler {
         // Need to define this here so that it's accessible
         public List<CellInfo> cellInfoResult;
@@ -1215,6 +1265,49 @@ public class ServiceStateTrackerTest extends TelephonyTest {
         verify(mTestHandler, times(1)).sendMessageAtTime(any(Message.class), anyLong());
     }
 
+    @Test
+    @MediumTest
+    public void testRegAndUnregForServiceStateDiff() throws Exception {
+        // Initially set service state out of service
+        doReturn(true).when(mPhone).isPhoneTypeGsm();
+        mSimulatedCommands.setVoiceRegState(NetworkRegistrationInfo.REGISTRATION_STATE_UNKNOWN);
+        mSimulatedCommands.setDataRegState(NetworkRegistrationInfo.REGISTRATION_STATE_UNKNOWN);
+        mSimulatedCommands.notifyNetworkStateChanged();
+
+        waitForMs(100);
+
+        sst.registerForServiceStateDiff(mTestHandler, EVENT_SERVICE_STATE_DIFF,
+                ServiceStateDiff.FIELD_VOICE_REG_STATE, null);
+
+        // set service state in service and trigger events to post message on handler
+        mSimulatedCommands.setVoiceRegState(NetworkRegistrationInfo.REGISTRATION_STATE_HOME);
+        mSimulatedCommands.setDataRegState(NetworkRegistrationInfo.REGISTRATION_STATE_HOME);
+        mSimulatedCommands.notifyNetworkStateChanged();
+
+        waitForMs(100);
+
+        // verify the registered handler got the diff once
+        ArgumentCaptor<Message> messageArgumentCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(mTestHandler).sendMessageAtTime(messageArgumentCaptor.capture(), anyLong());
+        assertEquals(EVENT_SERVICE_STATE_DIFF, messageArgumentCaptor.getValue().what);
+        ServiceStateDiff diff = (ServiceStateDiff)
+                ((AsyncResult) messageArgumentCaptor.getValue().obj).result;
+        assertTrue(diff.hasChanged(ServiceStateDiff.FIELD_VOICE_REG_STATE));
+
+        // Unregister registrant
+        sst.unregisterForServiceStateDiff(mTestHandler);
+
+        // set service state out of service
+        mSimulatedCommands.setVoiceRegState(NetworkRegistrationInfo.REGISTRATION_STATE_UNKNOWN);
+        mSimulatedCommands.setDataRegState(NetworkRegistrationInfo.REGISTRATION_STATE_UNKNOWN);
+        mSimulatedCommands.notifyNetworkStateChanged();
+
+        waitForMs(100);
+
+        // verify no more messages were posted
+        verify(mTestHandler, times(1)).sendMessageAtTime(any(Message.class), anyLong());
+    }
+
     @Test
     @MediumTest
     public void testRegAndInvalidRegForNetworkAttached() throws Exception {
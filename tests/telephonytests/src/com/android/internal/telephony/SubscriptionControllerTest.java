@@ -20,8 +20,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.clearInvocations;
@@ -285,6 +287,98 @@ public class SubscriptionControllerTest extends TelephonyTest {
                 captorIntent.getValue().getAction());
     }
 
+    @Test @SmallTest
+    public void testSubscriptionTableWriteThrough() {
+        testInsertSim();
+        assertNull(mSubscriptionControllerUT.getImsiPrivileged(1));
+        assertEquals("0", mSubscriptionControllerUT.getSubscriptionProperty(1,
+                SubscriptionManager.GROUP_UUID));
+
+        mSubscriptionControllerUT.setImsi("310260000000000", 1);
+        mSubscriptionControllerUT.setSubscriptionProperty(1,
+                SubscriptionManager.CB_AMBER_ALERT, "0");
+        assertEquals("310260000000000", mSubscriptionControllerUT.getImsiPrivileged(1));
+        assertEquals("0", mSubscriptionControllerUT.getSubscriptionProperty(1,
+                SubscriptionManager.CB_AMBER_ALERT));
+        mSubscriptionControllerUT.setSubscriptionProperty(1,
+                SubscriptionManager.CB_AMBER_ALERT, "1");
+        assertEquals("1", mSubscriptionControllerUT.getSubscriptionProperty(1,
+                SubscriptionManager.CB_AMBER_ALERT));
+
+        // Rows written behind the controller's back are picked up on the next refresh.
+        ContentValues values = new ContentValues();
+        values.put(SubscriptionManager.IMSI, "310260000000001");
+        mFakeTelephonyProvider.update(SubscriptionManager.CONTENT_URI, values,
+                SubscriptionManager.UNIQUE_KEY_SUBSCRIPTION_ID + "=" + 1, null);
+        mSubscriptionControllerUT.refreshCachedActiveSubscriptionInfoList();
+        assertEquals("310260000000001", mSubscriptionControllerUT.getImsiPrivileged(1));
+
+        assertEquals(1, mSubscriptionControllerUT.getAllSubInfoCount(mCallingPackage));
+        assertEquals(1, mSubscriptionControllerUT.getSubInfoUsingSlotIndexPrivileged(0).size());
+        assertNull(mSubscriptionControllerUT.getSubscriptionInfo(2));
+    }
+
+    @Test @SmallTest
+    public void testSubscriptionTableDerivedFields() {
+        testInsertSim();
+        assertNotEquals("+16505551234",
+                mSubscriptionControllerUT.getSubscriptionInfo(1).getNumber());
+
+        // Neither the line 1 number nor the public card id are stored in siminfo, so they are
+        // only picked up when their owners report a change.
+        doReturn("+16505551234").when(mTelephonyManager).getLine1Number(1);
+        doReturn(5).when(mUiccController).convertToPublicCardId(any());
+        mSubscriptionControllerUT.refreshCachedCardIds();
+        SubscriptionInfo info = mSubscriptionControllerUT.getSubscriptionInfo(1);
+        assertEquals(5, info.getCardId());
+        assertEquals(5, mSubscriptionControllerUT
+                .getActiveSubscriptionInfo(1, mCallingPackage).getCardId());
+        assertNotEquals("+16505551234", info.getNumber());
+
+        mSubscriptionControllerUT.refreshCachedActiveSubscriptionInfoList();
+        assertEquals("+16505551234",
+                mSubscriptionControllerUT.getSubscriptionInfo(1).getNumber());
+    }
+
+    @Test @SmallTest
+    public void testSubscriptionTableReturnsCopies() {
+        testInsertSim();
+        SubscriptionInfo info = mSubscriptionControllerUT.getSubscriptionInfo(1);
+        String displayName = info.getDisplayName().toString();
+        info.setDisplayName("changed");
+        mSubscriptionControllerUT.getAllSubInfoList(mCallingPackage).get(0)
+                .setDisplayName("changed");
+
+        assertEquals(displayName,
+                mSubscriptionControllerUT.getSubscriptionInfo(1).getDisplayName().toString());
+        assertEquals(displayName, mSubscriptionControllerUT
+                .getActiveSubscriptionInfo(1, mCallingPackage).getDisplayName().toString());
+    }
+
+    @Test @SmallTest
+    public void testActiveSubInfoGeneration() {
+        long generation = mSubscriptionControllerUT.getActiveSubInfoGeneration();
+        testInsertSim();
+        long insertedGeneration = mSubscriptionControllerUT.getActiveSubInfoGeneration();
+        assertNotEquals(generation, insertedGeneration);
+
+        // Refreshing without any change keeps the generation.
+        mSubscriptionControllerUT.refreshCachedActiveSubscriptionInfoList();
+        assertEquals(insertedGeneration, mSubscriptionControllerUT.getActiveSubInfoGeneration());
+
+        mSubscriptionControllerUT.setIconTint(7, 1);
+        assertNotEquals(insertedGeneration,
+                mSubscriptionControllerUT.getActiveSubInfoGeneration());
+        assertEquals(7, mSubscriptionControllerUT
+                .getActiveSubscriptionInfo(1, mCallingPackage).getIconTint());
+
+        List<SubscriptionInfo> subList =
+                mSubscriptionControllerUT.getActiveSubscriptionInfoList(mCallingPackage);
+        // Callers get their own copy of the list.
+        subList.clear();
+        assertEquals(1, mSubscriptionControllerUT.getActiveSubInfoCount(mCallingPackage));
+    }
+
     @Test
     @SmallTest
     public void testSetDefaultDataSubId() throws Exception {
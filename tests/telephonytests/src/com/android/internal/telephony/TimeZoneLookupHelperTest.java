@@ -297,6 +297,26 @@ public class TimeZoneLookupHelperTest {
                 mTimeZoneLookupHelper.lookupByCountry("us", nhWinterTimeMillis));
     }
 
+    @Test
+    public void testLookupByCountry_memoizedWithinTimeBucket() {
+        CountryResult first = mTimeZoneLookupHelper.lookupByCountry("us", NH_SUMMER_TIME_MILLIS);
+        long sameBucketMillis = NH_SUMMER_TIME_MILLIS + 1000;
+        CountryResult second = mTimeZoneLookupHelper.lookupByCountry("us", sameBucketMillis);
+        assertEquals(first.zoneId, second.zoneId);
+        assertEquals(first.allZonesHaveSameOffset, second.allZonesHaveSameOffset);
+        assertEquals(sameBucketMillis, second.whenMillis);
+        assertEquals(new TimeZoneLookupHelper().lookupByCountry("us", sameBucketMillis), second);
+    }
+
+    @Test
+    public void testLookupByNitzCountry_memoized() {
+        NitzData nitzData = NitzData.parse("15/06/20,01:02:03+8,4");
+        OffsetResult first = mTimeZoneLookupHelper.lookupByNitzCountry(nitzData, "de");
+        OffsetResult second = mTimeZoneLookupHelper.lookupByNitzCountry(nitzData, "de");
+        assertEquals(first, second);
+        assertEquals(new TimeZoneLookupHelper().lookupByNitzCountry(nitzData, "de"), second);
+    }
+
     @Test
     public void testCountryUsesUtc() {
         assertFalse(mTimeZoneLookupHelper.countryUsesUtc("us", NH_SUMMER_TIME_MILLIS));
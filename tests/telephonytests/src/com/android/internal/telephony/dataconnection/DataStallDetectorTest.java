@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+public class DataStallDetectorTest extends AndroidTestCase {
+
+    @SmallTest
+    public void testSentSinceLastRecv() throws Exception {
+        DataStallDetector detector = new DataStallDetector();
+        detector.addSample(1000, 4, 0, true);
+        detector.addSample(2000, 6, 0, true);
+        assertEquals(10, detector.getSentSinceLastRecv());
+        assertTrue(detector.isStallSuspected(10));
+        assertFalse(detector.isStallSuspected(11));
+
+        // Nothing sent or received keeps the count
+        detector.addSample(3000, 0, 0, true);
+        assertEquals(10, detector.getSentSinceLastRecv());
+
+        detector.addSample(4000, 3, 1, true);
+        assertEquals(0, detector.getSentSinceLastRecv());
+    }
+
+    @SmallTest
+    public void testSentNotCounted() throws Exception {
+        DataStallDetector detector = new DataStallDetector();
+        detector.addSample(1000, 4, 0, true);
+        detector.addSample(2000, 6, 0, false);
+        assertEquals(0, detector.getSentSinceLastRecv());
+
+        detector.addSample(3000, 5, 0, true);
+        detector.resetSentSinceLastRecv();
+        assertEquals(0, detector.getSentSinceLastRecv());
+    }
+
+    @SmallTest
+    public void testSampleRing() throws Exception {
+        DataStallDetector detector = new DataStallDetector();
+        for (int i = 0; i < DataStallDetector.MAX_SAMPLES + 5; i++) {
+            detector.addSample(i * 1000, 1, 0, true);
+        }
+        assertEquals(DataStallDetector.MAX_SAMPLES, detector.getSampleCount());
+        assertEquals(DataStallDetector.MAX_SAMPLES + 5, detector.getSentSinceLastRecv());
+    }
+}
@@ -182,6 +182,40 @@ public class RetryManagerTest extends TelephonyTest {
         assertEquals(RetryManager.NO_RETRY, delay);
     }
 
+    /**
+     * Test that retry managers sharing the same retry configuration keep their own retry state.
+     */
+    @Test
+    @SmallTest
+    public void testRetryManagersSharingConfig() throws Exception {
+
+        mBundle.putStringArray(CarrierConfigManager.KEY_CARRIER_DATA_CALL_RETRY_CONFIG_STRINGS,
+                new String[]{"others:2000,3000"});
+
+        ArrayList<ApnSetting> waitingApns1 = new ArrayList<ApnSetting>();
+        waitingApns1.add(ApnSetting.makeApnSetting(mApn1));
+        ArrayList<ApnSetting> waitingApns2 = new ArrayList<ApnSetting>();
+        waitingApns2.add(ApnSetting.makeApnSetting(mApn2));
+
+        RetryManager rm1 = new RetryManager(mPhone, "default");
+        rm1.setWaitingApns(waitingApns1);
+        RetryManager rm2 = new RetryManager(mPhone, "mms");
+        rm2.setWaitingApns(waitingApns2);
+
+        rm1.getNextApnSetting();
+        assertEquals(2000, rm1.getDelayForNextApn(false));
+        rm1.getNextApnSetting();
+        assertEquals(3000, rm1.getDelayForNextApn(false));
+
+        rm2.getNextApnSetting();
+        assertEquals(2000, rm2.getDelayForNextApn(false));
+
+        rm1.getNextApnSetting();
+        assertEquals(RetryManager.NO_RETRY, rm1.getDelayForNextApn(false));
+        rm2.getNextApnSetting();
+        assertEquals(3000, rm2.getDelayForNextApn(false));
+    }
+
     /**
      * Test the basic retry scenario where only one APN with two retries configured.
      */
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.telephony.ServiceState;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+public class TcpBufferSizeTableTest extends AndroidTestCase {
+    private static final String UMTS_SIZES = "131072,262144,1452032,4096,16384,399360";
+    private static final String EVDO_SIZES = "4094,87380,524288,4096,16384,262144";
+    private static final String NR_SIZES = "2097152,6291456,16777216,512000,2097152,4194304";
+
+    @SmallTest
+    public void testOverrides() throws Exception {
+        TcpBufferSizeTable table = new TcpBufferSizeTable(new String[] {
+                "umts:" + UMTS_SIZES,
+                "umts:1,2,3,4,5,6",
+                "evdo:" + EVDO_SIZES,
+                "nr:" + NR_SIZES,
+                "malformed"});
+
+        assertEquals(UMTS_SIZES,
+                table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_UMTS, false));
+        assertEquals(EVDO_SIZES,
+                table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_EVDO_A, false));
+        assertEquals(NR_SIZES,
+                table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_LTE_CA, true));
+    }
+
+    @SmallTest
+    public void testDefaults() throws Exception {
+        TcpBufferSizeTable table = new TcpBufferSizeTable(new String[0]);
+
+        assertEquals(TcpBufferSizeTable.getDefaultSizes(ServiceState.RIL_RADIO_TECHNOLOGY_GPRS),
+                table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_GPRS, false));
+        assertEquals(TcpBufferSizeTable.getDefaultSizes(ServiceState.RIL_RADIO_TECHNOLOGY_LTE),
+                table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_LTE_CA, false));
+        assertNotNull(table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_LTE, true));
+        assertNull(table.getTcpBufferSizes(ServiceState.RIL_RADIO_TECHNOLOGY_UNKNOWN, false));
+        assertNull(table.getTcpBufferSizes(-1, false));
+    }
+}
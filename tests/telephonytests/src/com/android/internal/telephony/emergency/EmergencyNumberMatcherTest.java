@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.emergency;
+
+import junit.framework.TestCase;
+
+public class EmergencyNumberMatcherTest extends TestCase {
+    public void testExtendableNumber() throws Exception {
+        EmergencyNumberMatcher matcher = new EmergencyNumberMatcher.Builder()
+                .add("112", true)
+                .add("911", true)
+                .build();
+        assertEquals(2, matcher.size());
+
+        assertTrue(matcher.matches("112", true));
+        assertTrue(matcher.matches("112", false));
+        assertFalse(matcher.matches("1123", true));
+        assertTrue(matcher.matches("1123", false));
+        assertFalse(matcher.matches("11", false));
+        assertFalse(matcher.matches("", false));
+        assertFalse(matcher.matches("999", false));
+        assertFalse(matcher.matches(null, false));
+    }
+
+    public void testExactOnlyNumber() throws Exception {
+        EmergencyNumberMatcher matcher = new EmergencyNumberMatcher.Builder()
+                .add("911", true)
+                .add("*31#911", false)
+                .build();
+
+        assertTrue(matcher.matches("*31#911", true));
+        assertTrue(matcher.matches("*31#911", false));
+        assertFalse(matcher.matches("*31#9110", false));
+        assertTrue(matcher.matches("9110", false));
+    }
+
+    public void testSameNumberAddedTwice() throws Exception {
+        EmergencyNumberMatcher matcher = new EmergencyNumberMatcher.Builder()
+                .add("119", false)
+                .add("119", true)
+                .build();
+        assertEquals(1, matcher.size());
+        assertTrue(matcher.matches("1190", false));
+    }
+}
@@ -17,6 +17,9 @@
 package com.android.internal.telephony.emergency;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 
 import android.os.AsyncResult;
@@ -130,4 +133,36 @@ public class EmergencyNumberTrackerTest extends TelephonyTest {
 
         assertEquals(resultToVerify, resultFromRadio);
     }
+
+    @Test
+    public void testEmergencyNumberLookupFromRadio() throws Exception {
+        sendEmergencyNumberListFromRadio();
+        sendEmergencyNumberPrefix();
+
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("119", true));
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("456-119", true));
+        assertFalse(mEmergencyNumberTrackerMock.isEmergencyNumber("1190", true));
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("1190", false));
+
+        assertEquals("123119",
+                mEmergencyNumberTrackerMock.getEmergencyNumber("123119").getNumber());
+        assertNull(mEmergencyNumberTrackerMock.getEmergencyNumber("911"));
+        assertEquals(EmergencyNumber.EMERGENCY_SERVICE_CATEGORY_FIRE_BRIGADE,
+                mEmergencyNumberTrackerMock.getEmergencyServiceCategories("119"));
+    }
+
+    @Test
+    public void testEmergencyNumberLookupFromEccList() throws Exception {
+        // Without a radio list, the ecclist property or the embedded list is used, which always
+        // contains 112 and 911.
+        sendEmergencyNumberPrefix();
+
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("911", true));
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("112", false));
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("9110", false));
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("123-911", true));
+        assertTrue(mEmergencyNumberTrackerMock.isEmergencyNumber("456112", false));
+        assertFalse(mEmergencyNumberTrackerMock.isEmergencyNumber("789911", false));
+        assertFalse(mEmergencyNumberTrackerMock.isEmergencyNumber(null, false));
+    }
 }
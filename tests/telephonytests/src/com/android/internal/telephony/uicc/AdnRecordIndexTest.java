@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.internal.telephony.uicc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class AdnRecordIndexTest {
+    private ArrayList<AdnRecord> mRecords;
+    private AdnRecordIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mRecords = new ArrayList<>();
+        mRecords.add(new AdnRecord("Alice", "+1 650-555-0100"));
+        mRecords.add(new AdnRecord("", ""));
+        mRecords.add(new AdnRecord("Bob", "6505550101"));
+        mRecords.add(new AdnRecord("alison", "6505550102"));
+        mRecords.add(new AdnRecord("", ""));
+        mIndex = new AdnRecordIndex(mRecords);
+    }
+
+    @Test
+    @SmallTest
+    public void testIndexOf() {
+        assertEquals(1, mIndex.indexOf(new AdnRecord("Alice", "+1 650-555-0100")));
+        assertEquals(3, mIndex.indexOf(new AdnRecord("Bob", "6505550101")));
+        // isEqual semantics are kept: the number must match exactly
+        assertEquals(-1, mIndex.indexOf(new AdnRecord("Alice", "+16505550100")));
+        assertEquals(-1, mIndex.indexOf(new AdnRecord("Carol", "6505550101")));
+    }
+
+    @Test
+    @SmallTest
+    public void testIndexOfEmptyReturnsFirstEmptyRecord() {
+        assertEquals(2, mIndex.indexOf(new AdnRecord("", "")));
+    }
+
+    @Test
+    @SmallTest
+    public void testUpdate() {
+        AdnRecord carol = new AdnRecord("Carol", "6505550103");
+        mIndex.update(2, carol);
+
+        assertSame(carol, mRecords.get(1));
+        assertSame(carol, mIndex.getRecord(2));
+        assertEquals(2, mIndex.indexOf(carol));
+        assertEquals(5, mIndex.indexOf(new AdnRecord("", "")));
+
+        mIndex.update(3, new AdnRecord("", ""));
+        assertEquals(-1, mIndex.indexOf(new AdnRecord("Bob", "6505550101")));
+        assertEquals(3, mIndex.indexOf(new AdnRecord("", "")));
+    }
+
+    @Test
+    @SmallTest
+    public void testGetRecordOutOfRange() {
+        assertNull(mIndex.getRecord(0));
+        assertNull(mIndex.getRecord(6));
+    }
+}
@@ -22,12 +22,19 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.content.pm.Signature;
 import android.os.AsyncResult;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
+import android.telephony.TelephonyManager;
 import android.test.suitebuilder.annotation.SmallTest;
 
 import com.android.internal.telephony.TelephonyTest;
@@ -167,6 +174,68 @@ public class UiccCarrierPrivilegeRulesTest extends TelephonyTest {
                 mUiccCarrierPrivilegeRules.getPackageNames().get(0)));
     }
 
+    @Test
+    @SmallTest
+    public void testGetCarrierPrivilegeStatus_CachedUntilPackageChanged() throws Exception {
+        // The certificate hash is the SHA-1 of the signature below.
+        final String hexString =
+                "FF4045E243E135C114FDE804CFEA1C30668BB7BF60630B001F4AD4C129CA1D636F6D2E676F6F676"
+                        + "C652E616E64726F69642E617070732E6D79617070E30ADB080000000000000001";
+        final String packageName = "com.google.android.apps.myapp";
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.signatures = new Signature[] {
+                new Signature("abcd92cbb156b280fa4e1429a6eceeb6e5c1bfe4")};
+        doReturn(packageInfo).when(mPackageManager).getPackageInfo(eq(packageName), anyInt());
+
+        testHelper(hexString);
+
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS,
+                mUiccCarrierPrivilegeRules.getCarrierPrivilegeStatus(mPackageManager, packageName));
+
+        // An update with other signatures is not seen until the package broadcast arrives, and
+        // the cached status is returned without asking PackageManager again.
+        PackageInfo updatedPackageInfo = new PackageInfo();
+        updatedPackageInfo.packageName = packageName;
+        updatedPackageInfo.signatures = new Signature[] {new Signature("1234")};
+        doReturn(updatedPackageInfo).when(mPackageManager).getPackageInfo(eq(packageName),
+                anyInt());
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS,
+                mUiccCarrierPrivilegeRules.getCarrierPrivilegeStatus(mPackageManager, packageName));
+        verify(mPackageManager, times(1)).getPackageInfo(eq(packageName), anyInt());
+
+        mUiccCarrierPrivilegeRules.onPackageChanged(packageName);
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS,
+                mUiccCarrierPrivilegeRules.getCarrierPrivilegeStatus(mPackageManager, packageName));
+        verify(mPackageManager, times(2)).getPackageInfo(eq(packageName), anyInt());
+    }
+
+    @Test
+    @SmallTest
+    public void testGetCarrierPrivilegeStatus_PackageNotFoundNotCached() throws Exception {
+        // The certificate hash is the SHA-1 of the signature below.
+        final String hexString =
+                "FF4045E243E135C114FDE804CFEA1C30668BB7BF60630B001F4AD4C129CA1D636F6D2E676F6F676"
+                        + "C652E616E64726F69642E617070732E6D79617070E30ADB080000000000000001";
+        final String packageName = "com.google.android.apps.myapp";
+        doThrow(new PackageManager.NameNotFoundException()).when(mPackageManager)
+                .getPackageInfo(eq(packageName), anyInt());
+
+        testHelper(hexString);
+
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS,
+                mUiccCarrierPrivilegeRules.getCarrierPrivilegeStatus(mPackageManager, packageName));
+
+        // Installed now, without the package broadcast having arrived yet.
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.signatures = new Signature[] {
+                new Signature("abcd92cbb156b280fa4e1429a6eceeb6e5c1bfe4")};
+        doReturn(packageInfo).when(mPackageManager).getPackageInfo(eq(packageName), anyInt());
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS,
+                mUiccCarrierPrivilegeRules.getCarrierPrivilegeStatus(mPackageManager, packageName));
+    }
+
     @Test
     @SmallTest
     public void testParseRule_With4FD0D1() {
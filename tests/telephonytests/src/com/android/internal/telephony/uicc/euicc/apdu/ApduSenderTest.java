@@ -24,6 +24,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -328,6 +329,57 @@ public class ApduSenderTest {
                 eq(0), eq(0), eq(""), any());
     }
 
+    @Test
+    public void testSendStoreDataBytesLongData() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000", "9000", "9000",
+                "C39000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        // Each segment has 0xFF (the limit of a single command) bytes.
+        String s1 = new String(new char[0xFF]).replace("\0", "AA");
+        String s2 = new String(new char[0xFF]).replace("\0", "BB");
+        String s3 = new String(new char[16]).replace("\0", "CC");
+        byte[] longData = IccUtils.hexStringToBytes(s1 + s2 + s3);
+        sender.send((selectResponse, requestBuilder) -> {
+            requestBuilder.addApdu(10, 1, 2, 3, new byte[] {(byte) 0xAB});
+            requestBuilder.addStoreData(longData);
+        }, mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        assertEquals("C3", IccUtils.bytesToHexString(mResponseCaptor.response));
+        verify(mMockCi).iccTransmitApduLogicalChannel(eq(channel), eq(channel | 10), eq(1), eq(2),
+                eq(3), eq(1), eq("AB"), any());
+        verify(mMockCi).iccTransmitApduLogicalChannel(eq(channel), eq(0x81), eq(0xE2), eq(0x11),
+                eq(0), eq(0xFF), eq(s1), any());
+        verify(mMockCi).iccTransmitApduLogicalChannel(eq(channel), eq(0x81), eq(0xE2), eq(0x11),
+                eq(1), eq(0xFF), eq(s2), any());
+        verify(mMockCi).iccTransmitApduLogicalChannel(eq(channel), eq(0x81), eq(0xE2), eq(0x91),
+                eq(2), eq(16), eq(s3), any());
+    }
+
+    @Test
+    public void testSendStoreDataBytesLen0() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "B2222B9000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> {
+            requestBuilder.addStoreData(new byte[0]);
+        }, mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        assertEquals("B2222B", IccUtils.bytesToHexString(mResponseCaptor.response));
+        verify(mMockCi).iccTransmitApduLogicalChannel(eq(channel), eq(0x81), eq(0xE2), eq(0x91),
+                eq(0), eq(0), eq(""), any());
+    }
+
     @Test
     public void testSendErrorResponseInMiddle() throws InterruptedException {
         String aid = "B2C3D4";
@@ -360,6 +412,185 @@ public class ApduSenderTest {
                 eq(0x91), eq(2), eq(16), eq(s3), any());
     }
 
+    @Test
+    public void testReuseIdleChannel() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "A1A1A19000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000", "A29000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+        assertEquals("A1", IccUtils.bytesToHexString(mResponseCaptor.response));
+
+        ResponseCaptor secondResponseCaptor = new ResponseCaptor();
+        sender.send((selectResponse, requestBuilder) -> {
+            mSelectResponse = selectResponse;
+            requestBuilder.addApdu(10, 1, 2, 3, 0, "b");
+        }, secondResponseCaptor, mHandler);
+        secondResponseCaptor.await();
+
+        assertEquals("A2", IccUtils.bytesToHexString(secondResponseCaptor.response));
+        assertEquals("A1A1A19000", IccUtils.bytesToHexString(mSelectResponse));
+        verify(mMockCi, times(1)).iccOpenLogicalChannel(eq(aid), anyInt(), any());
+        verify(mMockCi, never()).iccCloseLogicalChannel(eq(channel), any());
+    }
+
+    @Test
+    public void testCloseIdleChannelAfterTimeout() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                1 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        verify(mMockCi, timeout(WAIT_TIMEOUT_MLLIS)).iccCloseLogicalChannel(eq(channel), any());
+    }
+
+    @Test
+    public void testCloseChannelOnErrorWithIdleTimeout() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A1A1A16985");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        assertEquals(0x6985, ((ApduException) mResponseCaptor.exception).getApduStatus());
+        verify(mMockCi).iccCloseLogicalChannel(eq(channel), any());
+    }
+
+    @Test
+    public void testRetryOnNewChannelWhenReusedChannelFails() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000", "6881",
+                "A29000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        ResponseCaptor secondResponseCaptor = new ResponseCaptor();
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "b"),
+                secondResponseCaptor, mHandler);
+        secondResponseCaptor.await();
+
+        assertNull(secondResponseCaptor.exception);
+        assertEquals("A2", IccUtils.bytesToHexString(secondResponseCaptor.response));
+        verify(mMockCi, times(2)).iccOpenLogicalChannel(eq(aid), anyInt(), any());
+        verify(mMockCi, times(1)).iccCloseLogicalChannel(eq(channel), any());
+    }
+
+    @Test
+    public void testNoRetryWhenReusedChannelReturnsError() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000", "6F00",
+                "A29000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        ResponseCaptor secondResponseCaptor = new ResponseCaptor();
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "b"),
+                secondResponseCaptor, mHandler);
+        secondResponseCaptor.await();
+
+        assertEquals(0x6F00, ((ApduException) secondResponseCaptor.exception).getApduStatus());
+        verify(mMockCi, times(1)).iccOpenLogicalChannel(eq(aid), anyInt(), any());
+        verify(mMockCi, times(1)).iccTransmitApduLogicalChannel(eq(channel), anyInt(), anyInt(),
+                anyInt(), anyInt(), anyInt(), eq("b"), any());
+        verify(mMockCi, times(2)).iccTransmitApduLogicalChannel(eq(channel), anyInt(), anyInt(),
+                anyInt(), anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    public void testDoNotReuseIdleChannelWhenNotKept() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000", "A29000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+
+        ResponseCaptor secondResponseCaptor = new ResponseCaptor();
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "b"),
+                secondResponseCaptor, mHandler, false /* keepChannel */);
+        secondResponseCaptor.await();
+
+        assertEquals("A2", IccUtils.bytesToHexString(secondResponseCaptor.response));
+        verify(mMockCi, times(2)).iccOpenLogicalChannel(eq(aid), anyInt(), any());
+        verify(mMockCi, times(2)).iccCloseLogicalChannel(eq(channel), any());
+    }
+
+    @Test
+    public void testCloseChannelWhenNotKept() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler, false /* keepChannel */);
+        mResponseCaptor.await();
+
+        assertEquals("A1", IccUtils.bytesToHexString(mResponseCaptor.response));
+        verify(mMockCi).iccCloseLogicalChannel(eq(channel), any());
+    }
+
+    @Test
+    public void testCloseIdleChannel() throws InterruptedException {
+        String aid = "B2C3D4";
+        ApduSender sender = new ApduSender(mMockCi, aid, false /* supportExtendedApdu */,
+                60000 /* channelIdleTimeoutMillis */);
+
+        int channel = LogicalChannelMocker.mockOpenLogicalChannelResponse(mMockCi, "9000");
+        LogicalChannelMocker.mockSendToLogicalChannel(mMockCi, channel, "A19000");
+        LogicalChannelMocker.mockCloseLogicalChannel(mMockCi, channel);
+
+        sender.send((selectResponse, requestBuilder) -> requestBuilder.addApdu(10, 1, 2, 3, 0, "a"),
+                mResponseCaptor, mHandler);
+        mResponseCaptor.await();
+        verify(mMockCi, never()).iccCloseLogicalChannel(eq(channel), any());
+
+        sender.closeIdleChannel();
+
+        verify(mMockCi, timeout(WAIT_TIMEOUT_MLLIS)).iccCloseLogicalChannel(eq(channel), any());
+    }
+
     @Test
     public void testChannelAlreadyOpened() throws InterruptedException {
         String aid = "B2C3D4";